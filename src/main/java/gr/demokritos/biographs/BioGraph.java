@@ -16,6 +16,7 @@
 
 package gr.demokritos.biographs;
 
+import gr.demokritos.biographs.structs.KmerDictionary;
 import gr.demokritos.iit.jinsect.representations.NGramJGraph;
 import gr.demokritos.iit.jinsect.structs.*;
 import gr.demokritos.iit.jinsect.encoders.*;
@@ -44,14 +45,16 @@ public class BioGraph extends NGramJGraph {
 	protected String bioLabel = null;
 
 	/**
-	 * A cached copy of this graph's hash encoding.
+	 * Cached copies of this graph's encodings, keyed by the configuration
+	 * of the encoder that produced them.
+	 * @see #getCachedEncoding(Object)
 	 */
-	protected double[] hashEncoding = null;
+	private transient HashMap<Object, Object> encodingCache;
 
 	/**
-	 * A cached copy of this graph's index hash encoding.
+	 * Cached copies of this graph's dfs, canonical and ordered vertex codes.
 	 */
-	protected double[] indexEncoding = null;
+	private transient String dfsCode, canonicalCode, orderedVertexCode;
 	
 	/**
 	 * Creates a BioGraph object to represent a given string.
@@ -103,7 +106,28 @@ public class BioGraph extends NGramJGraph {
 	}
 
 	/**
-	 * Creates a BioGraph object to represent a given 
+	 * Creates a BioGraph object from an already built n-gram graph of a
+	 * given data string, without scanning the string again. This is used
+	 * by builders, such as {@link DnaGraphBuilder}, that create the
+	 * underlying graph themselves.
+	 *
+	 * @param uvg the n-gram graph of the data string
+	 * @param data the string represented by the graph
+	 * @param label the label of the data to be represented
+	 * @param order the order of the n-grams
+	 * @param correlationWindow the length of the correlation window
+	 */
+	protected BioGraph(UniqueVertexGraph uvg, String data, String label,
+			int order, int correlationWindow)
+	{
+		super("", order, order, correlationWindow);
+		DataString = data;
+		NGramGraphArray[0] = uvg;
+		bioLabel = label;
+	}
+
+	/**
+	 * Creates a BioGraph object to represent a given
 	 * {@link org.biojava.nbio.core.sequence.DNASequence}
 	 *
 	 * @param dnaSeq a <tt>DNASequence</tt> object 
@@ -126,6 +150,37 @@ public class BioGraph extends NGramJGraph {
 		return new BioGraph(dnaSeq.getSequenceAsString(), label);
 	}
 
+	/**
+	 * Creates a strand-agnostic BioGraph for a DNA string, in which every
+	 * k-mer is collapsed with its reverse complement into one canonical
+	 * vertex. The string and its reverse complement have the same graph.
+	 * @see DnaGraphBuilder
+	 *
+	 * @param data the DNA string to be represented
+	 * @param label the associated label
+	 * @return a canonical BioGraph that represents the string
+	 */
+	public static BioGraph canonicalGraph(String data, String label) {
+		return new DnaGraphBuilder(
+				DnaGraphBuilder.DEFAULT_ORDER,
+				DnaGraphBuilder.DEFAULT_WINDOW,
+				true).build(data, label);
+	}
+
+	/**
+	 * Creates a strand-agnostic BioGraph to represent a given
+	 * {@link org.biojava.nbio.core.sequence.DNASequence} with an
+	 * associated label.
+	 * @see #canonicalGraph(String, String)
+	 *
+	 * @param dnaSeq a DNASequence object
+	 * @param label the associated label
+	 * @return a canonical BioGraph that represents the sequence
+	 */
+	public static BioGraph canonicalGraph(DNASequence dnaSeq, String label) {
+		return canonicalGraph(dnaSeq.getSequenceAsString(), label);
+	}
+
 	/**
 	 * Returns the underlying {@link UniqueVertexGraph} object that 
 	 * implements the N-gram graph representation. By definition, it is
@@ -184,8 +239,11 @@ public class BioGraph extends NGramJGraph {
 	 * yet been tried using frequent fragments.
 	 * @return an array of dfs labels
 	 */
-	public String getDfsCode() {
-		return (new DepthFirstEncoder(getGraph())).getEncoding();
+	public synchronized String getDfsCode() {
+		if (dfsCode == null) {
+			dfsCode = (new DepthFirstEncoder(getGraph())).getEncoding();
+		}
+		return dfsCode;
 	}
 	
 	/**
@@ -208,8 +266,11 @@ public class BioGraph extends NGramJGraph {
 	 *
 	 * @return the canonical code of the graph
 	 */
-	public String getCanonicalCode() {
-		return (new CanonicalCoder(getGraph())).getEncoding();
+	public synchronized String getCanonicalCode() {
+		if (canonicalCode == null) {
+			canonicalCode = (new CanonicalCoder(getGraph())).getEncoding();
+		}
+		return canonicalCode;
 	}
 
 	/**
@@ -218,14 +279,90 @@ public class BioGraph extends NGramJGraph {
 	 *
 	 * @return the string representation of the weight-ordered vertices
 	 */
-	public String getOrderedVertexCode() {
-		String toRet = "";
-		for (Pair<JVertex, Double> p: getGraph().getOrderedWeightPairs()) {
-			toRet += "_" +
-				p.getFirst().getLabel() +
-				String.valueOf(p.getSecond());
+	public synchronized String getOrderedVertexCode() {
+		if (orderedVertexCode == null) {
+			StringBuilder toRet = new StringBuilder();
+			for (Pair<JVertex, Double> p: getGraph().getOrderedWeightPairs()) {
+				toRet.append("_")
+					.append(p.getFirst().getLabel())
+					.append(String.valueOf(p.getSecond()));
+			}
+			orderedVertexCode = toRet.toString();
+		}
+		return orderedVertexCode;
+	}
+
+	/**
+	 * Returns a cached encoding of this graph, previously stored with
+	 * {@link #cacheEncoding(Object, Object)}. Encoders key the encodings
+	 * by their configuration, so that the same graph can be encoded in
+	 * many ways.
+	 *
+	 * @param key the configuration of the encoder
+	 * @return the cached encoding, or null if none was stored
+	 */
+	public synchronized Object getCachedEncoding(Object key) {
+		return (encodingCache == null) ? null : encodingCache.get(key);
+	}
+
+	/**
+	 * Stores an encoding of this graph, to be retrieved with
+	 * {@link #getCachedEncoding(Object)}. The cache is cleared whenever
+	 * the graph's data string changes; callers that modify the underlying
+	 * graph directly should call {@link #clearCaches()}.
+	 *
+	 * @param key the configuration of the encoder
+	 * @param encoding the encoding to cache
+	 */
+	public synchronized void cacheEncoding(Object key, Object encoding) {
+		if (encodingCache == null) {
+			encodingCache = new HashMap<Object, Object>(4);
 		}
-		return toRet;
+		encodingCache.put(key, encoding);
+	}
+
+	/**
+	 * Discards all cached encodings and codes of this graph.
+	 */
+	public synchronized void clearCaches() {
+		encodingCache = null;
+		dfsCode = canonicalCode = orderedVertexCode = null;
+	}
+
+	/**
+	 * Sets a new data string for the graph, rebuilding the graph and
+	 * discarding all cached encodings and codes.
+	 *
+	 * @param sDataString the new data string
+	 */
+	@Override
+	public void setDataString(String sDataString) {
+		super.setDataString(sDataString);
+		clearCaches();
+	}
+
+	/**
+	 * Creates an immutable, array based snapshot of this graph, which is
+	 * smaller and faster to traverse than the underlying graph. Later
+	 * changes to this graph are not reflected in the snapshot.
+	 *
+	 * @return a {@link CompactBioGraph} with the contents of this graph
+	 */
+	public CompactBioGraph freeze() {
+		return freeze(null);
+	}
+
+	/**
+	 * Creates an immutable, array based snapshot of this graph, whose
+	 * vertices are the shared vertices of a {@link KmerDictionary}.
+	 *
+	 * @see #freeze()
+	 * @param dict the dictionary to take the vertices from
+	 * @return a {@link CompactBioGraph} with the contents of this graph
+	 */
+	public CompactBioGraph freeze(KmerDictionary dict) {
+		return CompactBioGraph.fromGraph(getGraph(),
+				bioLabel, DataString, MinSize, CorrelationWindow, dict);
 	}
 
 	/**
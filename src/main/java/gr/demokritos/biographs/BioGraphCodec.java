@@ -0,0 +1,368 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compact, versioned binary format for {@link BioGraph}s, meant as a
+ * replacement of the default java serialization when moving graphs
+ * between jobs. Graphs are written in their {@link CompactBioGraph} form:
+ * <ul>
+ * <li>vertex labels, in sorted order, either as delta coded packed k-mers
+ * (for DNA graphs) or as front coded strings,</li>
+ * <li>the outgoing adjacency of every vertex, with delta coded targets,</li>
+ * <li>the edge weights, as varints if they are all whole numbers or as
+ * floats otherwise.</li>
+ * </ul>
+ * All integers are written as unsigned LEB128 varints, and reading
+ * a graph back involves no reflection.
+ *
+ * @author VHarisop
+ */
+public final class BioGraphCodec {
+	private BioGraphCodec() {}
+
+	/**
+	 * The magic number at the start of every encoded graph ("BG").
+	 */
+	public static final int MAGIC = 0x4247;
+
+	/**
+	 * The version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	/* flags of the encoded graph */
+	private static final int HAS_DATA = 1;
+	private static final int KMER_LABELS = 2;
+	private static final int INT_WEIGHTS = 4;
+
+	/**
+	 * Writes a {@link BioGraph} to a binary output.
+	 *
+	 * @param bg the graph to write
+	 * @param out the output to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void write(BioGraph bg, DataOutput out) throws IOException {
+		write(bg.freeze(), out);
+	}
+
+	/**
+	 * Writes a {@link CompactBioGraph} to a binary output.
+	 *
+	 * @param cg the graph to write
+	 * @param out the output to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void write(CompactBioGraph cg, DataOutput out)
+	throws IOException
+	{
+		int n = cg.vertexCount(), m = cg.edgeCount();
+		int kmerLength = kmerLength(cg);
+		boolean intWeights = hasIntWeights(cg);
+
+		int flags = 0;
+		if (cg.getDataString() != null) { flags |= HAS_DATA; }
+		if (kmerLength > 0) { flags |= KMER_LABELS; }
+		if (intWeights) { flags |= INT_WEIGHTS; }
+
+		out.writeShort(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(flags);
+		writeString(out, cg.getLabel());
+		if (cg.getDataString() != null) {
+			writeString(out, cg.getDataString());
+		}
+		writeVarLong(out, cg.getOrder());
+		writeVarLong(out, cg.getWindowSize());
+		writeVarLong(out, n);
+		writeVarLong(out, m);
+
+		/* vertex labels, sorted */
+		if (kmerLength > 0) {
+			writeVarLong(out, kmerLength);
+			long prev = 0L;
+			for (int v = 0; v < n; ++v) {
+				long kmer = DnaKmers.pack(cg.getVertexLabel(v));
+				writeVarLong(out, kmer - prev);
+				prev = kmer;
+			}
+		}
+		else {
+			String prev = "";
+			for (int v = 0; v < n; ++v) {
+				String curr = cg.getVertexLabel(v);
+				int common = commonPrefix(prev, curr);
+				writeVarLong(out, common);
+				writeString(out, curr.substring(common));
+				prev = curr;
+			}
+		}
+
+		/* outgoing adjacency, with sorted targets */
+		for (int v = 0; v < n; ++v) {
+			int start = cg.outStart(v), end = cg.outStart(v + 1);
+			writeVarLong(out, end - start);
+			int prev = 0;
+			for (int i = start; i < end; ++i) {
+				writeVarLong(out, cg.outTarget(i) - prev);
+				prev = cg.outTarget(i);
+			}
+		}
+
+		for (int i = 0; i < m; ++i) {
+			if (intWeights) {
+				writeVarLong(out, (long) cg.outWeight(i));
+			}
+			else {
+				out.writeFloat(cg.outWeight(i));
+			}
+		}
+	}
+
+	/**
+	 * Returns the common length of the graph's vertex labels if they are
+	 * all packable k-mers, or 0 otherwise.
+	 */
+	private static int kmerLength(CompactBioGraph cg) {
+		if (cg.vertexCount() == 0) {
+			return 0;
+		}
+		int len = cg.getVertexLabel(0).length();
+		if (len < 1 || len > DnaKmers.MAX_ORDER) {
+			return 0;
+		}
+		for (int v = 0; v < cg.vertexCount(); ++v) {
+			String label = cg.getVertexLabel(v);
+			if (label.length() != len) {
+				return 0;
+			}
+			for (int i = 0; i < len; ++i) {
+				char c = label.charAt(i);
+				if (c != 'A' && c != 'C' && c != 'G' && c != 'T') {
+					return 0;
+				}
+			}
+		}
+		return len;
+	}
+
+	private static boolean hasIntWeights(CompactBioGraph cg) {
+		for (int i = 0; i < cg.edgeCount(); ++i) {
+			float w = cg.outWeight(i);
+			if (w < 0 || w > Integer.MAX_VALUE || w != Math.rint(w)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int commonPrefix(String a, String b) {
+		int len = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < len && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads a graph from a binary input as a {@link CompactBioGraph}.
+	 *
+	 * @param in the input to read from
+	 * @return the graph that was read
+	 * @throws IOException if the input is malformed or reading fails
+	 */
+	public static CompactBioGraph readCompact(DataInput in)
+	throws IOException
+	{
+		if (in.readUnsignedShort() != MAGIC) {
+			throw new IOException("input is not an encoded graph");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported graph version " + version);
+		}
+		int flags = in.readUnsignedByte();
+		String label = readString(in);
+		String data = ((flags & HAS_DATA) != 0) ? readString(in) : null;
+		int order = readVarInt(in);
+		int window = readVarInt(in);
+		int n = readVarInt(in);
+		int m = readVarInt(in);
+
+		JVertex[] vs = new JVertex[n];
+		if ((flags & KMER_LABELS) != 0) {
+			int len = readVarInt(in);
+			DnaKmers.checkOrder(len);
+			long kmer = 0L;
+			for (int v = 0; v < n; ++v) {
+				kmer += readVarLong(in);
+				vs[v] = new NGramVertex(DnaKmers.unpack(kmer, len));
+			}
+		}
+		else {
+			String prev = "";
+			for (int v = 0; v < n; ++v) {
+				int common = readVarInt(in);
+				if (common > prev.length()) {
+					throw new IOException("malformed vertex label");
+				}
+				prev = prev.substring(0, common) + readString(in);
+				vs[v] = new NGramVertex(prev);
+			}
+		}
+
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		int e = 0;
+		for (int v = 0; v < n; ++v) {
+			int deg = readVarInt(in);
+			int target = 0;
+			for (int i = 0; i < deg; ++i, ++e) {
+				if (e >= m) {
+					throw new IOException("malformed adjacency");
+				}
+				target += readVarInt(in);
+				if (target >= n) {
+					throw new IOException("malformed adjacency");
+				}
+				src[e] = v;
+				dst[e] = target;
+			}
+		}
+		if (e != m) {
+			throw new IOException("malformed adjacency");
+		}
+
+		float[] weights = new float[m];
+		boolean intWeights = (flags & INT_WEIGHTS) != 0;
+		for (int i = 0; i < m; ++i) {
+			weights[i] = intWeights ? readVarLong(in) : in.readFloat();
+		}
+		return new CompactBioGraph(label, data, order, window,
+				vs, src, dst, weights, m, null);
+	}
+
+	/**
+	 * Reads a {@link BioGraph} from a binary input.
+	 *
+	 * @param in the input to read from
+	 * @return the graph that was read
+	 * @throws IOException if the input is malformed or reading fails
+	 */
+	public static BioGraph read(DataInput in) throws IOException {
+		return readCompact(in).toBioGraph();
+	}
+
+	/**
+	 * Encodes a {@link BioGraph} into a byte array.
+	 *
+	 * @param bg the graph to encode
+	 * @return the encoded graph
+	 */
+	public static byte[] toBytes(BioGraph bg) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			write(bg, new DataOutputStream(bytes));
+		}
+		catch (IOException ex) {
+			/* writing to memory never fails */
+			throw new IllegalStateException(ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a {@link BioGraph} from a byte array.
+	 *
+	 * @param bytes the encoded graph
+	 * @return the decoded graph
+	 * @throws IOException if the bytes are not a valid encoded graph
+	 */
+	public static BioGraph fromBytes(byte[] bytes) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 *
+	 * @param out the output to write to
+	 * @param value the non-negative value to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writeVarLong(DataOutput out, long value)
+	throws IOException
+	{
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 *
+	 * @param in the input to read from
+	 * @return the value that was read
+	 * @throws IOException if the varint is malformed or reading fails
+	 */
+	public static long readVarLong(DataInput in) throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("varint out of range: " + value);
+		}
+		return (int) value;
+	}
+
+	private static void writeString(DataOutput out, String s)
+	throws IOException
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
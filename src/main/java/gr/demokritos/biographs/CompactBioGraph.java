@@ -0,0 +1,519 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import gr.demokritos.biographs.structs.KmerDictionary;
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable, array based snapshot of a {@link BioGraph}, meant for
+ * graphs that are built once and then scanned many times (e.g. query
+ * graphs). Vertices are identified by dense int ids, assigned in the
+ * lexicographic order of their labels, and the adjacency is stored in
+ * compressed sparse row (CSR) form for both outgoing and incoming edges,
+ * with the edges of every row sorted by the id of their other endpoint.
+ *
+ * Instances are obtained via {@link BioGraph#freeze()} or
+ * {@link DnaGraphBuilder#freeze(String)}. Graphs frozen with a
+ * {@link KmerDictionary} share their vertex objects with all other graphs
+ * of the same dictionary and also know the dictionary id of every vertex.
+ *
+ * @author VHarisop
+ */
+public final class CompactBioGraph {
+	/**
+	 * The label of the graph.
+	 */
+	private final String label;
+
+	/**
+	 * The data string that the graph represents, or null if unknown.
+	 */
+	private final String data;
+
+	/**
+	 * The order of the n-grams and the correlation window.
+	 */
+	private final int order, window;
+
+	/**
+	 * The vertices and their labels, indexed by vertex id.
+	 */
+	private final JVertex[] vertices;
+	private final String[] labels;
+
+	/**
+	 * The dictionary the vertices were taken from, if any, and the
+	 * dictionary id of every vertex.
+	 */
+	private final KmerDictionary dictionary;
+	private final int[] globalIds;
+
+	/**
+	 * The outgoing edges in CSR form: the edges of vertex v are found
+	 * in positions [outOffsets[v], outOffsets[v + 1]) of the target and
+	 * weight arrays.
+	 */
+	private final int[] outOffsets;
+	private final int[] outTargets;
+	private final float[] outWeights;
+
+	/**
+	 * The incoming edges in CSR form, laid out like the outgoing ones.
+	 */
+	private final int[] inOffsets;
+	private final int[] inSources;
+	private final float[] inWeights;
+
+	/**
+	 * Creates a compact graph from a list of vertices, sorted by label,
+	 * and a list of weighted edges between their ids, in any order.
+	 *
+	 * @param label the label of the graph
+	 * @param data the represented string, or null
+	 * @param order the order of the n-grams
+	 * @param window the length of the correlation window
+	 * @param vertices the vertices of the graph, sorted by label
+	 * @param src the source id of every edge
+	 * @param dst the target id of every edge
+	 * @param weights the weight of every edge
+	 * @param nEdges the number of edges in the above arrays
+	 * @param dict the dictionary to take the vertices from, or null
+	 */
+	CompactBioGraph(String label, String data, int order, int window,
+			JVertex[] vertices, int[] src, int[] dst, float[] weights,
+			int nEdges, KmerDictionary dict)
+	{
+		this.label = label;
+		this.data = data;
+		this.order = order;
+		this.window = window;
+		this.vertices = vertices;
+
+		int n = vertices.length;
+		this.labels = new String[n];
+		this.dictionary = dict;
+		this.globalIds = (dict == null) ? null : new int[n];
+		for (int i = 0; i < n; ++i) {
+			if (dict != null) {
+				globalIds[i] = dict.idOf(vertices[i].getLabel());
+				vertices[i] = dict.getVertex(globalIds[i]);
+			}
+			labels[i] = vertices[i].getLabel();
+		}
+
+		/* bucket the edges by target first, then distribute them by
+		 * source in order of target, so that every outgoing row ends up
+		 * sorted; the incoming rows are then filled from the outgoing
+		 * ones, sorted by source for the same reason */
+		int[] byTarget = bucketOrder(dst, nEdges, n, null);
+		int[] bySource = bucketOrder(src, nEdges, n, byTarget);
+
+		outOffsets = offsets(src, nEdges, n);
+		outTargets = new int[nEdges];
+		outWeights = new float[nEdges];
+		for (int i = 0; i < nEdges; ++i) {
+			outTargets[i] = dst[bySource[i]];
+			outWeights[i] = weights[bySource[i]];
+		}
+
+		inOffsets = offsets(dst, nEdges, n);
+		inSources = new int[nEdges];
+		inWeights = new float[nEdges];
+		int[] fill = Arrays.copyOf(inOffsets, n);
+		for (int v = 0; v < n; ++v) {
+			for (int i = outOffsets[v]; i < outOffsets[v + 1]; ++i) {
+				int pos = fill[outTargets[i]]++;
+				inSources[pos] = v;
+				inWeights[pos] = outWeights[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the row offsets of a CSR layout keyed by the given ids.
+	 */
+	private static int[] offsets(int[] keys, int nEdges, int n) {
+		int[] offs = new int[n + 1];
+		for (int i = 0; i < nEdges; ++i) {
+			offs[keys[i] + 1]++;
+		}
+		for (int v = 0; v < n; ++v) {
+			offs[v + 1] += offs[v];
+		}
+		return offs;
+	}
+
+	/**
+	 * Returns a stable counting sort of the edge indices (visited in the
+	 * order given by <tt>visit</tt>, or in natural order if it is null)
+	 * by the given ids.
+	 */
+	private static int[] bucketOrder(int[] keys, int nEdges, int n, int[] visit) {
+		int[] fill = offsets(keys, nEdges, n);
+		int[] order = new int[nEdges];
+		for (int i = 0; i < nEdges; ++i) {
+			int e = (visit == null) ? i : visit[i];
+			order[fill[keys[e]]++] = e;
+		}
+		return order;
+	}
+
+	/**
+	 * Creates a compact snapshot of a {@link UniqueVertexGraph}.
+	 *
+	 * @param uvg the graph to take a snapshot of
+	 * @param label the label of the graph
+	 * @param data the represented string, or null
+	 * @param order the order of the n-grams
+	 * @param window the length of the correlation window
+	 * @param dict the dictionary to take the vertices from, or null
+	 * @return the compact form of the graph
+	 */
+	static CompactBioGraph fromGraph(UniqueVertexGraph uvg, String label,
+			String data, int order, int window, KmerDictionary dict)
+	{
+		JVertex[] vs = uvg.vertexSet().toArray(new JVertex[0]);
+		Arrays.sort(vs, new Comparator<JVertex>() {
+			@Override
+			public int compare(JVertex vA, JVertex vB) {
+				return vA.getLabel().compareTo(vB.getLabel());
+			}
+		});
+		String[] keys = new String[vs.length];
+		for (int i = 0; i < vs.length; ++i) {
+			keys[i] = vs[i].getLabel();
+		}
+
+		int nEdges = uvg.edgeSet().size();
+		int[] src = new int[nEdges];
+		int[] dst = new int[nEdges];
+		float[] weights = new float[nEdges];
+		int i = 0;
+		for (Edge e: uvg.edgeSet()) {
+			src[i] = Arrays.binarySearch(
+					keys, uvg.getEdgeSource(e).getLabel());
+			dst[i] = Arrays.binarySearch(
+					keys, uvg.getEdgeTarget(e).getLabel());
+			weights[i] = (float) uvg.getEdgeWeight(e);
+			i++;
+		}
+		return new CompactBioGraph(label, data, order, window,
+				vs, src, dst, weights, nEdges, dict);
+	}
+
+	/**
+	 * Simple getter for the graph's label.
+	 *
+	 * @return the label of the graph
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * Simple getter for the represented data string.
+	 *
+	 * @return the string represented by the graph, or null if the graph
+	 * was not built from a single string
+	 */
+	public String getDataString() {
+		return data;
+	}
+
+	/**
+	 * Simple getter for the order of the graph's n-grams.
+	 *
+	 * @return the n-gram order
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Simple getter for the graph's correlation window.
+	 *
+	 * @return the length of the correlation window
+	 */
+	public int getWindowSize() {
+		return window;
+	}
+
+	/**
+	 * Returns the number of vertices in the graph.
+	 *
+	 * @return the vertex count
+	 */
+	public int vertexCount() {
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the number of edges in the graph.
+	 *
+	 * @return the edge count
+	 */
+	public int edgeCount() {
+		return outTargets.length;
+	}
+
+	/**
+	 * Returns the vertex with a given id.
+	 *
+	 * @param v the vertex id
+	 * @return the corresponding vertex
+	 */
+	public JVertex getVertex(int v) {
+		return vertices[v];
+	}
+
+	/**
+	 * Returns the label of the vertex with a given id.
+	 *
+	 * @param v the vertex id
+	 * @return the vertex's label
+	 */
+	public String getVertexLabel(int v) {
+		return labels[v];
+	}
+
+	/**
+	 * Returns the dictionary that the graph's vertices were taken from.
+	 *
+	 * @return the graph's dictionary, or null if it has none
+	 */
+	public KmerDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the dictionary id of the vertex with a given id.
+	 *
+	 * @param v the vertex id
+	 * @return the vertex's id in the graph's dictionary, or -1 if the
+	 * graph has no dictionary
+	 */
+	public int getGlobalId(int v) {
+		return (globalIds == null) ? -1 : globalIds[v];
+	}
+
+	/**
+	 * Returns the id of the vertex with a given label.
+	 *
+	 * @param vLabel the label to look for
+	 * @return the vertex id, or -1 if no such vertex exists
+	 */
+	public int indexOf(String vLabel) {
+		int v = Arrays.binarySearch(labels, vLabel);
+		return (v < 0) ? -1 : v;
+	}
+
+	/**
+	 * Maps the vertex ids of this graph to the ids of the vertices with
+	 * the same labels in another graph, by merging their sorted labels.
+	 *
+	 * @param other the other graph
+	 * @return an array holding the id in the other graph of every vertex
+	 * of this graph, or -1 for vertices that are not present there
+	 */
+	public int[] mapVertices(CompactBioGraph other) {
+		int[] idMap = new int[labels.length];
+		int j = 0, nOther = other.labels.length;
+		for (int i = 0; i < idMap.length; ++i) {
+			int cmp = -1;
+			while (j < nOther &&
+				  (cmp = other.labels[j].compareTo(labels[i])) < 0)
+			{
+				j++;
+			}
+			idMap[i] = (j < nOther && cmp == 0) ? j : -1;
+		}
+		return idMap;
+	}
+
+	/**
+	 * Returns the number of outgoing edges of a vertex.
+	 *
+	 * @param v the vertex id
+	 * @return the vertex's out-degree
+	 */
+	public int outDegree(int v) {
+		return outOffsets[v + 1] - outOffsets[v];
+	}
+
+	/**
+	 * Returns the number of incoming edges of a vertex.
+	 *
+	 * @param v the vertex id
+	 * @return the vertex's in-degree
+	 */
+	public int inDegree(int v) {
+		return inOffsets[v + 1] - inOffsets[v];
+	}
+
+	/**
+	 * Returns the number of distinct edges incident to a vertex, where
+	 * a self loop is counted once.
+	 *
+	 * @param v the vertex id
+	 * @return the vertex's degree
+	 */
+	public int degree(int v) {
+		return inDegree(v) + outDegree(v) - (edgeIndex(v, v) < 0 ? 0 : 1);
+	}
+
+	/**
+	 * Returns the position of the first outgoing edge of a vertex.
+	 * The outgoing edges of <tt>v</tt> occupy positions
+	 * [outStart(v), outStart(v + 1)).
+	 *
+	 * @param v the vertex id, in [0, vertexCount()]
+	 * @return the start of the vertex's outgoing row
+	 */
+	public int outStart(int v) {
+		return outOffsets[v];
+	}
+
+	/**
+	 * Returns the target id of the outgoing edge at a given position.
+	 *
+	 * @param i the edge position
+	 * @return the id of the edge's target
+	 */
+	public int outTarget(int i) {
+		return outTargets[i];
+	}
+
+	/**
+	 * Returns the weight of the outgoing edge at a given position.
+	 *
+	 * @param i the edge position
+	 * @return the weight of the edge
+	 */
+	public float outWeight(int i) {
+		return outWeights[i];
+	}
+
+	/**
+	 * Returns the position of the first incoming edge of a vertex.
+	 * The incoming edges of <tt>v</tt> occupy positions
+	 * [inStart(v), inStart(v + 1)).
+	 *
+	 * @param v the vertex id, in [0, vertexCount()]
+	 * @return the start of the vertex's incoming row
+	 */
+	public int inStart(int v) {
+		return inOffsets[v];
+	}
+
+	/**
+	 * Returns the source id of the incoming edge at a given position.
+	 *
+	 * @param i the edge position
+	 * @return the id of the edge's source
+	 */
+	public int inSource(int i) {
+		return inSources[i];
+	}
+
+	/**
+	 * Returns the weight of the incoming edge at a given position.
+	 *
+	 * @param i the edge position
+	 * @return the weight of the edge
+	 */
+	public float inWeight(int i) {
+		return inWeights[i];
+	}
+
+	/**
+	 * Returns the position of the edge between two vertices in the
+	 * outgoing edge arrays.
+	 *
+	 * @param src the source id
+	 * @param dst the target id
+	 * @return the position of the edge, or -1 if there is no such edge
+	 */
+	public int edgeIndex(int src, int dst) {
+		int pos = Arrays.binarySearch(
+				outTargets, outOffsets[src], outOffsets[src + 1], dst);
+		return (pos < 0) ? -1 : pos;
+	}
+
+	/**
+	 * Returns the sum of the weights of the incoming edges of a vertex.
+	 *
+	 * @param v the vertex id
+	 * @return the incoming weight sum
+	 */
+	public double incomingWeightSumOf(int v) {
+		double sum = 0.0;
+		for (int i = inOffsets[v]; i < inOffsets[v + 1]; ++i) {
+			sum += inWeights[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the sum of the weights of all edges incident to a vertex,
+	 * where a self loop is counted once.
+	 *
+	 * @param v the vertex id
+	 * @return the incident weight sum
+	 */
+	public double weightSumOf(int v) {
+		double sum = incomingWeightSumOf(v);
+		for (int i = outOffsets[v]; i < outOffsets[v + 1]; ++i) {
+			if (outTargets[i] != v) {
+				sum += outWeights[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Creates a {@link UniqueVertexGraph} with the vertices and edges
+	 * of this graph. The vertex objects are shared with this graph.
+	 *
+	 * @return a mutable copy of this graph
+	 */
+	public UniqueVertexGraph toGraph() {
+		UniqueVertexGraph uvg = new UniqueVertexGraph();
+		for (JVertex v: vertices) {
+			uvg.add(v);
+		}
+		for (int v = 0; v < vertices.length; ++v) {
+			for (int i = outOffsets[v]; i < outOffsets[v + 1]; ++i) {
+				Edge e = uvg.addEdge(vertices[v], vertices[outTargets[i]]);
+				uvg.setEdgeWeight(e, outWeights[i]);
+			}
+		}
+		return uvg;
+	}
+
+	/**
+	 * Creates a {@link BioGraph} with the contents of this graph.
+	 *
+	 * @return a mutable copy of this graph
+	 */
+	public BioGraph toBioGraph() {
+		return new BioGraph(toGraph(),
+				(data == null) ? "" : data, label, order, window);
+	}
+}
@@ -0,0 +1,604 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import gr.demokritos.biographs.structs.KmerDictionary;
+import gr.demokritos.biographs.structs.LongIntHashMap;
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A builder for the n-gram graphs of DNA sequences, which packs every
+ * k-mer into a <tt>long</tt> (2 bits per base) and accumulates edge
+ * counts in a primitive hash map. No label or vertex objects are created
+ * while the sequence is scanned; each distinct k-mer is materialized only
+ * once, when the graph is requested.
+ *
+ * The resulting graph is the one that {@link BioGraph} would build for
+ * the same sequence, order and correlation window: every k-mer is linked
+ * to each of the k-mers preceding it in the window by an edge whose weight
+ * is the number of their co-occurences. K-mers that contain symbols other
+ * than A, C, G, T are skipped (along with their edges) and lower case
+ * bases are treated as upper case.
+ *
+ * In canonical mode, every k-mer is collapsed with its reverse complement
+ * into a single vertex, labelled by the smaller of the two, and every edge
+ * is directed from the smaller to the larger of its canonical endpoints.
+ * A sequence and its reverse complement then have the same graph, so
+ * reads can be indexed and queried regardless of their strand.
+ *
+ * Bases are pushed one at a time, so a sequence may be fed in chunks
+ * (e.g. FASTA lines). Long sequences can instead be split into segments
+ * that are scanned in parallel, see {@link #buildParallel(String, String)}.
+ * This class is not thread-safe.
+ *
+ * @author VHarisop
+ */
+public final class DnaGraphBuilder {
+	/**
+	 * The default n-gram order, equal to the one used by {@link BioGraph}.
+	 */
+	public static final int DEFAULT_ORDER = 3;
+
+	/**
+	 * The default correlation window, equal to the one used by
+	 * {@link BioGraph}.
+	 */
+	public static final int DEFAULT_WINDOW = 3;
+
+	/**
+	 * The minimum number of k-mers scanned by a single task when building
+	 * graphs in parallel.
+	 */
+	public static final int MIN_SEGMENT = 1 << 16;
+
+	/**
+	 * The order of the k-mers.
+	 */
+	private final int order;
+
+	/**
+	 * The length of the correlation window.
+	 */
+	private final int window;
+
+	/**
+	 * Indicates if k-mers are collapsed with their reverse complements.
+	 */
+	private final boolean canonical;
+
+	/**
+	 * The mask that keeps the bits of a single packed k-mer.
+	 */
+	private final long mask;
+
+	/**
+	 * Maps packed k-mers to dense vertex ids.
+	 */
+	private LongIntHashMap vertexIds;
+
+	/**
+	 * The packed k-mer of every vertex id.
+	 */
+	private long[] kmers;
+
+	/**
+	 * Maps (source id, target id) pairs to co-occurence counts.
+	 */
+	private LongIntHashMap edgeCounts;
+
+	/**
+	 * A ring buffer holding the vertex ids of the k-mers in the current
+	 * correlation window, with -1 for skipped k-mers.
+	 */
+	private final int[] recent;
+	private int recentHead, recentFilled;
+
+	/**
+	 * The rolling packed value of the most recent bases.
+	 */
+	private long current;
+
+	/**
+	 * The rolling reverse complement of {@link #current}.
+	 */
+	private long currentRc;
+
+	/**
+	 * The number of consecutive valid bases seen so far, and the total
+	 * number of bases seen.
+	 */
+	private int validRun, basesSeen;
+
+	/**
+	 * The index (counted from the last reset) of the first k-mer whose
+	 * edges are recorded. Earlier k-mers only fill the correlation window,
+	 * which is the case for the overlap of parallel segments.
+	 */
+	private int ownedFrom;
+
+	/**
+	 * The dictionary that vertices are taken from when materializing
+	 * graphs, or null to create new vertices.
+	 */
+	private KmerDictionary dictionary;
+
+	/**
+	 * Creates a builder using the default order and correlation window.
+	 */
+	public DnaGraphBuilder() {
+		this(DEFAULT_ORDER, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates a builder for graphs of a given n-gram order and
+	 * correlation window.
+	 *
+	 * @param order the order of the n-grams, at most
+	 * {@link DnaKmers#MAX_ORDER}
+	 * @param correlationWindow the length of the correlation window
+	 */
+	public DnaGraphBuilder(int order, int correlationWindow) {
+		this(order, correlationWindow, false);
+	}
+
+	/**
+	 * Creates a builder for graphs of a given n-gram order and
+	 * correlation window, optionally in canonical (strand-agnostic) mode.
+	 *
+	 * @param order the order of the n-grams, at most
+	 * {@link DnaKmers#MAX_ORDER}
+	 * @param correlationWindow the length of the correlation window
+	 * @param canonical true to collapse k-mers with their reverse
+	 * complements
+	 */
+	public DnaGraphBuilder(int order, int correlationWindow, boolean canonical) {
+		DnaKmers.checkOrder(order);
+		if (correlationWindow < 0) {
+			throw new IllegalArgumentException(
+					"Correlation window must be non-negative");
+		}
+		this.order = order;
+		this.window = correlationWindow;
+		this.canonical = canonical;
+		this.mask = DnaKmers.mask(order);
+		this.vertexIds = new LongIntHashMap();
+		this.edgeCounts = new LongIntHashMap();
+		this.kmers = new long[16];
+		this.recent = new int[correlationWindow];
+	}
+
+	/**
+	 * Simple getter for the builder's n-gram order.
+	 *
+	 * @return the order of the n-grams
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Indicates if the builder collapses k-mers with their reverse
+	 * complements.
+	 *
+	 * @return true if the builder is in canonical mode
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+
+	/**
+	 * Simple getter for the builder's correlation window.
+	 *
+	 * @return the length of the correlation window
+	 */
+	public int getWindowSize() {
+		return window;
+	}
+
+	/**
+	 * Sets a {@link KmerDictionary} whose shared vertices will be used
+	 * in all graphs created by this builder from now on.
+	 *
+	 * @param dict the dictionary to use, or null to create new vertices
+	 */
+	public void setDictionary(KmerDictionary dict) {
+		dictionary = dict;
+	}
+
+	/**
+	 * Simple getter for the builder's dictionary.
+	 *
+	 * @return the dictionary in use, or null if there is none
+	 */
+	public KmerDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the vertex for a packed k-mer, taking it from the
+	 * dictionary if one is set.
+	 */
+	private JVertex newVertex(long kmer) {
+		String label = DnaKmers.unpack(kmer, order);
+		return (dictionary == null) ?
+			new NGramVertex(label) : dictionary.vertexOf(label);
+	}
+
+	/**
+	 * Clears all accumulated vertices and edges, so that the builder can
+	 * be reused for a new sequence.
+	 */
+	public void reset() {
+		vertexIds.clear();
+		edgeCounts.clear();
+		recentHead = recentFilled = 0;
+		current = currentRc = 0L;
+		validRun = basesSeen = ownedFrom = 0;
+	}
+
+	/**
+	 * Appends a single base to the sequence being built.
+	 *
+	 * @param c the base character
+	 */
+	public void addBase(char c) {
+		int code = DnaKmers.baseCode(c);
+		if (code < 0) {
+			validRun = 0;
+		}
+		else {
+			current = ((current << 2) | code) & mask;
+			currentRc = (currentRc >>> 2) |
+				(((long) (3 - code)) << (2 * (order - 1)));
+			validRun++;
+		}
+
+		/* no k-mer is complete before the first order bases */
+		if (++basesSeen < order) {
+			return;
+		}
+
+		int id = -1;
+		if (validRun >= order) {
+			id = vertexId(canonical ? Math.min(current, currentRc) : current);
+			/* link the new k-mer to all k-mers preceding it
+			 * in the correlation window */
+			int edges = (basesSeen - order >= ownedFrom) ? recentFilled : 0;
+			for (int i = 0; i < edges; ++i) {
+				if (recent[i] >= 0) {
+					edgeCounts.addTo(orientedEdgeKey(id, recent[i]), 1);
+				}
+			}
+		}
+		if (window > 0) {
+			recent[recentHead] = id;
+			recentHead = (recentHead + 1) % window;
+			if (recentFilled < window) {
+				recentFilled++;
+			}
+		}
+	}
+
+	/**
+	 * Appends all bases of a character sequence to the sequence being
+	 * built.
+	 *
+	 * @param seq the bases to append
+	 */
+	public void addSequence(CharSequence seq) {
+		for (int i = 0; i < seq.length(); ++i) {
+			addBase(seq.charAt(i));
+		}
+	}
+
+	/**
+	 * Returns the id of a packed k-mer, registering it as a new vertex
+	 * if it has not been seen before.
+	 */
+	private int vertexId(long kmer) {
+		int id = vertexIds.get(kmer, -1);
+		if (id < 0) {
+			id = vertexIds.size();
+			if (id == kmers.length) {
+				kmers = Arrays.copyOf(kmers, id << 1);
+			}
+			kmers[id] = kmer;
+			vertexIds.put(kmer, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the key of an edge from a new k-mer to a preceding one,
+	 * which in canonical mode is directed from the smaller to the larger
+	 * k-mer, so that it does not depend on the strand.
+	 */
+	private long orientedEdgeKey(int source, int target) {
+		if (canonical && kmers[source] > kmers[target]) {
+			return edgeKey(target, source);
+		}
+		return edgeKey(source, target);
+	}
+
+	private static long edgeKey(int source, int target) {
+		return (((long) source) << 32) | (target & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the number of distinct k-mers accumulated so far.
+	 *
+	 * @return the number of vertices
+	 */
+	public int vertexCount() {
+		return vertexIds.size();
+	}
+
+	/**
+	 * Returns the number of distinct edges accumulated so far.
+	 *
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return edgeCounts.size();
+	}
+
+	/**
+	 * Materializes the accumulated vertices and edges into a new
+	 * {@link UniqueVertexGraph}.
+	 *
+	 * @return the n-gram graph of the bases added so far
+	 */
+	public UniqueVertexGraph toGraph() {
+		UniqueVertexGraph uvg = new UniqueVertexGraph();
+		int nVertices = vertexIds.size();
+		JVertex[] vertices = new JVertex[nVertices];
+		for (int i = 0; i < nVertices; ++i) {
+			vertices[i] = newVertex(kmers[i]);
+			uvg.add(vertices[i]);
+		}
+		for (int slot = 0; slot < edgeCounts.capacity(); ++slot) {
+			if (!edgeCounts.isUsed(slot)) {
+				continue;
+			}
+			long key = edgeCounts.keyAt(slot);
+			Edge e = uvg.addEdge(
+					vertices[(int) (key >>> 32)],
+					vertices[(int) key]);
+			uvg.setEdgeWeight(e, edgeCounts.valueAt(slot));
+		}
+		return uvg;
+	}
+
+	/**
+	 * Creates a {@link CompactBioGraph} directly from the accumulated
+	 * vertices and edges, without building an intermediate
+	 * {@link UniqueVertexGraph}.
+	 *
+	 * @param label the label of the graph
+	 * @return the compact n-gram graph of the bases added so far
+	 */
+	public CompactBioGraph freeze(String label) {
+		int nVertices = vertexIds.size();
+
+		/* packed k-mers sort like their labels, so the rank of each
+		 * k-mer is its id in the compact graph */
+		long[] sorted = Arrays.copyOf(kmers, nVertices);
+		Arrays.sort(sorted);
+		int[] rank = new int[nVertices];
+		for (int i = 0; i < nVertices; ++i) {
+			rank[i] = Arrays.binarySearch(sorted, kmers[i]);
+		}
+		JVertex[] vertices = new JVertex[nVertices];
+		for (int i = 0; i < nVertices; ++i) {
+			vertices[i] = newVertex(sorted[i]);
+		}
+
+		int nEdges = edgeCounts.size();
+		int[] src = new int[nEdges];
+		int[] dst = new int[nEdges];
+		float[] weights = new float[nEdges];
+		int e = 0;
+		for (int slot = 0; slot < edgeCounts.capacity(); ++slot) {
+			if (!edgeCounts.isUsed(slot)) {
+				continue;
+			}
+			long key = edgeCounts.keyAt(slot);
+			src[e] = rank[(int) (key >>> 32)];
+			dst[e] = rank[(int) key];
+			weights[e] = edgeCounts.valueAt(slot);
+			e++;
+		}
+		return new CompactBioGraph(label, null, order, window,
+				vertices, src, dst, weights, nEdges, dictionary);
+	}
+
+	/**
+	 * Adds all vertices and edges of another builder to this one, summing
+	 * the weights of common edges.
+	 *
+	 * @param other the builder whose graph to add
+	 */
+	private void mergeFrom(DnaGraphBuilder other) {
+		int[] remap = new int[other.vertexIds.size()];
+		for (int i = 0; i < remap.length; ++i) {
+			remap[i] = vertexId(other.kmers[i]);
+		}
+		for (int slot = 0; slot < other.edgeCounts.capacity(); ++slot) {
+			if (!other.edgeCounts.isUsed(slot)) {
+				continue;
+			}
+			long key = other.edgeCounts.keyAt(slot);
+			edgeCounts.addTo(
+					edgeKey(remap[(int) (key >>> 32)], remap[(int) key]),
+					other.edgeCounts.valueAt(slot));
+		}
+	}
+
+	/**
+	 * A fork-join task that scans a range of k-mer positions of a sequence,
+	 * splitting it in halves until it is short enough, and merges the
+	 * partial graphs of the halves.
+	 */
+	private static final class SegmentTask
+		extends RecursiveTask<DnaGraphBuilder>
+	{
+		static final long serialVersionUID = 1L;
+
+		private final CharSequence data;
+		private final int order, window, from, to, segmentLength;
+		private final boolean canonical;
+
+		SegmentTask(CharSequence data, int order, int window,
+				boolean canonical, int from, int to, int segmentLength)
+		{
+			this.data = data;
+			this.order = order;
+			this.window = window;
+			this.canonical = canonical;
+			this.from = from;
+			this.to = to;
+			this.segmentLength = segmentLength;
+		}
+
+		@Override
+		protected DnaGraphBuilder compute() {
+			if (to - from <= segmentLength) {
+				DnaGraphBuilder segment =
+					new DnaGraphBuilder(order, window, canonical);
+
+				/* the segment owns the k-mers starting in [from, to) and
+				 * overlaps with the previous one by the correlation window,
+				 * so that the edges of its first k-mers are complete */
+				int first = Math.max(0, from - window);
+				int end = Math.min(data.length(), to + order - 1);
+				segment.ownedFrom = from - first;
+				for (int i = first; i < end; ++i) {
+					segment.addBase(data.charAt(i));
+				}
+				return segment;
+			}
+
+			int mid = (from + to) >>> 1;
+			SegmentTask left = new SegmentTask(data,
+					order, window, canonical, from, mid, segmentLength);
+			left.fork();
+			DnaGraphBuilder right = new SegmentTask(data,
+					order, window, canonical, mid, to, segmentLength).compute();
+			DnaGraphBuilder merged = left.join();
+
+			/* merge the smaller graph into the larger one */
+			if (merged.vertexCount() < right.vertexCount()) {
+				right.mergeFrom(merged);
+				return right;
+			}
+			merged.mergeFrom(right);
+			return merged;
+		}
+	}
+
+	/**
+	 * Builds the {@link BioGraph} of a DNA string on the common fork-join
+	 * pool, splitting it into segments of a size proportional to the pool's
+	 * parallelism. The builder is reset first.
+	 *
+	 * @see #buildParallel(String, String, ForkJoinPool, int) buildParallel
+	 * @param data the DNA string to be represented
+	 * @param label the label of the graph
+	 * @return a BioGraph representing the string
+	 */
+	public BioGraph buildParallel(String data, String label) {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int segment = Math.max(
+				MIN_SEGMENT, data.length() / (4 * pool.getParallelism()));
+		return buildParallel(data, label, pool, segment);
+	}
+
+	/**
+	 * Builds the {@link BioGraph} of a DNA string by scanning segments of
+	 * it in parallel on a given fork-join pool and merging their graphs.
+	 * Consecutive segments overlap by the n-gram order plus the correlation
+	 * window, so the result is exactly the graph built by
+	 * {@link #build(String, String)}. The builder is reset first, and
+	 * afterwards holds the graph of the string, so more bases may be
+	 * appended to it.
+	 *
+	 * @param data the DNA string to be represented
+	 * @param label the label of the graph
+	 * @param pool the pool to run the segment tasks on
+	 * @param segmentLength the maximum number of k-mers per segment
+	 * @return a BioGraph representing the string
+	 */
+	public BioGraph buildParallel(String data, String label,
+			ForkJoinPool pool, int segmentLength)
+	{
+		if (segmentLength < 1) {
+			throw new IllegalArgumentException(
+					"Segment length must be positive");
+		}
+		reset();
+		int nKmers = data.length() - order + 1;
+		if (nKmers > 0) {
+			DnaGraphBuilder merged = pool.invoke(new SegmentTask(data,
+						order, window, canonical, 0, nKmers, segmentLength));
+			vertexIds = merged.vertexIds;
+			edgeCounts = merged.edgeCounts;
+			kmers = merged.kmers;
+		}
+
+		/* replay the tail of the string without recording edges, so that
+		 * the rolling k-mer and the correlation window are positioned at
+		 * its end */
+		ownedFrom = Integer.MAX_VALUE;
+		for (int i = Math.max(0, data.length() - window - order + 1);
+				i < data.length(); ++i)
+		{
+			addBase(data.charAt(i));
+		}
+		ownedFrom = basesSeen - order + 1;
+
+		return new BioGraph(toGraph(), data, label, order, window);
+	}
+
+	/**
+	 * Creates a {@link BioGraph} from the accumulated vertices and edges.
+	 * The builder does not keep the bases it was fed, so the data string
+	 * of the resulting graph is empty.
+	 *
+	 * @param label the label of the graph
+	 * @return a BioGraph of the bases added so far
+	 */
+	public BioGraph toBioGraph(String label) {
+		return new BioGraph(toGraph(), "", label, order, window);
+	}
+
+	/**
+	 * Builds the {@link BioGraph} of a DNA string with an associated
+	 * label, resetting the builder first.
+	 *
+	 * @param data the DNA string to be represented
+	 * @param label the label of the graph
+	 * @return a BioGraph representing the string
+	 */
+	public BioGraph build(String data, String label) {
+		reset();
+		addSequence(data);
+		return new BioGraph(toGraph(), data, label, order, window);
+	}
+}
@@ -0,0 +1,242 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+/**
+ * A class with static methods for packing DNA k-mers into <tt>long</tt>
+ * values, using 2 bits per base (A = 0, C = 1, G = 2, T = 3). The first
+ * base of a k-mer occupies the most significant bits, so that packed
+ * k-mers of the same order compare exactly like their labels.
+ *
+ * @author VHarisop
+ */
+public final class DnaKmers {
+	/**
+	 * The maximum k-mer order that fits in a packed value, leaving the
+	 * sign bit unused.
+	 */
+	public static final int MAX_ORDER = 31;
+
+	/**
+	 * Lookup table from characters to 2-bit base codes, with -1 for
+	 * all characters that are not (case insensitive) DNA bases.
+	 */
+	private static final byte[] BASE_CODES = new byte[256];
+
+	/**
+	 * The base letters indexed by their 2-bit code.
+	 */
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+	static {
+		java.util.Arrays.fill(BASE_CODES, (byte) -1);
+		for (int i = 0; i < BASES.length; ++i) {
+			BASE_CODES[BASES[i]] = (byte) i;
+			BASE_CODES[Character.toLowerCase(BASES[i])] = (byte) i;
+		}
+	}
+
+	private DnaKmers() {}
+
+	/**
+	 * Returns the 2-bit code of a base, or -1 if the character is not
+	 * one of A, C, G, T (in either case).
+	 *
+	 * @param c the base character
+	 * @return the base's code, or -1 for unknown symbols
+	 */
+	public static int baseCode(int c) {
+		return (c >= 0 && c < 256) ? BASE_CODES[c] : -1;
+	}
+
+	/**
+	 * Returns the base letter for a 2-bit code.
+	 *
+	 * @param code a code in [0, 3]
+	 * @return the corresponding upper case base
+	 */
+	public static char baseChar(int code) {
+		return BASES[code & 3];
+	}
+
+	/**
+	 * Returns the bit mask that keeps the 2 * order low bits of a value.
+	 *
+	 * @param order the k-mer order
+	 * @return the mask for packed k-mers of that order
+	 */
+	public static long mask(int order) {
+		return (1L << (2 * order)) - 1;
+	}
+
+	/**
+	 * Checks that a k-mer order can be packed, throwing an exception
+	 * otherwise.
+	 *
+	 * @param order the k-mer order
+	 */
+	public static void checkOrder(int order) {
+		if (order < 1 || order > MAX_ORDER) {
+			throw new IllegalArgumentException(
+					"k-mer order must be in [1, " + MAX_ORDER + "]");
+		}
+	}
+
+	/**
+	 * Packs the k-mer of a given order starting at some offset of a
+	 * sequence.
+	 *
+	 * @param seq the sequence
+	 * @param from the offset of the k-mer's first base
+	 * @param order the k-mer order
+	 * @return the packed k-mer, or -1 if it contains unknown symbols
+	 */
+	public static long pack(CharSequence seq, int from, int order) {
+		long kmer = 0L;
+		for (int i = from; i < from + order; ++i) {
+			int code = baseCode(seq.charAt(i));
+			if (code < 0) {
+				return -1L;
+			}
+			kmer = (kmer << 2) | code;
+		}
+		return kmer;
+	}
+
+	/**
+	 * Packs a whole k-mer label.
+	 *
+	 * @param label the k-mer label
+	 * @return the packed k-mer, or -1 if it contains unknown symbols
+	 */
+	public static long pack(CharSequence label) {
+		return pack(label, 0, label.length());
+	}
+
+	/**
+	 * Unpacks a k-mer of a given order into its (upper case) label.
+	 *
+	 * @param kmer the packed k-mer
+	 * @param order the k-mer order
+	 * @return the k-mer's label
+	 */
+	public static String unpack(long kmer, int order) {
+		char[] label = new char[order];
+		for (int i = order - 1; i >= 0; --i) {
+			label[i] = BASES[(int) (kmer & 3)];
+			kmer >>>= 2;
+		}
+		return new String(label);
+	}
+
+	/**
+	 * Returns the code of the base at a given position of a packed k-mer.
+	 *
+	 * @param kmer the packed k-mer
+	 * @param order the k-mer order
+	 * @param index the position of the base, 0 being the first
+	 * @return the 2-bit code of the base
+	 */
+	public static int baseAt(long kmer, int order, int index) {
+		return (int) ((kmer >>> (2 * (order - 1 - index))) & 3);
+	}
+
+	/**
+	 * Returns the reverse complement of a packed k-mer.
+	 *
+	 * @param kmer the packed k-mer
+	 * @param order the k-mer order
+	 * @return the packed reverse complement
+	 */
+	public static long reverseComplement(long kmer, int order) {
+		long rc = 0L;
+		for (int i = 0; i < order; ++i) {
+			/* complementary bases have complementary codes */
+			rc = (rc << 2) | (3 - (kmer & 3));
+			kmer >>>= 2;
+		}
+		return rc;
+	}
+
+	/**
+	 * Returns the canonical form of a packed k-mer, which is the smaller
+	 * of the k-mer and its reverse complement.
+	 *
+	 * @param kmer the packed k-mer
+	 * @param order the k-mer order
+	 * @return the packed canonical k-mer
+	 */
+	public static long canonical(long kmer, int order) {
+		return Math.min(kmer, reverseComplement(kmer, order));
+	}
+
+	/**
+	 * Returns the complement of a base character, preserving its case.
+	 * Symbols other than A, C, G, T are their own complement.
+	 *
+	 * @param c the base character
+	 * @return the complementary base
+	 */
+	public static char complement(char c) {
+		int code = baseCode(c);
+		if (code < 0) {
+			return c;
+		}
+		char comp = BASES[3 - code];
+		return Character.isLowerCase(c) ? Character.toLowerCase(comp) : comp;
+	}
+
+	/**
+	 * Checks if the reverse complement of a k-mer label is
+	 * lexicographically smaller than the label, that is, if it is
+	 * the label's canonical form.
+	 *
+	 * @param label the k-mer label
+	 * @return true if the canonical form is the reverse complement
+	 */
+	public static boolean isReverseCanonical(CharSequence label) {
+		int n = label.length();
+		/* compare the label with its reverse complement on the fly */
+		for (int i = 0; i < n; ++i) {
+			char c = label.charAt(i);
+			char r = complement(label.charAt(n - 1 - i));
+			if (r != c) {
+				return r < c;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the canonical form of a k-mer label, which is the
+	 * lexicographically smaller of the label and its reverse complement.
+	 * A label and its reverse complement have the same canonical form.
+	 *
+	 * @param label the k-mer label
+	 * @return the canonical label
+	 */
+	public static String canonicalLabel(String label) {
+		if (!isReverseCanonical(label)) {
+			return label;
+		}
+		int n = label.length();
+		char[] rc = new char[n];
+		for (int j = 0; j < n; ++j) {
+			rc[j] = complement(label.charAt(n - 1 - j));
+		}
+		return new String(rc);
+	}
+}
@@ -200,4 +200,73 @@ public class IsomorphismTester {
 			return false;
 		}
 	}
+
+	/**
+	 * Checks two {@link CompactBioGraph}s for subgraph isomorphism,
+	 * with the semantics of
+	 * {@link #subgraphIsomorphic(NGramJGraph, NGramJGraph)}.
+	 *
+	 * @param cgA the first graph
+	 * @param cgB the second graph
+	 * @return true if cgA is subgraph isomorphic to cgB
+	 */
+	public static boolean subgraphIsomorphic
+	(CompactBioGraph cgA, CompactBioGraph cgB)
+	{
+		/* graphs of different orders have no common level */
+		if (cgA.getOrder() != cgB.getOrder()) { return false; }
+
+		if (cgA.vertexCount() > cgB.vertexCount()) { return false; }
+
+		/* every vertex of cgA must be present in cgB */
+		int[] idMap = cgA.mapVertices(cgB);
+		for (int v = 0; v < idMap.length; ++v) {
+			if (idMap[v] < 0) { return false; }
+		}
+
+		/* every edge of cgA must be present in cgB */
+		for (int v = 0; v < cgA.vertexCount(); ++v) {
+			for (int i = cgA.outStart(v); i < cgA.outStart(v + 1); ++i) {
+				if (cgB.edgeIndex(idMap[v], idMap[cgA.outTarget(i)]) < 0)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks two {@link CompactBioGraph}s for graph isomorphism,
+	 * with the semantics of
+	 * {@link #graphIsomorphic(NGramJGraph, NGramJGraph)}.
+	 *
+	 * @param cgA the first graph
+	 * @param cgB the second graph
+	 * @return true if the graphs are isomorphic, else false
+	 */
+	public static boolean graphIsomorphic
+	(CompactBioGraph cgA, CompactBioGraph cgB)
+	{
+		if (cgA.getOrder() != cgB.getOrder()) { return false; }
+
+		if (cgA.edgeCount() != cgB.edgeCount()) { return false; }
+
+		int[] idMap = cgA.mapVertices(cgB);
+		for (int v = 0; v < cgA.vertexCount(); ++v) {
+			for (int i = cgA.outStart(v); i < cgA.outStart(v + 1); ++i) {
+				int src = idMap[v], dst = idMap[cgA.outTarget(i)];
+
+				/* edge is missing if either endpoint is missing */
+				if (src < 0 || dst < 0) { return false; }
+
+				int pos = cgB.edgeIndex(src, dst);
+				if (pos < 0) { return false; }
+
+				if (!compareDouble(
+						(double) cgA.outWeight(i),
+						(double) cgB.outWeight(pos)))
+					return false;
+			}
+		}
+		return true;
+	}
 }
@@ -0,0 +1,761 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An append-only store of {@link CompactBioGraph}s that lives in a memory
+ * mapped file instead of the Java heap. Every graph that is added to the
+ * store is given a dense int id, in order of insertion, and can later be
+ * accessed through a {@link GraphView}, a lightweight flyweight that reads
+ * the graph's CSR arrays directly from the mapped file. Views can be moved
+ * from one graph to another, so scanning the whole store allocates nothing
+ * but a single view.
+ *
+ * The file is split in segments of {@link #SEGMENT_SIZE} bytes, each of
+ * which is mapped separately, so stores are not limited to 2GB. A graph
+ * never straddles two segments. The file grows in zero-filled chunks of
+ * {@link #CHUNK_SIZE} bytes, so the last segment is only remapped once
+ * per chunk rather than once per appended graph. Reopening a store only
+ * hops through the record lengths to recover the offset of every graph.
+ *
+ * The length of a record is written after the rest of it, so a graph
+ * whose append was cut short by a crash reads as the zeros that end the
+ * store. Reopening a store truncates the file after its last complete
+ * record, dropping such a record along with the unused end of the file.
+ *
+ * @author VHarisop
+ */
+public final class MappedGraphStore implements Closeable {
+	/**
+	 * The magic number at the start of every store file ("BGST").
+	 */
+	public static final int MAGIC = 0x42475354;
+
+	/**
+	 * The version of the file layout.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of a mapped segment of the file, which is also the
+	 * maximum size of a single graph record.
+	 */
+	public static final int SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The number of bytes the file grows by at a time. Segments are a
+	 * whole number of chunks.
+	 */
+	public static final int CHUNK_SIZE = 1 << 26;
+
+	/**
+	 * The size of the file header: magic, version and segment size.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * The size of the fixed part of a record: record length, order,
+	 * window, vertex and edge count.
+	 */
+	private static final int FIXED_SIZE = 20;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+
+	/**
+	 * The file offset of every record, indexed by graph id.
+	 */
+	private long[] offsets;
+	private int size;
+
+	/**
+	 * The offset right after the last record.
+	 */
+	private long length;
+
+	/**
+	 * The current length of the file, which is grown a chunk at a time
+	 * past the last record.
+	 */
+	private long capacity;
+
+	/**
+	 * The mapped segments of the file, mapped lazily and remapped when
+	 * the file grows past them.
+	 */
+	private MappedByteBuffer[] segments;
+
+	private MappedGraphStore(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		this.offsets = new long[16];
+		this.segments = new MappedByteBuffer[1];
+	}
+
+	/**
+	 * Opens the graph store kept in a given file, creating a new, empty
+	 * store if the file does not exist or is empty.
+	 *
+	 * @param file the file of the store
+	 * @return the opened store
+	 * @throws IOException if the file can not be opened or is not a
+	 * graph store
+	 */
+	public static MappedGraphStore open(File file) throws IOException {
+		MappedGraphStore store = new MappedGraphStore(file);
+		try {
+			store.init();
+		}
+		catch (IOException ex) {
+			store.close();
+			throw ex;
+		}
+		return store;
+	}
+
+	/**
+	 * Writes the header of a new file, or validates the header of an
+	 * existing one and recovers the offsets of its records.
+	 */
+	private void init() throws IOException {
+		capacity = channel.size();
+		if (capacity == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(SEGMENT_SIZE);
+			header.flip();
+			writeFully(header, 0);
+			capacity = length = HEADER_SIZE;
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (capacity < HEADER_SIZE ||
+			channel.read(header, 0) < HEADER_SIZE)
+		{
+			throw new IOException(file + " is not a graph store");
+		}
+		header.flip();
+		if (header.getInt() != MAGIC) {
+			throw new IOException(file + " is not a graph store");
+		}
+		int version = header.getInt();
+		if (version != VERSION || header.getInt() != SEGMENT_SIZE) {
+			throw new IOException(
+					"unsupported graph store version " + version);
+		}
+
+		segments = new MappedByteBuffer[segmentOf(capacity - 1) + 1];
+		long pos = HEADER_SIZE;
+		length = HEADER_SIZE;
+		while (pos + 4 <= capacity) {
+			int local = (int) (pos % SEGMENT_SIZE);
+			int recLen = (SEGMENT_SIZE - local < 4) ?
+				0 : segment(segmentOf(pos)).getInt(local);
+			if (recLen == 0) {
+				/* padding up to the next segment, or the unused
+				 * end of the file */
+				pos += SEGMENT_SIZE - local;
+				continue;
+			}
+			if (recLen < FIXED_SIZE || pos + recLen > capacity ||
+				SEGMENT_SIZE - local < recLen)
+			{
+				/* a record torn by a crash, which can only be last */
+				break;
+			}
+			addOffset(pos);
+			pos += recLen;
+			length = pos;
+		}
+
+		/* drop whatever follows the last record, so that the file
+		 * grows with zeros from there on */
+		if (capacity > length) {
+			Arrays.fill(segments, null);
+			channel.truncate(length);
+			capacity = length;
+		}
+	}
+
+	/**
+	 * Grows the file by whole chunks until it reaches a given offset,
+	 * dropping the mappings that no longer cover their segment.
+	 */
+	private void ensureCapacity(long end) throws IOException {
+		if (end <= capacity) {
+			return;
+		}
+		long newCap = (end + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+		raf.setLength(newCap);
+
+		int last = segmentOf(newCap - 1);
+		if (last >= segments.length) {
+			segments = Arrays.copyOf(segments, last + 1);
+		}
+		for (int seg = segmentOf(capacity - 1); seg <= last; ++seg) {
+			segments[seg] = null;
+		}
+		capacity = newCap;
+	}
+
+	private static int segmentOf(long pos) {
+		return (int) (pos / SEGMENT_SIZE);
+	}
+
+	private void writeFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+
+	private void addOffset(long pos) {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, 2 * size);
+		}
+		offsets[size++] = pos;
+	}
+
+	/**
+	 * Returns the mapping of a segment, mapping it if necessary.
+	 */
+	private synchronized MappedByteBuffer segment(int seg) throws IOException {
+		MappedByteBuffer buf = segments[seg];
+		if (buf == null) {
+			long start = (long) seg * SEGMENT_SIZE;
+			long len = Math.min(SEGMENT_SIZE, capacity - start);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+			segments[seg] = buf;
+		}
+		return buf;
+	}
+
+	/**
+	 * Returns the file of this store.
+	 *
+	 * @return the store's file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of graphs in the store.
+	 *
+	 * @return the graph count
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Appends a {@link BioGraph} to the store.
+	 *
+	 * @param bg the graph to add
+	 * @return the id of the graph in the store
+	 * @throws IOException if writing to the file fails
+	 */
+	public int add(BioGraph bg) throws IOException {
+		return add(bg.freeze());
+	}
+
+	/**
+	 * Appends a {@link CompactBioGraph} to the store.
+	 *
+	 * @param cg the graph to add
+	 * @return the id of the graph in the store
+	 * @throws IOException if writing to the file fails
+	 */
+	public synchronized int add(CompactBioGraph cg) throws IOException {
+		ByteBuffer rec = encode(cg);
+		int recLen = rec.remaining();
+
+		long pos = length;
+		int local = (int) (pos % SEGMENT_SIZE);
+		if (SEGMENT_SIZE - local < recLen) {
+			/* the rest of the segment is left as zero padding */
+			pos += SEGMENT_SIZE - local;
+		}
+		ensureCapacity(pos + recLen);
+
+		/* the length goes last, so a torn record reads as zeros */
+		rec.putInt(0, 0);
+		writeFully(rec, pos);
+		ByteBuffer len = ByteBuffer.allocate(4);
+		len.putInt(0, recLen);
+		writeFully(len, pos);
+		length = pos + recLen;
+		addOffset(pos);
+		return size - 1;
+	}
+
+	/**
+	 * Serializes a compact graph into a single record.
+	 */
+	private static ByteBuffer encode(CompactBioGraph cg) {
+		int n = cg.vertexCount(), m = cg.edgeCount();
+		byte[] label = bytesOf(cg.getLabel());
+		byte[] data = bytesOf(cg.getDataString());
+
+		byte[][] vLabels = new byte[n][];
+		int blobLen = 0;
+		for (int v = 0; v < n; ++v) {
+			vLabels[v] = bytesOf(cg.getVertexLabel(v));
+			blobLen += vLabels[v].length;
+		}
+
+		long recLen = FIXED_SIZE
+			+ 4 + lengthOf(label) + 4 + lengthOf(data)
+			+ 4L * (n + 1) + pad(blobLen)
+			+ 2 * (4L * (n + 1) + 8L * m);
+		if (recLen > SEGMENT_SIZE) {
+			throw new IllegalArgumentException(
+					"graph " + cg.getLabel() + " is too large to store");
+		}
+
+		ByteBuffer rec = ByteBuffer.allocate((int) recLen);
+		rec.putInt((int) recLen)
+		   .putInt(cg.getOrder())
+		   .putInt(cg.getWindowSize())
+		   .putInt(n)
+		   .putInt(m);
+		putBytes(rec, label);
+		putBytes(rec, data);
+
+		int off = 0;
+		for (int v = 0; v < n; ++v) {
+			rec.putInt(off);
+			off += vLabels[v].length;
+		}
+		rec.putInt(off);
+		for (int v = 0; v < n; ++v) {
+			rec.put(vLabels[v]);
+		}
+		rec.position(rec.position() + pad(blobLen) - blobLen);
+
+		for (int v = 0; v <= n; ++v) {
+			rec.putInt(cg.outStart(v));
+		}
+		for (int i = 0; i < m; ++i) {
+			rec.putInt(cg.outTarget(i));
+		}
+		for (int i = 0; i < m; ++i) {
+			rec.putFloat(cg.outWeight(i));
+		}
+		for (int v = 0; v <= n; ++v) {
+			rec.putInt(cg.inStart(v));
+		}
+		for (int i = 0; i < m; ++i) {
+			rec.putInt(cg.inSource(i));
+		}
+		for (int i = 0; i < m; ++i) {
+			rec.putFloat(cg.inWeight(i));
+		}
+		rec.flip();
+		return rec;
+	}
+
+	private static byte[] bytesOf(String s) {
+		return (s == null) ? null : s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int lengthOf(byte[] bytes) {
+		return (bytes == null) ? 0 : bytes.length;
+	}
+
+	private static int pad(int len) {
+		return (len + 3) & ~3;
+	}
+
+	private static void putBytes(ByteBuffer rec, byte[] bytes) {
+		if (bytes == null) {
+			rec.putInt(-1);
+		}
+		else {
+			rec.putInt(bytes.length).put(bytes);
+		}
+	}
+
+	/**
+	 * Creates a new view of the graph with a given id.
+	 *
+	 * @param id the id of the graph
+	 * @return a view of the graph
+	 * @throws IOException if the graph's segment can not be mapped
+	 */
+	public GraphView view(int id) throws IOException {
+		return view(id, new GraphView());
+	}
+
+	/**
+	 * Moves an existing view to the graph with a given id.
+	 *
+	 * @param id the id of the graph
+	 * @param reuse the view to move
+	 * @return the view, now showing the requested graph
+	 * @throws IOException if the graph's segment can not be mapped
+	 */
+	public GraphView view(int id, GraphView reuse) throws IOException {
+		long pos;
+		synchronized (this) {
+			if (id < 0 || id >= size) {
+				throw new IndexOutOfBoundsException(
+						"no graph with id " + id);
+			}
+			pos = offsets[id];
+		}
+		reuse.reset(id, segment(segmentOf(pos)), (int) (pos % SEGMENT_SIZE));
+		return reuse;
+	}
+
+	/**
+	 * Reads the graph with a given id into the heap.
+	 *
+	 * @param id the id of the graph
+	 * @return the graph as a {@link CompactBioGraph}
+	 * @throws IOException if the graph's segment can not be mapped
+	 */
+	public CompactBioGraph get(int id) throws IOException {
+		return view(id).toCompactGraph();
+	}
+
+	/**
+	 * Forces any changes to the store to be written to the disk.
+	 *
+	 * @throws IOException if the file can not be synced
+	 */
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Closes the store's file. Views created by the store must not be
+	 * used after the store is closed.
+	 *
+	 * @throws IOException if the file can not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		Arrays.fill(segments, null);
+		raf.close();
+	}
+
+	/**
+	 * A flyweight view of a graph kept in a {@link MappedGraphStore},
+	 * with accessors that mirror those of {@link CompactBioGraph}. All
+	 * accessors read the mapped file directly; views are not thread
+	 * safe, but any number of views can be used concurrently.
+	 */
+	public static final class GraphView {
+		private ByteBuffer buf;
+		private int id;
+		private int base, n, m;
+
+		/* the starting positions of the record's sections */
+		private int labelPos, dataPos, vOffPos, blobPos;
+		private int outOffPos, outTgtPos, outWgtPos;
+		private int inOffPos, inSrcPos, inWgtPos;
+
+		private GraphView() {}
+
+		private void reset(int id, ByteBuffer buf, int base) {
+			this.id = id;
+			this.buf = buf;
+			this.base = base;
+			this.n = buf.getInt(base + 12);
+			this.m = buf.getInt(base + 16);
+
+			labelPos = base + FIXED_SIZE;
+			dataPos = labelPos + 4 + Math.max(0, buf.getInt(labelPos));
+			vOffPos = dataPos + 4 + Math.max(0, buf.getInt(dataPos));
+			blobPos = vOffPos + 4 * (n + 1);
+			outOffPos = blobPos + pad(buf.getInt(vOffPos + 4 * n));
+			outTgtPos = outOffPos + 4 * (n + 1);
+			outWgtPos = outTgtPos + 4 * m;
+			inOffPos = outWgtPos + 4 * m;
+			inSrcPos = inOffPos + 4 * (n + 1);
+			inWgtPos = inSrcPos + 4 * m;
+		}
+
+		private String stringAt(int pos, int len) {
+			byte[] bytes = new byte[len];
+			for (int i = 0; i < len; ++i) {
+				bytes[i] = buf.get(pos + i);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private String stringAt(int pos) {
+			int len = buf.getInt(pos);
+			return (len < 0) ? null : stringAt(pos + 4, len);
+		}
+
+		/**
+		 * Returns the id of the viewed graph in its store.
+		 *
+		 * @return the graph's id
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Returns the label of the viewed graph.
+		 *
+		 * @return the graph's label
+		 */
+		public String getLabel() {
+			return stringAt(labelPos);
+		}
+
+		/**
+		 * Returns the data string of the viewed graph.
+		 *
+		 * @return the represented string, or null if unknown
+		 */
+		public String getDataString() {
+			return stringAt(dataPos);
+		}
+
+		/**
+		 * Returns the order of the viewed graph's n-grams.
+		 *
+		 * @return the n-gram order
+		 */
+		public int getOrder() {
+			return buf.getInt(base + 4);
+		}
+
+		/**
+		 * Returns the correlation window of the viewed graph.
+		 *
+		 * @return the length of the correlation window
+		 */
+		public int getWindowSize() {
+			return buf.getInt(base + 8);
+		}
+
+		/**
+		 * Returns the number of vertices in the viewed graph.
+		 *
+		 * @return the vertex count
+		 */
+		public int vertexCount() {
+			return n;
+		}
+
+		/**
+		 * Returns the number of edges in the viewed graph.
+		 *
+		 * @return the edge count
+		 */
+		public int edgeCount() {
+			return m;
+		}
+
+		/**
+		 * Returns the label of the vertex with a given id.
+		 *
+		 * @param v the vertex id
+		 * @return the vertex's label
+		 */
+		public String getVertexLabel(int v) {
+			int start = buf.getInt(vOffPos + 4 * v);
+			int end = buf.getInt(vOffPos + 4 * (v + 1));
+			return stringAt(blobPos + start, end - start);
+		}
+
+		/**
+		 * Returns the id of the vertex with a given label.
+		 *
+		 * @param vLabel the label to look for
+		 * @return the vertex id, or -1 if no such vertex exists
+		 */
+		public int indexOf(String vLabel) {
+			int lo = 0, hi = n - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int cmp = getVertexLabel(mid).compareTo(vLabel);
+				if (cmp < 0) {
+					lo = mid + 1;
+				}
+				else if (cmp > 0) {
+					hi = mid - 1;
+				}
+				else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the number of outgoing edges of a vertex.
+		 *
+		 * @param v the vertex id
+		 * @return the vertex's out-degree
+		 */
+		public int outDegree(int v) {
+			return outStart(v + 1) - outStart(v);
+		}
+
+		/**
+		 * Returns the number of incoming edges of a vertex.
+		 *
+		 * @param v the vertex id
+		 * @return the vertex's in-degree
+		 */
+		public int inDegree(int v) {
+			return inStart(v + 1) - inStart(v);
+		}
+
+		/**
+		 * Returns the number of distinct edges incident to a vertex.
+		 * @see CompactBioGraph#degree(int)
+		 *
+		 * @param v the vertex id
+		 * @return the vertex's degree
+		 */
+		public int degree(int v) {
+			return inDegree(v) + outDegree(v) - (edgeIndex(v, v) < 0 ? 0 : 1);
+		}
+
+		/**
+		 * Returns the position of the first outgoing edge of a vertex.
+		 * @see CompactBioGraph#outStart(int)
+		 *
+		 * @param v the vertex id, in [0, vertexCount()]
+		 * @return the start of the vertex's outgoing row
+		 */
+		public int outStart(int v) {
+			return buf.getInt(outOffPos + 4 * v);
+		}
+
+		/**
+		 * Returns the target id of the outgoing edge at a given position.
+		 *
+		 * @param i the edge position
+		 * @return the id of the edge's target
+		 */
+		public int outTarget(int i) {
+			return buf.getInt(outTgtPos + 4 * i);
+		}
+
+		/**
+		 * Returns the weight of the outgoing edge at a given position.
+		 *
+		 * @param i the edge position
+		 * @return the weight of the edge
+		 */
+		public float outWeight(int i) {
+			return buf.getFloat(outWgtPos + 4 * i);
+		}
+
+		/**
+		 * Returns the position of the first incoming edge of a vertex.
+		 * @see CompactBioGraph#inStart(int)
+		 *
+		 * @param v the vertex id, in [0, vertexCount()]
+		 * @return the start of the vertex's incoming row
+		 */
+		public int inStart(int v) {
+			return buf.getInt(inOffPos + 4 * v);
+		}
+
+		/**
+		 * Returns the source id of the incoming edge at a given position.
+		 *
+		 * @param i the edge position
+		 * @return the id of the edge's source
+		 */
+		public int inSource(int i) {
+			return buf.getInt(inSrcPos + 4 * i);
+		}
+
+		/**
+		 * Returns the weight of the incoming edge at a given position.
+		 *
+		 * @param i the edge position
+		 * @return the weight of the edge
+		 */
+		public float inWeight(int i) {
+			return buf.getFloat(inWgtPos + 4 * i);
+		}
+
+		/**
+		 * Returns the position of the edge between two vertices in the
+		 * outgoing edge arrays.
+		 *
+		 * @param src the source id
+		 * @param dst the target id
+		 * @return the position of the edge, or -1 if there is no such edge
+		 */
+		public int edgeIndex(int src, int dst) {
+			int lo = outStart(src), hi = outStart(src + 1) - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int tgt = outTarget(mid);
+				if (tgt < dst) {
+					lo = mid + 1;
+				}
+				else if (tgt > dst) {
+					hi = mid - 1;
+				}
+				else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Copies the viewed graph into the heap.
+		 *
+		 * @return the graph as a {@link CompactBioGraph}
+		 */
+		public CompactBioGraph toCompactGraph() {
+			JVertex[] vs = new JVertex[n];
+			for (int v = 0; v < n; ++v) {
+				vs[v] = new NGramVertex(getVertexLabel(v));
+			}
+			int[] src = new int[m];
+			int[] dst = new int[m];
+			float[] weights = new float[m];
+			for (int v = 0; v < n; ++v) {
+				for (int i = outStart(v); i < outStart(v + 1); ++i) {
+					src[i] = v;
+					dst[i] = outTarget(i);
+					weights[i] = outWeight(i);
+				}
+			}
+			return new CompactBioGraph(getLabel(), getDataString(),
+					getOrder(), getWindowSize(), vs, src, dst, weights, m, null);
+		}
+	}
+}
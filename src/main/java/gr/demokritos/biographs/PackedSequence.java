@@ -0,0 +1,272 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import java.util.Arrays;
+
+/**
+ * An immutable DNA sequence packed at 2 bits per base, using the base
+ * codes of {@link DnaKmers}. Bases are packed 32 to a <tt>long</tt>, with
+ * the first base of every word in its most significant bits, so any base
+ * or packed k-mer is read with a couple of shifts.
+ *
+ * Symbols other than A, C, G and T are stored as 'N', in a sparse list of
+ * runs next to the packed bases, and lower case (soft masked) regions are
+ * kept in another list of runs. A sequence over the alphabet
+ * {A, C, G, T, N} in either case is therefore reproduced exactly, while
+ * other ambiguity codes read back as 'N'. Looking up a base takes
+ * constant time plus a binary search over the runs, which are few in
+ * typical assemblies.
+ *
+ * Since it is a {@link CharSequence}, a packed sequence can be used in
+ * place of a <tt>String</tt> by graph builders and sliding windows.
+ *
+ * @author VHarisop
+ */
+public final class PackedSequence implements CharSequence {
+	private static final int[] NO_RUNS = new int[0];
+
+	private final int length;
+	private final long[] bases;
+
+	/**
+	 * Runs of unknown symbols, as sorted [start, end) pairs.
+	 */
+	private final int[] nRuns;
+
+	/**
+	 * Runs of lower case symbols, as sorted [start, end) pairs.
+	 */
+	private final int[] lowerRuns;
+
+	/**
+	 * Packs a sequence.
+	 *
+	 * @param seq the sequence to pack
+	 */
+	public PackedSequence(CharSequence seq) {
+		this.length = seq.length();
+		this.bases = new long[(length + 31) >>> 5];
+
+		RunBuilder ns = new RunBuilder(), lowers = new RunBuilder();
+		for (int i = 0; i < length; ++i) {
+			char c = seq.charAt(i);
+			int code = DnaKmers.baseCode(c);
+			if (code < 0) {
+				ns.mark(i);
+				code = 0;
+			}
+			if (Character.isLowerCase(c)) {
+				lowers.mark(i);
+			}
+			bases[i >>> 5] |= (long) code << (62 - ((i & 31) << 1));
+		}
+		this.nRuns = ns.toArray();
+		this.lowerRuns = lowers.toArray();
+	}
+
+	/**
+	 * Collects the runs of consecutive marked positions.
+	 */
+	private static final class RunBuilder {
+		private int[] runs = NO_RUNS;
+		private int size = 0;
+
+		void mark(int pos) {
+			if (size > 0 && runs[size - 1] == pos) {
+				runs[size - 1] = pos + 1;
+				return;
+			}
+			if (size == runs.length) {
+				runs = Arrays.copyOf(runs, Math.max(8, 2 * size));
+			}
+			runs[size++] = pos;
+			runs[size++] = pos + 1;
+		}
+
+		int[] toArray() {
+			return (size == 0) ? NO_RUNS : Arrays.copyOf(runs, size);
+		}
+	}
+
+	/**
+	 * Returns the index of the run containing a position, or -1.
+	 */
+	private static int findRun(int[] runs, int pos) {
+		int lo = 0, hi = (runs.length >>> 1) - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (runs[2 * mid + 1] <= pos) {
+				lo = mid + 1;
+			}
+			else if (runs[2 * mid] > pos) {
+				hi = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the first run that ends after a position.
+	 */
+	private static int firstRunAfter(int[] runs, int pos) {
+		int lo = 0, hi = runs.length >>> 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (runs[2 * mid + 1] <= pos) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Checks if any position in [from, to) is in a run.
+	 */
+	private static boolean overlapsRun(int[] runs, int from, int to) {
+		int r = firstRunAfter(runs, from);
+		return r < (runs.length >>> 1) && runs[2 * r] < to;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the 2-bit code of the base at some position. Unknown
+	 * symbols have the code of 'A'.
+	 *
+	 * @param index the position of the base
+	 * @return the base's code
+	 */
+	public int codeAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		return (int) (bases[index >>> 5] >>> (62 - ((index & 31) << 1))) & 3;
+	}
+
+	/**
+	 * Checks if the symbol at some position is unknown.
+	 *
+	 * @param index the position of the symbol
+	 * @return true if the symbol is an 'N'
+	 */
+	public boolean isUnknown(int index) {
+		return nRuns.length > 0 && findRun(nRuns, index) >= 0;
+	}
+
+	@Override
+	public char charAt(int index) {
+		int code = codeAt(index);
+		char c = isUnknown(index) ? 'N' : DnaKmers.baseChar(code);
+		if (lowerRuns.length > 0 && findRun(lowerRuns, index) >= 0) {
+			c = Character.toLowerCase(c);
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the packed k-mer starting at some position, as it would be
+	 * returned by {@link DnaKmers#pack(CharSequence, int, int)}, without
+	 * unpacking its bases.
+	 *
+	 * @param from the position of the k-mer's first base
+	 * @param order the k-mer order, at most {@link DnaKmers#MAX_ORDER}
+	 * @return the packed k-mer, or -1 if it contains unknown symbols
+	 */
+	public long kmerAt(int from, int order) {
+		DnaKmers.checkOrder(order);
+		if (from < 0 || from + order > length) {
+			throw new IndexOutOfBoundsException(
+					"k-mer [" + from + ", " + (from + order) + ")");
+		}
+		if (overlapsRun(nRuns, from, from + order)) {
+			return -1L;
+		}
+		int word = from >>> 5, off = from & 31;
+		long bits = bases[word] << (off << 1);
+		if (off + order > 32) {
+			bits |= bases[word + 1] >>> ((32 - off) << 1);
+		}
+		return bits >>> (64 - (order << 1));
+	}
+
+	/**
+	 * Returns a substring of this sequence, which is unpacked into a
+	 * new <tt>String</tt>.
+	 *
+	 * @param start the start of the substring, inclusive
+	 * @param end the end of the substring, exclusive
+	 * @return the unpacked substring
+	 */
+	@Override
+	public String subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException(
+					"range [" + start + ", " + end + ")");
+		}
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; ++i) {
+			chars[i - start] = DnaKmers.baseChar(codeAt(i));
+		}
+		/* patch the runs that overlap the range */
+		patchRuns(nRuns, chars, start, end, false);
+		patchRuns(lowerRuns, chars, start, end, true);
+		return new String(chars);
+	}
+
+	private static void patchRuns(int[] runs, char[] chars,
+			int start, int end, boolean lower)
+	{
+		for (int r = 2 * firstRunAfter(runs, start); r < runs.length; r += 2) {
+			if (runs[r] >= end) {
+				break;
+			}
+			int from = Math.max(runs[r], start), to = Math.min(runs[r + 1], end);
+			for (int i = from; i < to; ++i) {
+				chars[i - start] = lower ?
+					Character.toLowerCase(chars[i - start]) : 'N';
+			}
+		}
+	}
+
+	/**
+	 * Returns the approximate number of bytes used by this sequence.
+	 *
+	 * @return the size of the packed bases and runs in bytes
+	 */
+	public long sizeInBytes() {
+		return 8L * bases.length + 4L * (nRuns.length + lowerRuns.length);
+	}
+
+	/**
+	 * Unpacks the whole sequence.
+	 *
+	 * @return the sequence as a string
+	 */
+	@Override
+	public String toString() {
+		return subSequence(0, length);
+	}
+}
@@ -0,0 +1,168 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import gr.demokritos.biographs.io.BioInput;
+import gr.demokritos.biographs.io.FastaRecord;
+import gr.demokritos.biographs.io.SequenceReader;
+
+/**
+ * A store of labelled DNA sequences, each of which is kept as a
+ * {@link PackedSequence}, so that large sets of reference sequences
+ * can stay in memory at about a quarter of a byte per base. Sequences
+ * are kept in insertion order, and adding a sequence with an existing
+ * label replaces the old sequence.
+ *
+ * @author VHarisop
+ */
+public final class SequenceStore {
+	private final Map<String, PackedSequence> sequences =
+		new LinkedHashMap<String, PackedSequence>();
+
+	private long totalLength = 0;
+
+	/**
+	 * Creates an empty store.
+	 */
+	public SequenceStore() {}
+
+	/**
+	 * Creates a store of all the records of a FASTA or FASTQ file, which
+	 * may also be compressed. The file is streamed, so only the record
+	 * being packed is held as a <tt>String</tt>.
+	 * @see BioInput#sequenceRecords(File)
+	 *
+	 * @param inFile the file to read
+	 * @return a store of the file's records
+	 * @throws IOException if the file can not be read
+	 */
+	public static SequenceStore fromFile(File inFile) throws IOException {
+		SequenceStore store = new SequenceStore();
+		try (SequenceReader reader = BioInput.sequenceRecords(inFile)) {
+			for (FastaRecord rec: reader) {
+				store.add(rec.getLabel(), rec.getSequence());
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Packs and adds a sequence to the store.
+	 *
+	 * @param label the label of the sequence
+	 * @param seq the sequence
+	 * @return the packed sequence
+	 */
+	public PackedSequence add(String label, CharSequence seq) {
+		return add(label, new PackedSequence(seq));
+	}
+
+	/**
+	 * Adds an already packed sequence to the store.
+	 *
+	 * @param label the label of the sequence
+	 * @param packed the packed sequence
+	 * @return the packed sequence
+	 */
+	public PackedSequence add(String label, PackedSequence packed) {
+		PackedSequence old = sequences.put(label, packed);
+		if (old != null) {
+			totalLength -= old.length();
+		}
+		totalLength += packed.length();
+		return packed;
+	}
+
+	/**
+	 * Returns the sequence with a given label.
+	 *
+	 * @param label the label of the sequence
+	 * @return the packed sequence, or null if there is no such label
+	 */
+	public PackedSequence get(String label) {
+		return sequences.get(label);
+	}
+
+	/**
+	 * Returns a substring of the sequence with a given label.
+	 *
+	 * @param label the label of the sequence
+	 * @param start the start of the substring, inclusive
+	 * @param end the end of the substring, exclusive
+	 * @return the substring, or null if there is no such label
+	 */
+	public String substring(String label, int start, int end) {
+		PackedSequence seq = sequences.get(label);
+		return (seq == null) ? null : seq.subSequence(start, end);
+	}
+
+	/**
+	 * Returns the labels of the stored sequences, in insertion order.
+	 *
+	 * @return an unmodifiable set of labels
+	 */
+	public Set<String> getLabels() {
+		return Collections.unmodifiableSet(sequences.keySet());
+	}
+
+	/**
+	 * Returns the stored label - sequence pairs, in insertion order.
+	 *
+	 * @return an unmodifiable set of entries
+	 */
+	public Set<Map.Entry<String, PackedSequence>> entrySet() {
+		return Collections.unmodifiableMap(sequences).entrySet();
+	}
+
+	/**
+	 * Returns the number of stored sequences.
+	 *
+	 * @return the store's size
+	 */
+	public int size() {
+		return sequences.size();
+	}
+
+	/**
+	 * Returns the total number of bases in the store.
+	 *
+	 * @return the sum of the lengths of all sequences
+	 */
+	public long totalLength() {
+		return totalLength;
+	}
+
+	/**
+	 * Returns the approximate number of bytes used by the packed
+	 * sequences, excluding their labels.
+	 *
+	 * @return the size of all sequences in bytes
+	 */
+	public long sizeInBytes() {
+		long bytes = 0;
+		for (PackedSequence seq: sequences.values()) {
+			bytes += seq.sizeInBytes();
+		}
+		return bytes;
+	}
+}
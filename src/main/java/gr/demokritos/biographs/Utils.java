@@ -20,10 +20,10 @@ import java.util.*;
 import gr.demokritos.biographs.indexing.preprocessing.*;
 import gr.demokritos.biographs.indexing.structs.*;
 import gr.demokritos.biographs.io.BioInput;
-import gr.demokritos.iit.jinsect.io.LineReader;
-import gr.demokritos.iit.jinsect.comparators.NGramGraphComparator;
+import gr.demokritos.biographs.io.FastaRecord;
+import gr.demokritos.biographs.io.WordReader;
+import gr.demokritos.biographs.algorithms.GraphSimilarities;
 
-import org.biojava.nbio.core.sequence.DNASequence;
 
 /**
  * A class containing various utilities used in preprocessing
@@ -34,18 +34,16 @@ import org.biojava.nbio.core.sequence.DNASequence;
 public final class Utils {
 	/**
 	 * Computes the value similarity between two {@link BioGraph} objects
-	 * using a {@link NGramGraphComparator}.
+	 * directly on their graphs.
 	 *
+	 * @see GraphSimilarities#valueSimilarity(BioGraph, BioGraph)
 	 * @param bgA the first graph
 	 * @param bgB the second graph
 	 * @return the value similarity of the two graphs
 	 */
 	public static double
 	getValueSimilarityBetween(BioGraph bgA, BioGraph bgB) {
-		NGramGraphComparator ngcc = new NGramGraphComparator();
-		return ngcc.getSimilarityBetween(
-				bgA.getSuper(),
-				bgB.getSuper()).ValueSimilarity;
+		return GraphSimilarities.valueSimilarity(bgA, bgB);
 	}
 
 	/**
@@ -212,13 +210,8 @@ public final class Utils {
 	public static GraphIndexEntry[]
 	fastaFileToEntries(File path, IndexVector hVec) throws Exception {
 		List<GraphIndexEntry> gis = new ArrayList<GraphIndexEntry>();
-		for (Map.Entry<String, DNASequence> e:
-				BioInput.readFastaFile(path).entrySet())
-		{
-			gis.add(new GraphIndexEntry(
-						BioGraph.fromSequence(e.getValue(), e.getKey()),
-						hVec)
-			);
+		for (BioGraph bg: BioInput.fastaFileToGraphs(path)) {
+			gis.add(new GraphIndexEntry(bg, hVec));
 		}
 		return gis.toArray(new GraphIndexEntry[gis.size()]);
 	}
@@ -234,13 +227,8 @@ public final class Utils {
 	public static TrieIndexEntry[]
 	fastaFileToTrieEntries(File path) throws Exception {
 		List<TrieIndexEntry> tis = new ArrayList<TrieIndexEntry>();
-		for (Map.Entry<String, DNASequence> e:
-				BioInput.readFastaFile(path).entrySet())
-		{
-			tis.add(new TrieIndexEntry(
-						BioGraph.fromSequence(e.getValue(), e.getKey())
-						)
-			);
+		for (BioGraph bg: BioInput.fastaFileToGraphs(path)) {
+			tis.add(new TrieIndexEntry(bg));
 		}
 		return tis.toArray(new TrieIndexEntry[tis.size()]);
 	}
@@ -258,11 +246,10 @@ public final class Utils {
 	public static GraphIndexEntry[]
 	wordFileToEntries(File path, IndexVector hVec) throws Exception {
 		List<GraphIndexEntry> gis = new ArrayList<GraphIndexEntry>();
-		for (String s: new LineReader().getLines(path)) {
-			gis.add(new GraphIndexEntry(
-						new BioGraph(s, s),
-						hVec)
-			);
+		try (WordReader reader = new WordReader(path)) {
+			for (FastaRecord rec: reader) {
+				gis.add(new GraphIndexEntry(rec.toGraph(), hVec));
+			}
 		}
 		return gis.toArray(new GraphIndexEntry[gis.size()]);
 	}
@@ -0,0 +1,199 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.algorithms;
+
+import gr.demokritos.biographs.*;
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.HashMap;
+
+/**
+ * A class with static methods that compute the n-gram graph similarities
+ * (value, containment, size and normalized value similarity) between two
+ * {@link BioGraph} or {@link CompactBioGraph} objects, working directly on
+ * their graphs instead of rebuilding them as
+ * {@link gr.demokritos.iit.jinsect.representations.NGramJGraph} objects.
+ *
+ * For graphs of a single n-gram order, the results are those of
+ * {@link gr.demokritos.iit.jinsect.comparators.NGramGraphComparator}:
+ * edges are matched by the labels of their endpoints, and each common
+ * edge contributes the ratio of its smaller to its larger weight.
+ * Similarities involving an empty graph are 0.
+ *
+ * @author VHarisop
+ */
+public final class GraphSimilarities {
+	private GraphSimilarities() {}
+
+	/**
+	 * Computes the similarity between the graphs of two {@link BioGraph}
+	 * objects, iterating over the edges of the smaller one and looking
+	 * them up in the larger one.
+	 *
+	 * @param bgA the first graph
+	 * @param bgB the second graph
+	 * @return the similarity of the two graphs
+	 */
+	public static GraphSimilarity getSimilarity(BioGraph bgA, BioGraph bgB) {
+		UniqueVertexGraph uvgA = bgA.getGraph(), uvgB = bgB.getGraph();
+		int eA = uvgA.edgeSet().size(), eB = uvgB.edgeSet().size();
+
+		/* iterate over the smaller graph, the result is symmetric */
+		if (eA > eB) {
+			UniqueVertexGraph tmp = uvgA;
+			uvgA = uvgB; uvgB = tmp;
+		}
+
+		HashMap<String, JVertex> vMap = uvgB.UniqueVertices;
+		double vSim = 0.0, common = 0.0;
+		for (Edge e: uvgA.edgeSet()) {
+			JVertex vS = vMap.get(uvgA.getEdgeSource(e).getLabel());
+			if (vS == null)
+				continue;
+
+			JVertex vT = vMap.get(uvgA.getEdgeTarget(e).getLabel());
+			if (vT == null)
+				continue;
+
+			Edge other = uvgB.getEdge(vS, vT);
+			if (other == null)
+				continue;
+
+			vSim += weightRatio(
+					uvgA.getEdgeWeight(e), uvgB.getEdgeWeight(other));
+			common += 1.0;
+		}
+		return fromSums(vSim, common, eA, eB);
+	}
+
+	/**
+	 * Computes the similarity between two {@link CompactBioGraph} objects,
+	 * matching their vertices by merging their sorted labels.
+	 *
+	 * @param cgA the first graph
+	 * @param cgB the second graph
+	 * @return the similarity of the two graphs
+	 */
+	public static GraphSimilarity
+	getSimilarity(CompactBioGraph cgA, CompactBioGraph cgB)
+	{
+		int[] idMap = cgA.mapVertices(cgB);
+		double vSim = 0.0, common = 0.0;
+		for (int v = 0; v < cgA.vertexCount(); ++v) {
+			int src = idMap[v];
+			if (src < 0)
+				continue;
+
+			for (int i = cgA.outStart(v); i < cgA.outStart(v + 1); ++i) {
+				int dst = idMap[cgA.outTarget(i)];
+				int pos = (dst < 0) ? -1 : cgB.edgeIndex(src, dst);
+				if (pos < 0)
+					continue;
+
+				vSim += weightRatio(cgA.outWeight(i), cgB.outWeight(pos));
+				common += 1.0;
+			}
+		}
+		return fromSums(vSim, common, cgA.edgeCount(), cgB.edgeCount());
+	}
+
+	/**
+	 * Computes the value similarity between two {@link BioGraph} objects.
+	 *
+	 * @param bgA the first graph
+	 * @param bgB the second graph
+	 * @return the value similarity of the two graphs
+	 */
+	public static double valueSimilarity(BioGraph bgA, BioGraph bgB) {
+		return getSimilarity(bgA, bgB).ValueSimilarity;
+	}
+
+	/**
+	 * Computes the size similarity between two {@link BioGraph} objects,
+	 * which is the ratio of the smaller to the larger edge count and does
+	 * not require comparing the graphs' edges.
+	 *
+	 * @param bgA the first graph
+	 * @param bgB the second graph
+	 * @return the size similarity of the two graphs
+	 */
+	public static double sizeSimilarity(BioGraph bgA, BioGraph bgB) {
+		return sizeRatio(
+				bgA.getGraph().edgeSet().size(),
+				bgB.getGraph().edgeSet().size());
+	}
+
+	/**
+	 * Computes the normalized value similarity between two {@link BioGraph}
+	 * objects, which is their value similarity divided by their size
+	 * similarity.
+	 *
+	 * @param bgA the first graph
+	 * @param bgB the second graph
+	 * @return the normalized value similarity of the two graphs
+	 */
+	public static double
+	normalizedValueSimilarity(BioGraph bgA, BioGraph bgB) {
+		return normalized(getSimilarity(bgA, bgB));
+	}
+
+	/**
+	 * Computes the normalized value similarity between two
+	 * {@link CompactBioGraph} objects.
+	 *
+	 * @see #normalizedValueSimilarity(BioGraph, BioGraph)
+	 * @param cgA the first graph
+	 * @param cgB the second graph
+	 * @return the normalized value similarity of the two graphs
+	 */
+	public static double
+	normalizedValueSimilarity(CompactBioGraph cgA, CompactBioGraph cgB) {
+		return normalized(getSimilarity(cgA, cgB));
+	}
+
+	/**
+	 * Returns the normalized value similarity of a computed similarity.
+	 */
+	private static double normalized(GraphSimilarity gSim) {
+		return (gSim.SizeSimilarity == 0.0) ?
+			0.0 : gSim.ValueSimilarity / gSim.SizeSimilarity;
+	}
+
+	private static double weightRatio(double wA, double wB) {
+		return Math.min(wA, wB) / Math.max(wA, wB);
+	}
+
+	private static double sizeRatio(double eA, double eB) {
+		double eMax = Math.max(eA, eB);
+		return (eMax == 0) ? 0.0 : Math.min(eA, eB) / eMax;
+	}
+
+	/**
+	 * Builds a {@link GraphSimilarity} from the sum of weight ratios and
+	 * the number of common edges of two graphs with given edge counts.
+	 */
+	private static GraphSimilarity
+	fromSums(double vSim, double common, double eA, double eB)
+	{
+		double eMax = Math.max(eA, eB), eMin = Math.min(eA, eB);
+
+		GraphSimilarity gSim = new GraphSimilarity();
+		gSim.ValueSimilarity = (eMax == 0) ? 0.0 : vSim / eMax;
+		gSim.ContainmentSimilarity = (eMin == 0) ? 0.0 : common / eMin;
+		gSim.SizeSimilarity = sizeRatio(eA, eB);
+		return gSim;
+	}
+}
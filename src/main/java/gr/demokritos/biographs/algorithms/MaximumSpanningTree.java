@@ -41,6 +41,17 @@ public final class MaximumSpanningTree {
 	 */
 	private Set<Edge> edgeList;
 
+	/**
+	 * The labels of the included edges, as concatenations of the
+	 * labels of their source and target vertices.
+	 */
+	private List<String> edgeLabels;
+
+	/**
+	 * The maximum number of edges kept in the tree.
+	 */
+	private static final int MAX_EDGES = 2;
+
 	/**
 	 * Creates a new maximum spanning tree using the Kruskal algorithm
 	 * on edges sorted by descending weight order.
@@ -62,12 +73,13 @@ public final class MaximumSpanningTree {
 					@Override
 					public int compare(Edge eA, Edge eB) {
 						return Double.valueOf(eB.edgeWeight()).compareTo(
-								eB.edgeWeight());
+								eA.edgeWeight());
 					}
 				});
 
 		treeCost = 0.0;
 		edgeList = new HashSet<Edge>();
+		edgeLabels = new ArrayList<String>();
 		int edge_count = 0;
 		for (Edge e: allEdges) {
 			JVertex vS = bg.getGraph().getEdgeSource(e);
@@ -80,18 +92,90 @@ public final class MaximumSpanningTree {
 			}
 			forest.union(vS, vT);
 			edgeList.add(e);
+			edgeLabels.add(vS.getLabel() + vT.getLabel());
 			treeCost += e.edgeWeight();
 
 			// allow a maximum of 2 edges
-			if (1 <= edge_count) {
+			if (MAX_EDGES - 1 <= edge_count) {
 				break;
 			}
 			edge_count++;
 		}
 	}
 
+	/**
+	 * Creates a new maximum spanning tree for a {@link CompactBioGraph}
+	 * using the Kruskal algorithm on edges sorted by descending weight
+	 * order. Trees created this way only expose their edges via
+	 * {@link #getTreeEdgeLabels()}, since compact graphs hold no
+	 * edge objects.
+	 *
+	 * @param cg the {@link CompactBioGraph} to build the tree for
+	 */
+	public MaximumSpanningTree(CompactBioGraph cg) {
+		int nEdges = cg.edgeCount();
+
+		/* sort edge positions by descending weight, keeping the
+		 * CSR order for edges of equal weight */
+		Integer[] order = new Integer[nEdges];
+		final float[] weights = new float[nEdges];
+		final int[] sources = new int[nEdges];
+		for (int v = 0; v < cg.vertexCount(); ++v) {
+			for (int i = cg.outStart(v); i < cg.outStart(v + 1); ++i) {
+				order[i] = i;
+				weights[i] = cg.outWeight(i);
+				sources[i] = v;
+			}
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer eA, Integer eB) {
+				return Float.compare(weights[eB], weights[eA]);
+			}
+		});
+
+		/* union-find forest over vertex ids */
+		int[] parent = new int[cg.vertexCount()];
+		for (int v = 0; v < parent.length; ++v) {
+			parent[v] = v;
+		}
+
+		treeCost = 0.0;
+		edgeList = Collections.emptySet();
+		edgeLabels = new ArrayList<String>();
+		for (Integer e: order) {
+			int rS = findRoot(parent, sources[e]);
+			int rT = findRoot(parent, cg.outTarget(e));
+			if (rS == rT) {
+				continue;
+			}
+			parent[rS] = rT;
+			edgeLabels.add(
+					cg.getVertexLabel(sources[e]) +
+					cg.getVertexLabel(cg.outTarget(e)));
+			treeCost += weights[e];
+
+			if (edgeLabels.size() >= MAX_EDGES) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Finds the root of a vertex in a union-find forest, halving
+	 * the path on the way.
+	 */
+	private static int findRoot(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
 	/**
 	 * Returns the set of edges that belong to the maximum spanning tree.
+	 * The set is empty for trees built from a {@link CompactBioGraph}.
 	 * 
 	 * @return the maximum spanning tree's edge set
 	 */
@@ -99,6 +183,17 @@ public final class MaximumSpanningTree {
 		return edgeList;
 	}
 
+	/**
+	 * Returns the labels of the edges that belong to the maximum spanning
+	 * tree, in the order they were added, each being the concatenation of
+	 * its source and target labels.
+	 *
+	 * @return the labels of the maximum spanning tree's edges
+	 */
+	public List<String> getTreeEdgeLabels() {
+		return edgeLabels;
+	}
+
 	/**
 	 * Returns the total weight of the maximum spanning tree.
 	 *
@@ -16,9 +16,8 @@
 
 package gr.demokritos.biographs.experiments;
 
-import gr.demokritos.iit.jinsect.comparators.NGramGraphComparator;
-import gr.demokritos.iit.jinsect.representations.NGramJGraph;
 import gr.demokritos.biographs.*;
+import gr.demokritos.biographs.algorithms.GraphSimilarities;
 import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.distances.ClusterDistance;
 import gr.demokritos.biographs.indexing.preprocessing.*;
@@ -58,11 +57,7 @@ public class DnaTestHashNaive {
 	 * value similarity - use this method for baseline performance.
 	 */
 	static double vSimDistance(BioGraph a, BioGraph b) {
-		NGramJGraph nggA = a.getSuper(),
-					nggB = b.getSuper();
-
-		return new NGramGraphComparator().
-			getSimilarityBetween(nggA, nggB).asDistance();
+		return GraphSimilarities.getSimilarity(a, b).asDistance();
 	}
 	
 	static int findBaselineMin(BioGraph bg, BioGraph[] bgs) {
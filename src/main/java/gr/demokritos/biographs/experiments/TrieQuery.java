@@ -20,6 +20,7 @@ import java.io.File;
 import gr.demokritos.biographs.*;
 import gr.demokritos.biographs.indexing.distances.ClusterDistance;
 import gr.demokritos.biographs.indexing.preprocessing.IndexVector;
+import gr.demokritos.biographs.indexing.preprocessing.SlidingBioGraph;
 import gr.demokritos.biographs.indexing.structs.TrieEntry;
 import gr.demokritos.biographs.indexing.databases.TrieIndex;
 import gr.demokritos.biographs.indexing.*;
@@ -56,6 +57,11 @@ public class TrieQuery {
 	 */
 	private TrieIndex graphIndex;
 
+	/**
+	 * The packed sequences of the database, by label.
+	 */
+	private SequenceStore references = new SequenceStore();
+
 	/**
 	 * Creates a new TrieQuery object that performs queries by
 	 * splitting the query strings into overlapping subsequences
@@ -106,16 +112,16 @@ public class TrieQuery {
 	 */
 	public void initIndex(File dataFile) {
 		try {
-			for (Map.Entry<String, String> e:
-					BioInput.fromFastaFileToEntries(dataFile).entrySet())
-			{
+			SequenceStore data = SequenceStore.fromFile(dataFile);
+			for (Map.Entry<String, PackedSequence> e: data.entrySet()) {
+				references.add(e.getKey(), e.getValue());
 				/*
 				 * Split database graphs into non-overlapping sequences
 				 * of length K and store them separately into the database
 				 * using the same labels.
 				 */
-				for (String s: splitString(e.getValue())) {
-					graphIndex.addGraph(new BioGraph(s, e.getKey()));
+				for (TrieEntry ent: splitEntries(e.getValue(), e.getKey())) {
+					graphIndex.addEntry(ent);
 				}
 			}
 		} 
@@ -124,6 +130,26 @@ public class TrieQuery {
 		}
 	}
 
+	/**
+	 * Returns the sequence of a database entry, which is kept packed
+	 * in memory, e.g. for verifying the candidates of a query.
+	 *
+	 * @param label the label of the entry
+	 * @return the entry's sequence, or null if there is no such entry
+	 */
+	public PackedSequence getSequence(String label) {
+		return references.get(label);
+	}
+
+	/**
+	 * Returns the store of the packed sequences of the database.
+	 *
+	 * @return the sequence store
+	 */
+	public SequenceStore getSequences() {
+		return references;
+	}
+
 	/**
 	 * Simple getter for the size (in #entries) of the
 	 * underlying {@link TrieIndex}.
@@ -163,6 +189,36 @@ public class TrieQuery {
 		return blocks;
 	}
 
+	/**
+	 * Creates the {@link TrieEntry} objects of all the subsequences that
+	 * {@link #splitString(String)} would return for a data string, in the
+	 * same order. The graph of every block is built once and then slid
+	 * along the window offsets, instead of building a new graph for
+	 * every subsequence.
+	 *
+	 * @param data the data string
+	 * @param label the label of the entries
+	 * @return the list of entries for all subsequences
+	 */
+	protected List<TrieEntry> splitEntries(CharSequence data, String label) {
+		int index = 0, qLen = data.length();
+		List<TrieEntry> entries = new ArrayList<TrieEntry>();
+		SlidingBioGraph sg =
+			new SlidingBioGraph(seqSize, TrieEntry.newIndexVector());
+		while ((index + seqSize) < qLen) {
+			sg.reset(data, index);
+			for (int i = 0; i < window; ++i) {
+				if (index + i + seqSize >= qLen)
+					break;
+				if (i > 0)
+					sg.slide();
+				entries.add(sg.toTrieEntry(label));
+			}
+			index += seqSize;
+		}
+		return entries;
+	}
+
 	/**
 	 * Splits a query string into overlapping subsequences as
 	 * a preprocessing step for a query, returning the list of
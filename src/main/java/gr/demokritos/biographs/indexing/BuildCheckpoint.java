@@ -0,0 +1,249 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+
+/**
+ * The checkpoints of a resumable index build. Every few merged records,
+ * a snapshot of the partial index is written to the checkpoint directory
+ * along with the position of the build, that is, the file being read and
+ * the number of its records that are already in the index. A build that
+ * finds a checkpoint of the same input restores the snapshot and resumes
+ * right after that position.
+ *
+ * A checkpoint is a properties file naming its snapshot. A new snapshot
+ * and properties file are written and forced to the disk before the old
+ * properties file is atomically replaced, so a build that is killed, or
+ * whose machine loses power, at any time leaves a consistent checkpoint.
+ *
+ * @author VHarisop
+ */
+final class BuildCheckpoint {
+	private static final String STATE_FILE = "checkpoint.properties";
+	private static final String SNAPSHOT_PREFIX = "snapshot.";
+
+	private final File dir;
+	private final long interval;
+	private final GraphDatabase db;
+	private final String input;
+	private final GraphType gType;
+
+	/**
+	 * The generation of the last written snapshot.
+	 */
+	private long generation = 0;
+	private long sinceLast = 0;
+
+	private int startFile = 0;
+	private long startRecord = 0;
+
+	/**
+	 * Creates the checkpoints of a build.
+	 *
+	 * @param dir the directory to keep checkpoints in
+	 * @param interval the number of merged records between checkpoints
+	 * @param db the database being built
+	 * @param path the input of the build
+	 * @param gType the type of the graph data
+	 */
+	BuildCheckpoint(File dir, long interval, GraphDatabase db,
+			File path, GraphType gType)
+	{
+		this.dir = dir;
+		this.interval = interval;
+		this.db = db;
+		this.input = path.getAbsolutePath();
+		this.gType = gType;
+	}
+
+	/**
+	 * Restores the last checkpoint of the same build, if any.
+	 *
+	 * @param files the files of the build, in order
+	 * @return true if the build is resumed from a checkpoint
+	 * @throws IOException if the checkpoint can not be read, or does not
+	 * match the files of the build
+	 */
+	boolean restore(File[] files) throws IOException {
+		File stateFile = new File(dir, STATE_FILE);
+		if (!stateFile.isFile()) {
+			return false;
+		}
+		Properties state = new Properties();
+		try (InputStream in = new FileInputStream(stateFile)) {
+			state.load(in);
+		}
+		if (!input.equals(state.getProperty("input")) ||
+			!gType.name().equals(state.getProperty("type")))
+		{
+			/* a checkpoint of another build */
+			return false;
+		}
+
+		try {
+			generation = Long.parseLong(state.getProperty("generation"));
+			startFile = Integer.parseInt(state.getProperty("file"));
+			startRecord = Long.parseLong(state.getProperty("records"));
+			int size = Integer.parseInt(state.getProperty("size"));
+
+			if (startFile < files.length &&
+				!files[startFile].getName().equals(
+					state.getProperty("fileName")))
+			{
+				throw new IOException("checkpoint in " + dir +
+						" does not match the files of " + input);
+			}
+			db.loadSnapshot(snapshot(generation));
+			db.size = size;
+		}
+		catch (NumberFormatException ex) {
+			throw new IOException("malformed checkpoint in " + dir, ex);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the file to resume the build from.
+	 *
+	 * @return the index of the file
+	 */
+	int getStartFile() {
+		return startFile;
+	}
+
+	/**
+	 * Returns the number of records of the first file that are already
+	 * in the restored index.
+	 *
+	 * @return the number of records to skip
+	 */
+	long getStartRecord() {
+		return startRecord;
+	}
+
+	private File snapshot(long gen) {
+		return new File(dir, SNAPSHOT_PREFIX + gen);
+	}
+
+	/**
+	 * Notes that a record has been merged into the index, writing a
+	 * checkpoint if enough records have been merged since the last one.
+	 *
+	 * @param files the files of the build
+	 * @param file the index of the record's file
+	 * @param record the index of the record in its file
+	 * @throws UncheckedIOException if the checkpoint can not be written
+	 */
+	void merged(File[] files, int file, long record) {
+		if (++sinceLast < interval) {
+			return;
+		}
+		sinceLast = 0;
+		try {
+			save(files, file, record + 1);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint at a given position.
+	 */
+	private void save(File[] files, int file, long records)
+	throws IOException
+	{
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("can not create directory " + dir);
+		}
+		long gen = generation + 1;
+		db.saveSnapshot(snapshot(gen));
+		force(snapshot(gen).toPath());
+
+		Properties state = new Properties();
+		state.setProperty("input", input);
+		state.setProperty("type", gType.name());
+		state.setProperty("generation", Long.toString(gen));
+		state.setProperty("file", Integer.toString(file));
+		state.setProperty("fileName", files[file].getName());
+		state.setProperty("records", Long.toString(records));
+		state.setProperty("size", Integer.toString(db.size));
+
+		File tmp = new File(dir, STATE_FILE + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmp)) {
+			state.store(out, "BioGraphs build checkpoint");
+			out.getChannel().force(true);
+		}
+		Files.move(tmp.toPath(), new File(dir, STATE_FILE).toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory();
+
+		Files.deleteIfExists(snapshot(generation).toPath());
+		generation = gen;
+	}
+
+	/**
+	 * Forces the contents of a written file to the disk.
+	 */
+	private static void force(Path file) throws IOException {
+		try (FileChannel ch =
+				FileChannel.open(file, StandardOpenOption.WRITE))
+		{
+			ch.force(true);
+		}
+	}
+
+	/**
+	 * Forces the entries of the checkpoint directory to the disk, so that
+	 * the replaced properties file survives a crash. Some platforms can
+	 * not open directories, in which case this is a no-op.
+	 */
+	private void forceDirectory() {
+		try (FileChannel ch =
+				FileChannel.open(dir.toPath(), StandardOpenOption.READ))
+		{
+			ch.force(true);
+		}
+		catch (IOException ex) {
+			/* directories can not be synced here */
+		}
+	}
+
+	/**
+	 * Removes the checkpoint of a completed build.
+	 *
+	 * @throws IOException if the checkpoint can not be removed
+	 */
+	void clear() throws IOException {
+		Files.deleteIfExists(new File(dir, STATE_FILE).toPath());
+		Files.deleteIfExists(snapshot(generation).toPath());
+	}
+}
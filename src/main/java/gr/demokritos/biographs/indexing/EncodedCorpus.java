@@ -0,0 +1,319 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import gr.demokritos.biographs.BioGraphCodec;
+import gr.demokritos.biographs.indexing.structs.GraphIndexEntry;
+import gr.demokritos.biographs.indexing.preprocessing.EncoderSpec;
+import gr.demokritos.biographs.indexing.structs.TrieEntry;
+
+/**
+ * A binary file of precomputed index entries, that is, graph labels
+ * along with their vector encodings. A corpus is written once from an
+ * index and streamed back to rebuild an index of the same kind, without
+ * parsing any sequences, building any graphs or encoding them again.
+ *
+ * A corpus holds either {@link GraphIndexEntry} objects, whose int
+ * encodings are stored as zigzag varints, or {@link TrieEntry} objects,
+ * whose byte encodings are stored as is. All encodings of a corpus have
+ * the same length. Labels are stored as length-prefixed UTF-8 strings.
+ *
+ * The header records the {@link EncoderSpec#getSignature() signature}
+ * of the encoder that made the encodings, and a corpus is only read
+ * back by an encoder with the same signature, so that encodings made
+ * with other strategies or bins never end up in an index. The layout
+ * of a corpus file is
+ * <pre>
+ *   magic (int) | version (byte) | kind (byte) | encoding length (varint)
+ *   signature length + 1 (varint) | signature
+ *   { label length + 1 (varint) | label | encoding }*
+ *   0 (varint)
+ * </pre>
+ * where the final zero marks the end of the corpus, so truncated files
+ * are detected.
+ *
+ * @author VHarisop
+ */
+public final class EncodedCorpus {
+	private EncodedCorpus() {}
+
+	/**
+	 * The magic number that starts every corpus file ("BGEC").
+	 */
+	public static final int MAGIC = 0x42474543;
+
+	/**
+	 * The version of the corpus format.
+	 */
+	public static final byte VERSION = 2;
+
+	/**
+	 * The kind of a corpus of {@link GraphIndexEntry} objects.
+	 */
+	public static final byte INT_ENTRIES = 0;
+
+	/**
+	 * The kind of a corpus of {@link TrieEntry} objects.
+	 */
+	public static final byte BYTE_ENTRIES = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * A writer of corpus files.
+	 */
+	public static final class Writer implements Closeable {
+		private final DataOutputStream out;
+		private final byte kind;
+		private final int length;
+		private long count = 0;
+
+		/**
+		 * Creates a new corpus file, overwriting any existing file.
+		 *
+		 * @param outFile the file to write
+		 * @param kind the kind of the entries, either {@link #INT_ENTRIES}
+		 * or {@link #BYTE_ENTRIES}
+		 * @param spec the spec of the encoder that made the encodings,
+		 * which have {@link EncoderSpec#getBins()} elements
+		 * @throws IOException if the file can not be created
+		 */
+		public Writer(File outFile, byte kind, EncoderSpec spec)
+		throws IOException
+		{
+			if (kind != INT_ENTRIES && kind != BYTE_ENTRIES) {
+				throw new IllegalArgumentException("unknown entry kind " + kind);
+			}
+			this.kind = kind;
+			this.length = spec.getBins();
+			this.out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(outFile), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(kind);
+			BioGraphCodec.writeVarLong(out, length);
+			writeString(out, spec.getSignature());
+		}
+
+		private void check(byte entryKind, int entryLength) {
+			if (entryKind != kind) {
+				throw new IllegalArgumentException(
+						"entry does not match the corpus kind");
+			}
+			if (entryLength != length) {
+				throw new IllegalArgumentException(
+						"encoding length " + entryLength +
+						" differs from corpus length " + length);
+			}
+		}
+
+
+		/**
+		 * Appends an entry of an inverted index to the corpus.
+		 *
+		 * @param entry the entry to write
+		 * @throws IOException if writing fails
+		 */
+		public void write(GraphIndexEntry entry) throws IOException {
+			int[] enc = entry.getEncoding();
+			check(INT_ENTRIES, enc.length);
+			writeString(out, entry.getLabel());
+			for (int v: enc) {
+				/* zigzag, so that negative values stay short */
+				BioGraphCodec.writeVarLong(out,
+						((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+			}
+			count++;
+		}
+
+		/**
+		 * Appends an entry of a trie index to the corpus.
+		 *
+		 * @param entry the entry to write
+		 * @throws IOException if writing fails
+		 */
+		public void write(TrieEntry entry) throws IOException {
+			byte[] enc = entry.getEncoding();
+			check(BYTE_ENTRIES, enc.length);
+			writeString(out, entry.getLabel());
+			out.write(enc);
+			count++;
+		}
+
+		/**
+		 * Returns the number of entries written so far.
+		 *
+		 * @return the entry count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Ends the corpus and closes the file.
+		 *
+		 * @throws IOException if writing fails
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				BioGraphCodec.writeVarLong(out, 0);
+			}
+			finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes a length-prefixed UTF-8 string.
+	 */
+	private static void writeString(DataOutputStream out, String str)
+	throws IOException
+	{
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		BioGraphCodec.writeVarLong(out, bytes.length + 1L);
+		out.write(bytes);
+	}
+
+	/**
+	 * Opens a corpus file, checking its header.
+	 */
+	private static DataInputStream open(File inFile, byte kind,
+			EncoderSpec spec) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(inFile), BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(inFile + " is not an encoded corpus");
+			}
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException("unsupported corpus version " + version);
+			}
+			byte fileKind = in.readByte();
+			long fileLength = BioGraphCodec.readVarLong(in);
+			if (fileKind != kind) {
+				throw new IOException("corpus " + inFile +
+						" holds entries of another kind");
+			}
+			if (fileLength != spec.getBins()) {
+				throw new IOException("corpus encodings have length " +
+						fileLength + " instead of " + spec.getBins());
+			}
+			String signature = readString(in);
+			if (!spec.getSignature().equals(signature)) {
+				throw new IOException("corpus " + inFile +
+						" was encoded by " + signature + ", not by " +
+						spec.getSignature());
+			}
+			return in;
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads a length-prefixed string, such as the label of the next entry,
+	 * or returns null at the end of the corpus.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		long len = BioGraphCodec.readVarLong(in);
+		if (len == 0) {
+			return null;
+		}
+		if (len - 1 > Integer.MAX_VALUE) {
+			throw new IOException("string length out of range: " + len);
+		}
+		byte[] bytes = new byte[(int) (len - 1)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Streams the entries of a corpus of {@link GraphIndexEntry} objects.
+	 *
+	 * @param inFile the corpus file
+	 * @param spec the spec of the encoder expected to have made the
+	 * encodings
+	 * @param sink the consumer of the entries
+	 * @return the number of entries read
+	 * @throws IOException if the file can not be read, is truncated,
+	 * holds entries of another kind or was encoded by another spec
+	 */
+	public static long readIndexEntries(File inFile, EncoderSpec spec,
+			Consumer<? super GraphIndexEntry> sink) throws IOException
+	{
+		int length = spec.getBins();
+		long count = 0;
+		try (DataInputStream in = open(inFile, INT_ENTRIES, spec)) {
+			String label;
+			while ((label = readString(in)) != null) {
+				int[] enc = new int[length];
+				for (int i = 0; i < length; ++i) {
+					long z = BioGraphCodec.readVarLong(in);
+					enc[i] = (int) (z >>> 1) ^ -(int) (z & 1);
+				}
+				sink.accept(new GraphIndexEntry(label, enc));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Streams the entries of a corpus of {@link TrieEntry} objects.
+	 *
+	 * @param inFile the corpus file
+	 * @param spec the spec of the encoder expected to have made the
+	 * encodings
+	 * @param sink the consumer of the entries
+	 * @return the number of entries read
+	 * @throws IOException if the file can not be read, is truncated,
+	 * holds entries of another kind or was encoded by another spec
+	 */
+	public static long readTrieEntries(File inFile, EncoderSpec spec,
+			Consumer<? super TrieEntry> sink) throws IOException
+	{
+		int length = spec.getBins();
+		long count = 0;
+		try (DataInputStream in = open(inFile, BYTE_ENTRIES, spec)) {
+			String label;
+			while ((label = readString(in)) != null) {
+				byte[] enc = new byte[length];
+				in.readFully(enc);
+				sink.accept(new TrieEntry(label, enc));
+				count++;
+			}
+		}
+		return count;
+	}
+}
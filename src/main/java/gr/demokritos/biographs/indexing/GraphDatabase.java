@@ -17,9 +17,24 @@
 package gr.demokritos.biographs.indexing;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.indexing.structs.PipelineStats;
+import gr.demokritos.biographs.io.BioInput;
+import gr.demokritos.biographs.io.FastaRecord;
+import gr.demokritos.biographs.io.SequenceReader;
 
 /**
  * An abstract class that handles a graph database, consisting of BioGraph
@@ -52,6 +67,63 @@ public abstract class GraphDatabase {
 	 */
 	protected int size;
 
+	/**
+	 * The number of worker threads that load files in parallel when
+	 * the index is built from a directory.
+	 * @see #ingest(File, GraphType, EntryLoader)
+	 */
+	protected int workers = 1;
+
+	/**
+	 * The pipeline that builds the index, or null if the index is
+	 * built without a pipeline.
+	 * @see #setPipeline(int, int, int)
+	 */
+	private IngestPipeline pipeline;
+
+	/**
+	 * The counters of the last or current pipelined build.
+	 */
+	private volatile PipelineStats pipelineStats;
+
+	/**
+	 * The directory that build checkpoints are kept in, or null if
+	 * builds are not checkpointed.
+	 * @see #setCheckpoint(File, long)
+	 */
+	private File checkpointDir;
+
+	/**
+	 * The number of merged records between checkpoints.
+	 */
+	private long checkpointInterval;
+
+	/**
+	 * Encodes the graphs read from data files into entries that are merged
+	 * into the index. {@link #encode} may be called from several threads
+	 * at once, so it should do the expensive work of encoding a graph,
+	 * while {@link #merge} is always called from the building thread, in
+	 * input order.
+	 *
+	 * @param <T> the type of entries produced from the graphs
+	 */
+	protected interface EntryLoader<T> {
+		/**
+		 * Encodes a graph into an entry of the index.
+		 *
+		 * @param bg the graph to encode
+		 * @return the entry of the graph
+		 */
+		T encode(BioGraph bg);
+
+		/**
+		 * Merges an encoded entry into the index.
+		 *
+		 * @param entry the entry to merge
+		 */
+		void merge(T entry);
+	}
+
 	/**
 	 * Creates a blank GraphDatabase object.
 	 */
@@ -82,6 +154,351 @@ public abstract class GraphDatabase {
 		return (Math.abs(a - b) < 0.0000001);
 	}
 
+	/**
+	 * Sets the number of worker threads that load files in parallel
+	 * when the index is built from a directory. With a single worker,
+	 * which is the default, files are loaded one after the other.
+	 *
+	 * @param workers the number of workers
+	 */
+	public void setWorkers(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException(
+					"worker count must be positive");
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * Returns the number of worker threads used for building the index.
+	 *
+	 * @return the number of workers
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Builds the index with a staged pipeline, in which a reader thread,
+	 * a number of graph builder threads, a number of encoder threads and
+	 * the building thread, which writes the entries into the index, run
+	 * concurrently. The stages are connected by queues of a fixed capacity,
+	 * so a slow stage blocks the ones feeding it instead of letting the
+	 * read data pile up in memory. The resulting index is the same as with
+	 * a sequential build. When a pipeline is used, the number of workers
+	 * is ignored.
+	 *
+	 * @param builders the number of graph builder threads
+	 * @param encoders the number of encoder threads
+	 * @param queueCapacity the capacity of the queues between stages
+	 */
+	public void setPipeline(int builders, int encoders, int queueCapacity) {
+		if (builders < 1 || encoders < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException(
+					"pipeline parameters must be positive");
+		}
+		this.pipeline = new IngestPipeline(builders, encoders, queueCapacity);
+	}
+
+	/**
+	 * Stops using a pipeline for building the index.
+	 */
+	public void disablePipeline() {
+		this.pipeline = null;
+	}
+
+	/**
+	 * Returns the per-stage counters of the last pipelined build, which
+	 * are updated live while a build is running.
+	 *
+	 * @return the pipeline counters, or null if no pipelined build
+	 * has been started
+	 */
+	public PipelineStats getPipelineStats() {
+		return pipelineStats;
+	}
+
+	/**
+	 * Makes builds checkpoint their progress in a directory, writing a
+	 * snapshot of the partial index every time a number of records have
+	 * been merged into it. A build of the same file or directory that
+	 * finds a checkpoint there resumes from it instead of starting over,
+	 * so it must be run on a blank database. The checkpoint is removed
+	 * once a build completes. Only databases that can save snapshots of
+	 * their index support checkpoints.
+	 * @see #supportsSnapshots()
+	 *
+	 * @param dir the directory to keep checkpoints in
+	 * @param interval the number of records between checkpoints
+	 */
+	public void setCheckpoint(File dir, long interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException(
+					"checkpoint interval must be positive");
+		}
+		if (!supportsSnapshots()) {
+			throw new UnsupportedOperationException(
+					getClass().getSimpleName() + " can not be checkpointed");
+		}
+		this.checkpointDir = dir;
+		this.checkpointInterval = interval;
+	}
+
+	/**
+	 * Stops checkpointing builds.
+	 */
+	public void disableCheckpoint() {
+		this.checkpointDir = null;
+	}
+
+	/**
+	 * Indicates if this database can save and restore snapshots of its
+	 * index, which is needed for checkpointed builds.
+	 *
+	 * @return true if snapshots are supported
+	 */
+	protected boolean supportsSnapshots() {
+		return false;
+	}
+
+	/**
+	 * Writes a snapshot of the index, from which it can be restored by
+	 * {@link #loadSnapshot(File)}.
+	 *
+	 * @param f the file to write
+	 * @throws IOException if the snapshot can not be written
+	 */
+	protected void saveSnapshot(File f) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Restores a snapshot of the index into this database.
+	 *
+	 * @param f the snapshot file
+	 * @throws IOException if the snapshot can not be read
+	 */
+	protected void loadSnapshot(File f) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the regular files of a directory, sorted by name so that
+	 * every build of the directory reads them in the same order.
+	 *
+	 * @param dir the directory
+	 * @return an array of the directory's files
+	 */
+	protected static File[] listDataFiles(File dir) {
+		File[] files = dir.listFiles(new FileFilter() {
+			public boolean accept(File toFilter) {
+				return toFilter.isFile();
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * A consumer of the records of a file, which skips a number of
+	 * records at its start and numbers the rest.
+	 */
+	abstract static class RecordSink implements Consumer<FastaRecord> {
+		private final long skip;
+		private long next = 0;
+
+		RecordSink(long skip) {
+			this.skip = skip;
+		}
+
+		@Override
+		public final void accept(FastaRecord rec) {
+			long record = next++;
+			if (record >= skip) {
+				accept(rec, record);
+			}
+		}
+
+		/**
+		 * Consumes a record that is not skipped.
+		 *
+		 * @param rec the record
+		 * @param record the index of the record in its file
+		 */
+		abstract void accept(FastaRecord rec, long record);
+	}
+
+	/**
+	 * Loads a file, or all files of a directory, into the index. If a
+	 * pipeline has been set, the files are read, built, encoded and
+	 * written by its stages concurrently. Otherwise, a single file is
+	 * streamed straight into the index, while the files of a directory
+	 * are loaded by {@link #workers} threads in parallel. In every case,
+	 * entries are merged into the index in the order that they are read,
+	 * so the index is the same for any configuration. If checkpoints are
+	 * enabled, the build is resumed from its last checkpoint, if any.
+	 *
+	 * @param path a path containing one or multiple files
+	 * @param gType the type of the graph data
+	 * @param loader the encoder of the graphs
+	 * @param <T> the type of entries produced from the graphs
+	 * @throws Exception if an error occurs when reading the data
+	 */
+	protected <T> void ingest(File path, final GraphType gType,
+			final EntryLoader<T> loader) throws Exception
+	{
+		final File[] files = path.isDirectory() ?
+			listDataFiles(path) : new File[] { path };
+
+		int first = 0;
+		long skip = 0;
+		final BuildCheckpoint checkpoint = (checkpointDir == null) ? null :
+			new BuildCheckpoint(
+					checkpointDir, checkpointInterval, this, path, gType);
+		if (checkpoint != null && checkpoint.restore(files)) {
+			first = checkpoint.getStartFile();
+			skip = checkpoint.getStartRecord();
+		}
+
+		if (pipeline != null) {
+			pipelineStats = new PipelineStats();
+			pipeline.run(files, first, skip, gType, loader,
+					pipelineStats, checkpoint);
+		}
+		else if (workers <= 1 || files.length - first <= 1) {
+			for (int i = first; i < files.length; ++i) {
+				final int fIndex = i;
+				readRecords(files[i], gType,
+						new RecordSink((i == first) ? skip : 0) {
+					@Override
+					void accept(FastaRecord rec, long record) {
+						loader.merge(loader.encode(rec.toGraph()));
+						if (checkpoint != null) {
+							checkpoint.merged(files, fIndex, record);
+						}
+					}
+				});
+			}
+		}
+		else {
+			ingestFiles(files, first, skip, gType, loader, checkpoint);
+		}
+
+		if (checkpoint != null) {
+			checkpoint.clear();
+		}
+	}
+
+	/**
+	 * Loads files in parallel, merging their entries in file order. At
+	 * most one file per thread is loaded ahead of the file being merged,
+	 * and the entries of every file are dropped once they are merged, so
+	 * only the entries of that many files are held at any time.
+	 */
+	private <T> void ingestFiles(final File[] files, int first, long skip,
+			final GraphType gType, final EntryLoader<T> loader,
+			BuildCheckpoint checkpoint) throws Exception
+	{
+		int threads = Math.min(workers, files.length - first);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayDeque<Future<List<T>>> loaded =
+				new ArrayDeque<Future<List<T>>>(threads);
+			int next = first;
+			for (int i = first; i < files.length; ++i) {
+				/* keep every thread busy with a file ahead of i */
+				while (next < files.length && next - i < threads) {
+					loaded.add(loadFile(pool, files[next],
+								(next == first) ? skip : 0, gType, loader));
+					next++;
+				}
+
+				long record = (i == first) ? skip : 0;
+				for (T entry: waitFor(loaded.poll())) {
+					loader.merge(entry);
+					if (checkpoint != null) {
+						checkpoint.merged(files, i, record);
+					}
+					record++;
+				}
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Submits a task that reads and encodes the records of a file.
+	 */
+	private static <T> Future<List<T>> loadFile(ExecutorService pool,
+			final File f, final long skip, final GraphType gType,
+			final EntryLoader<T> loader)
+	{
+		return pool.submit(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				final List<T> entries = new ArrayList<T>();
+				readRecords(f, gType, new RecordSink(skip) {
+					@Override
+					void accept(FastaRecord rec, long record) {
+						entries.add(loader.encode(rec.toGraph()));
+					}
+				});
+				return entries;
+			}
+		});
+	}
+
+	/**
+	 * Waits for a loading task, rethrowing its failure.
+	 */
+	private static <R> R waitFor(Future<R> task) throws Exception {
+		try {
+			return task.get();
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the records of a data file, which is read as a FASTA or FASTQ
+	 * file for DNA data or as a word file otherwise. Both kinds of files
+	 * are streamed, so only the record being read is kept in memory.
+	 * @see gr.demokritos.biographs.io.WordReader
+	 *
+	 * @param f the file to read
+	 * @param gType the type of the graph data
+	 * @param sink the consumer of the read records
+	 * @throws Exception if an error occurs when reading the file
+	 */
+	protected static void readRecords(File f, GraphType gType,
+			Consumer<? super FastaRecord> sink) throws Exception
+	{
+		if (gType == GraphType.DNA) {
+			try (SequenceReader reader = BioInput.sequenceRecords(f)) {
+				for (FastaRecord rec: reader) {
+					sink.accept(rec);
+				}
+			}
+		}
+		else {
+			try (SequenceReader reader = BioInput.wordRecords(f)) {
+				for (FastaRecord rec: reader) {
+					sink.accept(rec);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns the number of the graphs that this database
 	 * contains.
@@ -95,6 +512,10 @@ public abstract class GraphDatabase {
 	/**
 	 * Builds a graph database index from a given file or directory
 	 * of files for graphs that represent a specified type of data.
+	 * Files of DNA data may be either FASTA or FASTQ files, in which
+	 * case the reads are quality trimmed by a
+	 * {@link gr.demokritos.biographs.io.FastqReader}, and may also be
+	 * gzip compressed.
 	 *
 	 * @param path the path of the file or directory
 	 * @param gType the type of the graph data
@@ -0,0 +1,299 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.indexing.GraphDatabase.EntryLoader;
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.indexing.structs.PipelineStats;
+import gr.demokritos.biographs.indexing.structs.PipelineStats.Stage;
+import gr.demokritos.biographs.io.FastaRecord;
+
+/**
+ * A staged index build, in which a reader thread, a pool of graph
+ * builders, a pool of encoders and the index writer (the calling thread)
+ * run concurrently, connected by bounded queues. A full queue blocks the
+ * stage that feeds it, so the memory used by a build does not depend on
+ * the size of its input. Entries are written to the index in input order,
+ * so the resulting index is the same as with a sequential build.
+ *
+ * @author VHarisop
+ */
+final class IngestPipeline {
+	/**
+	 * An item passing through the pipeline, tagged with its position
+	 * in the input. An item with a null value marks the end of a stage.
+	 */
+	private static final class Item {
+		final long seq;
+		final Object value;
+
+		/**
+		 * The index of the item's file and its index in the file.
+		 */
+		final int file;
+		final long record;
+
+		Item(long seq, Object value, int file, long record) {
+			this.seq = seq;
+			this.value = value;
+			this.file = file;
+			this.record = record;
+		}
+
+		/**
+		 * Returns an item at the same position with another value.
+		 */
+		Item with(Object newValue) {
+			return new Item(seq, newValue, file, record);
+		}
+	}
+
+	private static final Item END = new Item(-1, null, -1, -1);
+
+	private final int builders, encoders, capacity;
+
+	/**
+	 * Creates a new pipeline.
+	 *
+	 * @param builders the number of graph builder threads
+	 * @param encoders the number of encoder threads
+	 * @param capacity the capacity of every queue between stages
+	 */
+	IngestPipeline(int builders, int encoders, int capacity) {
+		this.builders = builders;
+		this.encoders = encoders;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Runs the pipeline over a set of files, merging the resulting
+	 * entries into an index.
+	 *
+	 * @param files the files to read, in order
+	 * @param first the index of the first file to read
+	 * @param skip the number of records to skip in the first file
+	 * @param gType the type of the graph data
+	 * @param loader the encoder and writer of the entries
+	 * @param stats the counters to update
+	 * @param checkpoint the checkpoints of the build, or null
+	 * @param <T> the type of entries
+	 * @throws Exception if any of the stages fails
+	 */
+	<T> void run(final File[] files, final int first, final long skip,
+			final GraphType gType, final EntryLoader<T> loader,
+			final PipelineStats stats, BuildCheckpoint checkpoint)
+	throws Exception
+	{
+		final BlockingQueue<Item> records =
+			new ArrayBlockingQueue<Item>(capacity);
+		final BlockingQueue<Item> graphs =
+			new ArrayBlockingQueue<Item>(capacity);
+		final BlockingQueue<Item> entries =
+			new ArrayBlockingQueue<Item>(capacity);
+
+		/* bounds the items between the reader and the writer, which
+		 * also bounds the entries waiting to be written in order */
+		final Semaphore window =
+			new Semaphore(3 * capacity + builders + encoders);
+		final AtomicReference<Throwable> failure =
+			new AtomicReference<Throwable>();
+		final AtomicInteger buildersLeft = new AtomicInteger(builders);
+		final AtomicInteger encodersLeft = new AtomicInteger(encoders);
+
+		ExecutorService pool =
+			Executors.newFixedThreadPool(1 + builders + encoders);
+		try {
+			pool.submit(new Worker(failure) {
+				@Override
+				void work() throws Exception {
+					final long[] seq = new long[1];
+					for (int i = first; i < files.length; ++i) {
+						final int fIndex = i;
+						GraphDatabase.readRecords(files[i], gType,
+								new GraphDatabase.RecordSink(
+									(i == first) ? skip : 0) {
+							long start = System.nanoTime();
+
+							@Override
+							void accept(FastaRecord rec, long record) {
+								stats.record(Stage.READ,
+										System.nanoTime() - start);
+								try {
+									window.acquire();
+									records.put(new Item(
+												seq[0]++, rec, fIndex, record));
+								}
+								catch (InterruptedException ex) {
+									throw new Interrupted();
+								}
+								start = System.nanoTime();
+							}
+						});
+					}
+					for (int i = 0; i < builders; ++i) {
+						records.put(END);
+					}
+				}
+			});
+
+			for (int i = 0; i < builders; ++i) {
+				pool.submit(new Worker(failure) {
+					@Override
+					void work() throws Exception {
+						Item item;
+						while ((item = records.take()) != END) {
+							long start = System.nanoTime();
+							BioGraph bg = ((FastaRecord) item.value).toGraph();
+							stats.record(Stage.BUILD, System.nanoTime() - start);
+							graphs.put(item.with(bg));
+						}
+						if (buildersLeft.decrementAndGet() == 0) {
+							for (int j = 0; j < encoders; ++j) {
+								graphs.put(END);
+							}
+						}
+					}
+				});
+			}
+
+			for (int i = 0; i < encoders; ++i) {
+				pool.submit(new Worker(failure) {
+					@Override
+					void work() throws Exception {
+						Item item;
+						while ((item = graphs.take()) != END) {
+							long start = System.nanoTime();
+							T entry = loader.encode((BioGraph) item.value);
+							stats.record(Stage.ENCODE, System.nanoTime() - start);
+							entries.put(item.with(entry));
+						}
+						if (encodersLeft.decrementAndGet() == 0) {
+							entries.put(END);
+						}
+					}
+				});
+			}
+
+			write(files, entries, window, failure, loader, stats, checkpoint);
+		}
+		finally {
+			pool.shutdownNow();
+			stats.finish();
+		}
+	}
+
+	/**
+	 * Merges the encoded entries into the index in input order, until
+	 * the encoders are done or a stage fails.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void write(File[] files, BlockingQueue<Item> entries,
+			Semaphore window, AtomicReference<Throwable> failure,
+			EntryLoader<T> loader, PipelineStats stats,
+			BuildCheckpoint checkpoint) throws Exception
+	{
+		Map<Long, Item> pending = new HashMap<Long, Item>();
+		long next = 0;
+		while (true) {
+			if (failure.get() != null) {
+				rethrow(failure.get());
+			}
+			Item item = entries.poll(50, TimeUnit.MILLISECONDS);
+			if (item == null) {
+				continue;
+			}
+			if (item == END) {
+				break;
+			}
+			pending.put(item.seq, item);
+			Item ready;
+			while ((ready = pending.remove(next)) != null) {
+				long start = System.nanoTime();
+				loader.merge((T) ready.value);
+				stats.record(Stage.WRITE, System.nanoTime() - start);
+				if (checkpoint != null) {
+					checkpoint.merged(files, ready.file, ready.record);
+				}
+				window.release();
+				next++;
+			}
+		}
+		if (failure.get() != null) {
+			rethrow(failure.get());
+		}
+	}
+
+	/**
+	 * Rethrows the failure of a stage, wrapping errors, so that they
+	 * reach the caller of the build like any other failure.
+	 */
+	private static void rethrow(Throwable failure) throws Exception {
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		}
+		throw new ExecutionException("pipeline stage failed", failure);
+	}
+
+	/**
+	 * Thrown to leave a reading callback when the pipeline is stopped.
+	 */
+	private static final class Interrupted extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * The body of a stage's thread, which records the first failure
+	 * of any stage, errors included. The writer checks for a failure
+	 * whenever it waits for entries, so a stage that dies stops the
+	 * build even if it never passes on the end of its input.
+	 */
+	private abstract static class Worker implements Runnable {
+		private final AtomicReference<Throwable> failure;
+
+		Worker(AtomicReference<Throwable> failure) {
+			this.failure = failure;
+		}
+
+		abstract void work() throws Exception;
+
+		@Override
+		public void run() {
+			try {
+				work();
+			}
+			catch (InterruptedException | Interrupted ex) {
+				/* the pipeline is being stopped */
+			}
+			catch (Throwable ex) {
+				failure.compareAndSet(null, ex);
+			}
+		}
+	}
+}
@@ -17,12 +17,10 @@
 package gr.demokritos.biographs.indexing;
 
 import java.io.File;
-import java.io.FileFilter;
 
 import java.util.*;
 
 import gr.demokritos.biographs.BioGraph;
-import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.preprocessing.IndexVector;
 import gr.demokritos.biographs.indexing.comparators.*;
 import gr.demokritos.biographs.indexing.structs.*;
@@ -58,6 +56,14 @@ public abstract class TreeDatabase<V> extends GraphDatabase {
 	 */
 	protected GraphType type;
 
+	/**
+	 * The {@link IndexVector} used for distances between graphs, created
+	 * for the database's graph type on first use.
+	 * @see #getDistBetween
+	 */
+	private IndexVector distVec;
+	private GraphType distVecType;
+
 	/**
 	 * Creates a blank TreeDatabase object.
 	 */
@@ -142,47 +148,26 @@ public abstract class TreeDatabase<V> extends GraphDatabase {
 		buildIndex(fPath);
 	}
 
-	/**
-	 * Adds a set of data in a file into the database, reading them
-	 * with a method depending on the graph type.
-	 */
-	private void addAllGraphs(File path) throws Exception {
-		if (type == GraphType.DNA) {
-			for (BioGraph bg: BioInput.fastaFileToGraphs(path)) {
-				addGraph(bg);
-			}
-		}
-		else {
-			for (BioGraph bg: BioInput.fromWordFile(path)) {
-				addGraph(bg);
-			}
-		}
-	}
-
 	/**
 	 * Builds a graph database index from a given file or a directory 
-	 * of files.
+	 * of files, reading them with a method depending on the graph type.
+	 * @see GraphDatabase#ingest(File, GraphType, EntryLoader)
 	 *
 	 * @param fPath a path containing one or multiple files
 	 */
 	@Override
 	public void buildIndex(File fPath) throws Exception {
-		if (!fPath.isDirectory()) {
-			addAllGraphs(fPath);
-		}
-		else {
-			/* get all files in a list, and then add all graphs for
-			 * each file to the database
-			 */
-			File[] fileList = fPath.listFiles(new FileFilter() {
-				public boolean accept(File toFilter) {
-					return toFilter.isFile();
-				}
-			});
-			for (File f: fileList) {
-				addAllGraphs(f);
+		ingest(fPath, type, new EntryLoader<BioGraph>() {
+			@Override
+			public BioGraph encode(BioGraph bg) {
+				return bg;
 			}
-		}
+
+			@Override
+			public void merge(BioGraph bg) {
+				addGraph(bg);
+			}
+		});
 	}
 
 	/**
@@ -438,15 +423,20 @@ public abstract class TreeDatabase<V> extends GraphDatabase {
 	 */
 	protected double getDistBetween(BioGraph bgA, BioGraph bgB) {
 		int[] encA; int[] encB;
-		IndexVector vHash;
-		if (type == GraphType.DNA) {
-			vHash = new IndexVector(GraphType.DNA);
-		}
-		else {
-			vHash = new IndexVector(GraphType.WORD);
+
+		/* reuse the same vector (and therefore the same strategies), so
+		 * that the encodings cached in the graphs can be looked up */
+		if (distVec == null || distVecType != type) {
+			distVecType = type;
+			if (type == GraphType.DNA) {
+				distVec = new IndexVector(GraphType.DNA);
+			}
+			else {
+				distVec = new IndexVector(GraphType.WORD);
+			}
 		}
-		encA = vHash.encodeGraph(bgA);
-		encB = vHash.encodeGraph(bgB);
+		encA = distVec.encodeGraph(bgA);
+		encB = distVec.encodeGraph(bgB);
 		return (double) ClusterDistance.hamming(encA, encB);
 	}
 }
@@ -17,12 +17,10 @@
 package gr.demokritos.biographs.indexing;
 
 import java.io.File;
-import java.io.FileFilter;
 
 import java.util.*;
 
 import gr.demokritos.biographs.BioGraph;
-import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.preprocessing.IndexVector;
 import gr.demokritos.biographs.indexing.comparators.*;
 import gr.demokritos.biographs.indexing.structs.*;
@@ -144,47 +142,31 @@ public abstract class TreeIndex<V> extends GraphDatabase {
 		buildIndex(fPath);
 	}
 
-	/**
-	 * Adds a set of data in a file into the database, reading them
-	 * with a method depending on the graph type.
-	 */
-	private void addAllGraphs(File path) throws Exception {
-		if (type == GraphType.DNA) {
-			for (BioGraph bg: BioInput.fastaFileToGraphs(path)) {
-				addGraph(bg);
-			}
-		}
-		else {
-			throw new UnsupportedOperationException(
-					"Graph type not supported!"
-					);
-		}
-	}
-
 	/**
 	 * Builds a graph database index from a given file or a directory 
-	 * of files.
+	 * of files. Only DNA data is supported.
+	 * @see GraphDatabase#ingest(File, GraphType, EntryLoader)
 	 *
 	 * @param fPath a path containing one or multiple files
 	 */
 	@Override
 	public void buildIndex(File fPath) throws Exception {
-		if (!fPath.isDirectory()) {
-			addAllGraphs(fPath);
+		if (type != GraphType.DNA) {
+			throw new UnsupportedOperationException(
+					"Graph type not supported!"
+					);
 		}
-		else {
-			/* get all files in a list, and then add all graphs for
-			 * each file to the database
-			 */
-			File[] fileList = fPath.listFiles(new FileFilter() {
-				public boolean accept(File toFilter) {
-					return toFilter.isFile();
-				}
-			});
-			for (File f: fileList) {
-				addAllGraphs(f);
+		ingest(fPath, type, new EntryLoader<BioGraph>() {
+			@Override
+			public BioGraph encode(BioGraph bg) {
+				return bg;
 			}
-		}
+
+			@Override
+			public void merge(BioGraph bg) {
+				addGraph(bg);
+			}
+		});
 	}
 
 	/**
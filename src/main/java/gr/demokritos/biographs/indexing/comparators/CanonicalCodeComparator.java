@@ -17,7 +17,6 @@
 package gr.demokritos.biographs.indexing.comparators;
 
 import gr.demokritos.biographs.BioGraph;
-import gr.demokritos.iit.jinsect.jutils;
 import java.util.Comparator;
 
 public class CanonicalCodeComparator 
@@ -29,7 +28,7 @@ implements Comparator<BioGraph>
 	 */
 	@Override
 	public int compare(BioGraph bgA, BioGraph bgB) {
-		/* use the optimized version in jutils to compare canonical codes */
-		return jutils.compareCanonicalCodes(bgA.getGraph(), bgB.getGraph());
+		/* compare the canonical codes cached in the graphs */
+		return bgA.getCanonicalCode().compareTo(bgB.getCanonicalCode());
 	}
 }
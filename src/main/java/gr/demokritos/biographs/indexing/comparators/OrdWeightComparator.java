@@ -17,7 +17,7 @@
 package gr.demokritos.biographs.indexing.comparators;
 
 import gr.demokritos.biographs.*;
-import gr.demokritos.iit.jinsect.comparators.NGramGraphComparator;
+import gr.demokritos.biographs.algorithms.GraphSimilarities;
 import gr.demokritos.iit.jinsect.comparators.OrderedWeightComparator;
 
 public class OrdWeightComparator 
@@ -35,7 +35,16 @@ public class OrdWeightComparator
 	 * value similarity.
 	 */
 	public double getDistance(BioGraph bgA, BioGraph bgB) {
-		return new NGramGraphComparator().getSimilarityBetween(
-				bgA.getSuper(), bgB.getSuper()).asDistance();
+		return GraphSimilarities.getSimilarity(bgA, bgB).asDistance();
+	}
+
+	/**
+	 * @see TreeComparator#getDistance(CompactBioGraph, CompactBioGraph)
+	 * The similarity is computed directly on the arrays of the compact
+	 * graphs.
+	 */
+	@Override
+	public double getDistance(CompactBioGraph cgA, CompactBioGraph cgB) {
+		return GraphSimilarities.getSimilarity(cgA, cgB).asDistance();
 	}
 }
@@ -30,4 +30,18 @@ public interface TreeComparator extends Comparator<BioGraph> {
 	 * @return the distance of the two graphs
 	 */
 	public double getDistance(BioGraph bgA, BioGraph bgB);
+
+	/**
+	 * Returns the distance between two {@link CompactBioGraph} objects,
+	 * using the same metric as {@link #getDistance(BioGraph, BioGraph)}.
+	 * Comparators that cannot work on the compact form directly fall back
+	 * to comparing mutable copies of the graphs.
+	 *
+	 * @param cgA the first graph
+	 * @param cgB the second graph
+	 * @return the distance of the two graphs
+	 */
+	public default double getDistance(CompactBioGraph cgA, CompactBioGraph cgB) {
+		return getDistance(cgA.toBioGraph(), cgB.toBioGraph());
+	}
 }
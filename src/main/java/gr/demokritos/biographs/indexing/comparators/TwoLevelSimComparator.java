@@ -33,7 +33,7 @@ public class TwoLevelSimComparator
 		if (compRes != 0) 
 			return compRes;
 
-		/* compare the canonical codes */
-		return jutils.compareCanonicalCodes(bgA.getGraph(), bgB.getGraph());
+		/* compare the canonical codes cached in the graphs */
+		return bgA.getCanonicalCode().compareTo(bgB.getCanonicalCode());
 	}
 }
@@ -19,13 +19,11 @@ package gr.demokritos.biographs.indexing.databases;
 import org.apache.commons.collections4.trie.PatriciaTrie;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import gr.demokritos.biographs.*;
-import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.GraphDatabase;
 import gr.demokritos.biographs.indexing.structs.TrieIndexEntry;
 
@@ -84,44 +82,42 @@ public class TrieDatabase extends GraphDatabase {
 
 	/**
 	 * Builds a graph database index from a given file or a directory 
-	 * of files.
+	 * of files, choosing an appropriate reading method depending on the
+	 * data type of the graphs this database indexes.
+	 * @see GraphDatabase#ingest(File, GraphType, EntryLoader)
 	 *
 	 * @param fPath a path containing one or multiple files
 	 */
 	@Override
 	public void buildIndex(File fPath) throws Exception {
-		if (!fPath.isDirectory()) {
-			addAllGraphs(fPath);
-		}
-		else {
-			/* get all files in a list, and for each file add all
-			 * the resulting biographs to the database */
-			File[] fileList = fPath.listFiles(new FileFilter() {
-				public boolean accept(File toFilter) {
-					return toFilter.isFile();
+		if (type == GraphType.DNA) {
+			ingest(fPath, type, new EntryLoader<TrieIndexEntry>() {
+				@Override
+				public TrieIndexEntry encode(BioGraph bg) {
+					return new TrieIndexEntry(bg);
 				}
-			});
-			for (File f: fileList) {
-				addAllGraphs(f);
-			}
-		}
-	}
 
-	/**
-	 * Adds all graphs from a file to the database, choosing an appropriate
-	 * reading method depending on the data type of the graphs this database
-	 * indexes.
-	 */
-	private void addAllGraphs(File f) throws Exception {
-		if (type == GraphType.DNA) {
-			for (TrieIndexEntry e: Utils.fastaFileToTrieEntries(f)) {
-				addEntry(e);
-			}
+				@Override
+				public void merge(TrieIndexEntry entry) {
+					addEntry(entry);
+				}
+			});
 		}
 		else {
-			for (BioGraph bg: BioInput.fromWordFile(f)) {
-				addGraph(bg);
-			}
+			ingest(fPath, type, new EntryLoader<BioGraph>() {
+				@Override
+				public BioGraph encode(BioGraph bg) {
+					/* the code is cached in the graph, so it is
+					 * computed by the encoding thread */
+					getGraphCode(bg);
+					return bg;
+				}
+
+				@Override
+				public void merge(BioGraph bg) {
+					addGraph(bg);
+				}
+			});
 		}
 	}
 
@@ -19,13 +19,14 @@ package gr.demokritos.biographs.indexing.databases;
 import org.apache.commons.collections4.trie.PatriciaTrie;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import gr.demokritos.biographs.*;
-import gr.demokritos.biographs.io.BioInput;
+import gr.demokritos.biographs.indexing.EncodedCorpus;
 import gr.demokritos.biographs.indexing.GraphDatabase;
 import gr.demokritos.biographs.indexing.structs.TrieEntry;
 
@@ -112,45 +113,30 @@ public class TrieIndex extends GraphDatabase {
 
 	/**
 	 * Builds a graph database index from a given file or a directory 
-	 * of files.
+	 * of files. Only DNA data is supported; the trie entries of the
+	 * graphs are created while loading the files.
+	 * @see GraphDatabase#ingest(File, GraphType, EntryLoader)
 	 *
 	 * @param fPath a path containing one or multiple files
 	 */
 	@Override
 	public void buildIndex(File fPath) throws Exception {
-		if (!fPath.isDirectory()) {
-			addAllGraphs(fPath);
-		}
-		else {
-			/* get all files in a list, and for each file add all
-			 * the resulting biographs to the database */
-			File[] fileList = fPath.listFiles(new FileFilter() {
-				public boolean accept(File toFilter) {
-					return toFilter.isFile();
-				}
-			});
-			for (File f: fileList) {
-				addAllGraphs(f);
-			}
-		}
-	}
-
-	/**
-	 * Adds all graphs from a file to the database, choosing an appropriate
-	 * reading method depending on the data type of the graphs this database
-	 * indexes.
-	 */
-	private void addAllGraphs(File f) throws Exception {
-		if (type == GraphType.DNA) {
-			for (BioGraph bg: BioInput.fastaFileToGraphs(f)) {
-				addGraph(bg);
-			}
-		}
-		else {
+		if (type != GraphType.DNA) {
 			throw new UnsupportedOperationException(
 					"Graph type not supported!"
 				);
 		}
+		ingest(fPath, type, new EntryLoader<TrieEntry>() {
+			@Override
+			public TrieEntry encode(BioGraph bg) {
+				return new TrieEntry(bg);
+			}
+
+			@Override
+			public void merge(TrieEntry entry) {
+				addEntry(entry);
+			}
+		});
 	}
 
 	/**
@@ -191,6 +177,66 @@ public class TrieIndex extends GraphDatabase {
 		addEntry(new TrieEntry(bg));
 	}
 
+	/**
+	 * Writes the entries of this index to an {@link EncodedCorpus}, from
+	 * which an index can be rebuilt by {@link #loadCorpus(File)} without
+	 * building or encoding any graphs.
+	 *
+	 * @param outFile the corpus file to write
+	 * @throws IOException if the corpus can not be written
+	 */
+	public void saveCorpus(File outFile) throws IOException {
+		try (EncodedCorpus.Writer out = new EncodedCorpus.Writer(
+					outFile, EncodedCorpus.BYTE_ENTRIES,
+					TrieEntry.newIndexVector().getSpec()))
+		{
+			for (List<TrieEntry> entries: trieIndex.values()) {
+				for (TrieEntry e: entries) {
+					out.write(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the entries of an {@link EncodedCorpus} to this index, which
+	 * is then an index of DNA data.
+	 *
+	 * @param inFile the corpus file to read
+	 * @throws IOException if the corpus can not be read or does not
+	 * hold trie entries
+	 */
+	public void loadCorpus(File inFile) throws IOException {
+		this.type = GraphType.DNA;
+		EncodedCorpus.readTrieEntries(inFile,
+				TrieEntry.newIndexVector().getSpec(),
+				new Consumer<TrieEntry>() {
+			@Override
+			public void accept(TrieEntry entry) {
+				addEntry(entry);
+			}
+		});
+	}
+
+	/**
+	 * Snapshots of the index are encoded corpora.
+	 * @see #saveCorpus(File)
+	 */
+	@Override
+	protected boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	protected void saveSnapshot(File f) throws IOException {
+		saveCorpus(f);
+	}
+
+	@Override
+	protected void loadSnapshot(File f) throws IOException {
+		loadCorpus(f);
+	}
+
 	/**
 	 * Helper function that defines how a string representation
 	 * is acquired from a {@link BioGraph} object. This method can
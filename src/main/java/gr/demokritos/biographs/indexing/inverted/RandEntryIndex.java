@@ -17,12 +17,12 @@
 package gr.demokritos.biographs.indexing.inverted;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import gr.demokritos.biographs.BioGraph;
-import gr.demokritos.biographs.Utils;
 import gr.demokritos.biographs.indexing.*;
 import gr.demokritos.biographs.indexing.distances.ClusterDistance;
 import gr.demokritos.biographs.indexing.preprocessing.*;
@@ -93,50 +93,25 @@ public class RandEntryIndex extends GraphDatabase {
 
 	/**
 	 * Builds a graph database index from a given file or a directory 
-	 * of files.
+	 * of files. The entries of the graphs, including their encodings,
+	 * are created while loading the files.
+	 * @see GraphDatabase#ingest(File, GraphType, EntryLoader)
 	 *
 	 * @param fPath a path containing one or multiple files
 	 */
 	@Override
 	public void buildIndex(File fPath) throws Exception {
-		if (!fPath.isDirectory()) {
-			if (type == GraphType.DNA) {
-				for (GraphIndexEntry e: Utils.fastaFileToEntries(fPath, indVec))
-				{
-					addEntry(e);
-				}
-			}
-			else {
-				for (GraphIndexEntry e: Utils.wordFileToEntries(fPath, indVec))
-				{
-					addEntry(e);
-				}
+		ingest(fPath, type, new EntryLoader<GraphIndexEntry>() {
+			@Override
+			public GraphIndexEntry encode(BioGraph bg) {
+				return new GraphIndexEntry(bg, indVec);
 			}
-		}
-		else {
-			// get all files in a list
-			File[] fileList = fPath.listFiles(new FileFilter() {
-				public boolean accept(File toFilter) {
-					return toFilter.isFile();
-				}
-			});
-
-			// add them all to the database
-			for (File f: fileList) {
-				if (type == GraphType.DNA) {
-					for (GraphIndexEntry e: Utils.fastaFileToEntries(f, indVec))
-					{
-						addEntry(e);
-					}
-				}
-				else {
-					for (GraphIndexEntry e: Utils.wordFileToEntries(f, indVec))
-					{
-						addEntry(e);
-					}
-				}
+
+			@Override
+			public void merge(GraphIndexEntry entry) {
+				addEntry(entry);
 			}
-		}
+		});
 	}
 
 	/**
@@ -214,6 +189,70 @@ public class RandEntryIndex extends GraphDatabase {
 		return bins;
 	}
 
+	/**
+	 * Writes the entries of this index to an {@link EncodedCorpus}, from
+	 * which an index can be rebuilt by {@link #loadCorpus(File)} without
+	 * building or encoding any graphs. Entries that are equal to another
+	 * entry of the index are written once.
+	 *
+	 * @param outFile the corpus file to write
+	 * @throws IOException if the corpus can not be written
+	 */
+	public void saveCorpus(File outFile) throws IOException {
+		try (EncodedCorpus.Writer out = new EncodedCorpus.Writer(
+					outFile, EncodedCorpus.INT_ENTRIES, indVec.getSpec()))
+		{
+			/* every entry is in the tree of the first bin exactly once */
+			FreqTree<GraphIndexEntry> first = invIndex.get(0);
+			if (first != null) {
+				for (Set<GraphIndexEntry> entries: first.values()) {
+					for (GraphIndexEntry e: entries) {
+						out.write(e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the entries of an {@link EncodedCorpus} to this index. The
+	 * corpus must have been written by an index with the same hashing
+	 * strategy, encoding strategy and number of bins.
+	 * @see EncoderSpec#getSignature()
+	 *
+	 * @param inFile the corpus file to read
+	 * @throws IOException if the corpus can not be read or was written
+	 * by an index with another spec
+	 */
+	public void loadCorpus(File inFile) throws IOException {
+		EncodedCorpus.readIndexEntries(inFile, indVec.getSpec(),
+				new Consumer<GraphIndexEntry>() {
+			@Override
+			public void accept(GraphIndexEntry entry) {
+				addEntry(entry);
+			}
+		});
+	}
+
+	/**
+	 * Snapshots of the index are encoded corpora.
+	 * @see #saveCorpus(File)
+	 */
+	@Override
+	protected boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	protected void saveSnapshot(File f) throws IOException {
+		saveCorpus(f);
+	}
+
+	@Override
+	protected void loadSnapshot(File f) throws IOException {
+		loadCorpus(f);
+	}
+
 	/**
 	 * Gets the matches of a biograph with a specified tolerance to
 	 * containment frequences.
@@ -0,0 +1,46 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing.preprocessing;
+
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.iit.jinsect.structs.*;
+
+/**
+ * The <tt>double</tt> counterpart of {@link IntEncodingStrategy}.
+ *
+ * @author VHarisop
+ */
+public interface DoubleEncodingStrategy extends EncodingStrategy<Double> {
+	/**
+	 * @see IntEncodingStrategy#encodeInt(JVertex, UniqueVertexGraph)
+	 */
+	public double encodeDouble(JVertex vCurr, UniqueVertexGraph uvg);
+
+	/**
+	 * @see IntEncodingStrategy#encodeInt(int, CompactBioGraph)
+	 */
+	public double encodeDouble(int v, CompactBioGraph cg);
+
+	@Override
+	public default Double encode(JVertex vCurr, UniqueVertexGraph uvg) {
+		return encodeDouble(vCurr, uvg);
+	}
+
+	@Override
+	public default Double encode(int v, CompactBioGraph cg) {
+		return encodeDouble(v, cg);
+	}
+}
@@ -0,0 +1,421 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing.preprocessing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.biographs.MappedGraphStore;
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.structs.KmerDictionary;
+import gr.demokritos.iit.jinsect.structs.JVertex;
+
+/**
+ * The immutable configuration of an {@link IndexVector} encoder, that is,
+ * its hashing strategy, encoding strategy, number of bins and dictionary.
+ * Unlike an {@link IndexVector}, a spec can not be reconfigured, so a
+ * single spec can be shared by any number of threads encoding graphs.
+ * Modified copies are made with the <tt>with</tt> methods.
+ *
+ * Whole arrays of graphs are encoded in parallel by
+ * {@link #encodeAll(BioGraph[])}, into a flat matrix with a row of
+ * {@link #getBins()} elements per graph, and so are the graphs of a
+ * {@link MappedGraphStore} by {@link #encodeAll(MappedGraphStore)}.
+ *
+ * @author VHarisop
+ */
+public final class EncoderSpec {
+	/**
+	 * The number of graphs below which an encoding task is not split.
+	 */
+	private static final int GRAIN = 16;
+
+	private final HashingStrategy<JVertex> hashStrategy;
+	private final EncodingStrategy<Integer> encodingStrategy;
+	private final int bins;
+	private final KmerDictionary dictionary;
+
+	/**
+	 * The encoder that does the work, which is configured once and never
+	 * exposed, so it is never modified.
+	 */
+	private final IndexVector encoder;
+
+	/**
+	 * Creates a new spec that hashes vertices directly.
+	 *
+	 * @param hashStrategy the hashing strategy
+	 * @param encodingStrategy the encoding strategy, or null for the
+	 * in-degree encoding
+	 * @param bins the number of bins
+	 */
+	public EncoderSpec(HashingStrategy<JVertex> hashStrategy,
+			EncodingStrategy<Integer> encodingStrategy, int bins)
+	{
+		this(hashStrategy, encodingStrategy, bins, null);
+	}
+
+	/**
+	 * Creates a new spec.
+	 * @see IndexVector#setDictionary(KmerDictionary)
+	 *
+	 * @param hashStrategy the hashing strategy
+	 * @param encodingStrategy the encoding strategy, or null for the
+	 * in-degree encoding
+	 * @param bins the number of bins
+	 * @param dictionary the dictionary to hash vertices through, or null
+	 */
+	public EncoderSpec(HashingStrategy<JVertex> hashStrategy,
+			EncodingStrategy<Integer> encodingStrategy, int bins,
+			KmerDictionary dictionary)
+	{
+		if (hashStrategy == null) {
+			throw new NullPointerException("hashing strategy is null");
+		}
+		if (bins < 1) {
+			throw new IllegalArgumentException(
+					"number of bins must be positive");
+		}
+		this.hashStrategy = hashStrategy;
+		this.encodingStrategy = (encodingStrategy != null) ?
+			encodingStrategy : Strategies.inDegreeEncoding();
+		this.bins = bins;
+		this.dictionary = dictionary;
+		this.encoder = newIndexVector();
+	}
+
+	/**
+	 * Returns the spec of the default encoder for a type of graphs.
+	 * @see IndexVector#IndexVector(GraphType)
+	 *
+	 * @param gType the type of the graphs
+	 * @return the default spec
+	 */
+	public static EncoderSpec forType(GraphType gType) {
+		return new IndexVector(gType).getSpec();
+	}
+
+	/**
+	 * Simple getter for the hashing strategy of this spec.
+	 *
+	 * @return the hashing strategy
+	 */
+	public HashingStrategy<JVertex> getHashStrategy() {
+		return hashStrategy;
+	}
+
+	/**
+	 * Simple getter for the encoding strategy of this spec.
+	 *
+	 * @return the encoding strategy
+	 */
+	public EncodingStrategy<Integer> getEncodingStrategy() {
+		return encodingStrategy;
+	}
+
+	/**
+	 * Simple getter for the number of bins of this spec.
+	 *
+	 * @return the number of bins, that is, the length of an encoding
+	 */
+	public int getBins() {
+		return bins;
+	}
+
+	/**
+	 * Simple getter for the dictionary of this spec.
+	 *
+	 * @return the dictionary, or null if there is none
+	 */
+	public KmerDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns a string that identifies the encodings made by this spec,
+	 * naming its strategies by {@link Strategies#nameOf(Object)} along
+	 * with its number of bins. Specs with equal signatures encode graphs
+	 * the same way. The dictionary is left out, since it only memoizes
+	 * hash values.
+	 *
+	 * @return the signature of this spec
+	 */
+	public String getSignature() {
+		return Strategies.nameOf(hashStrategy) + "/" +
+			Strategies.nameOf(encodingStrategy) + "/" + bins;
+	}
+
+	/**
+	 * Returns a copy of this spec with another hashing strategy.
+	 *
+	 * @param newSg the new hashing strategy
+	 * @return the modified spec
+	 */
+	public EncoderSpec withHashStrategy(HashingStrategy<JVertex> newSg) {
+		return new EncoderSpec(newSg, encodingStrategy, bins, dictionary);
+	}
+
+	/**
+	 * Returns a copy of this spec with another encoding strategy.
+	 *
+	 * @param newSg the new encoding strategy
+	 * @return the modified spec
+	 */
+	public EncoderSpec withEncodingStrategy(EncodingStrategy<Integer> newSg) {
+		return new EncoderSpec(hashStrategy, newSg, bins, dictionary);
+	}
+
+	/**
+	 * Returns a copy of this spec with another number of bins.
+	 *
+	 * @param newBins the new number of bins
+	 * @return the modified spec
+	 */
+	public EncoderSpec withBins(int newBins) {
+		return new EncoderSpec(
+				hashStrategy, encodingStrategy, newBins, dictionary);
+	}
+
+	/**
+	 * Returns a copy of this spec with another dictionary.
+	 *
+	 * @param newDict the new dictionary, or null
+	 * @return the modified spec
+	 */
+	public EncoderSpec withDictionary(KmerDictionary newDict) {
+		return new EncoderSpec(hashStrategy, encodingStrategy, bins, newDict);
+	}
+
+	/**
+	 * Creates a new {@link IndexVector} configured by this spec, which
+	 * the caller is free to modify.
+	 *
+	 * @return a new index vector
+	 */
+	public IndexVector newIndexVector() {
+		return new IndexVector(this);
+	}
+
+	/**
+	 * Encodes a graph.
+	 * @see IndexVector#encodeGraph(BioGraph)
+	 *
+	 * @param bg the graph to encode
+	 * @return a vector of {@link #getBins()} elements
+	 */
+	public int[] encode(BioGraph bg) {
+		return encoder.encodeGraph(bg);
+	}
+
+	/**
+	 * Encodes a graph into a given vector at some offset.
+	 * @see IndexVector#encodeGraph(BioGraph, int[], int)
+	 *
+	 * @param bg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 */
+	public void encode(BioGraph bg, int[] out, int offset) {
+		encoder.encodeGraph(bg, out, offset);
+	}
+
+	/**
+	 * Encodes a compact graph.
+	 * @see IndexVector#encodeGraph(CompactBioGraph)
+	 *
+	 * @param cg the graph to encode
+	 * @return a vector of {@link #getBins()} elements
+	 */
+	public int[] encode(CompactBioGraph cg) {
+		return encoder.encodeGraph(cg);
+	}
+
+	/**
+	 * Encodes a compact graph into a given vector at some offset.
+	 * @see IndexVector#encodeGraph(CompactBioGraph, int[], int)
+	 *
+	 * @param cg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 */
+	public void encode(CompactBioGraph cg, int[] out, int offset) {
+		encoder.encodeGraph(cg, out, offset);
+	}
+
+	/**
+	 * Encodes a graph of a {@link MappedGraphStore} into a given vector
+	 * at some offset.
+	 * @see IndexVector#encodeGraph(MappedGraphStore.GraphView, int[], int)
+	 *
+	 * @param view the view of the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 */
+	public void encode(MappedGraphStore.GraphView view, int[] out, int offset) {
+		encoder.encodeGraph(view, out, offset);
+	}
+
+	/**
+	 * Encodes an array of graphs in parallel on the common fork-join pool.
+	 * @see #encodeAll(BioGraph[], ForkJoinPool)
+	 *
+	 * @param graphs the graphs to encode
+	 * @return the flat matrix of encodings
+	 */
+	public int[] encodeAll(BioGraph[] graphs) {
+		return encodeAll(graphs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encodes an array of graphs in parallel on a given fork-join pool.
+	 * The encodings are returned as a flat matrix, where the encoding of
+	 * the i-th graph takes up the {@link #getBins()} elements starting at
+	 * <tt>i * getBins()</tt>. Encodings are cached in the graphs as in
+	 * {@link IndexVector#encodeGraph(BioGraph)}.
+	 *
+	 * @param graphs the graphs to encode
+	 * @param pool the pool to encode the graphs in
+	 * @return the flat matrix of encodings
+	 * @throws IllegalArgumentException if the matrix is too large for an
+	 * array
+	 */
+	public int[] encodeAll(BioGraph[] graphs, ForkJoinPool pool) {
+		if ((long) graphs.length * bins > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(graphs.length +
+					" encodings of " + bins + " bins do not fit an array");
+		}
+		int[] matrix = new int[graphs.length * bins];
+		if (graphs.length > 0) {
+			pool.invoke(new EncodeTask(graphs, matrix, 0, graphs.length));
+		}
+		return matrix;
+	}
+
+	/**
+	 * Encodes every graph of a store in parallel on the common fork-join
+	 * pool.
+	 * @see #encodeAll(MappedGraphStore, ForkJoinPool)
+	 *
+	 * @param store the store whose graphs to encode
+	 * @return the flat matrix of encodings
+	 */
+	public int[] encodeAll(MappedGraphStore store) {
+		return encodeAll(store, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encodes every graph of a store in parallel on a given fork-join
+	 * pool, into a flat matrix as in {@link #encodeAll(BioGraph[])}, where
+	 * the row of every graph is given by its id. Graphs are read through
+	 * views of the mapped file, so the graphs are never all on the heap.
+	 *
+	 * @param store the store whose graphs to encode
+	 * @param pool the pool to encode the graphs in
+	 * @return the flat matrix of encodings
+	 * @throws IllegalArgumentException if the matrix is too large for an
+	 * array
+	 * @throws UncheckedIOException if a graph can not be read
+	 */
+	public int[] encodeAll(MappedGraphStore store, ForkJoinPool pool) {
+		int count = store.size();
+		if ((long) count * bins > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(count +
+					" encodings of " + bins + " bins do not fit an array");
+		}
+		int[] matrix = new int[count * bins];
+		if (count > 0) {
+			pool.invoke(new StoreEncodeTask(store, matrix, 0, count));
+		}
+		return matrix;
+	}
+
+	/**
+	 * A task that encodes a range of graphs into their rows of the matrix,
+	 * splitting the range until it is small enough.
+	 */
+	private final class EncodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BioGraph[] graphs;
+		private final int[] matrix;
+		private final int from, to;
+
+		EncodeTask(BioGraph[] graphs, int[] matrix, int from, int to) {
+			this.graphs = graphs;
+			this.matrix = matrix;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > GRAIN) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new EncodeTask(graphs, matrix, from, mid),
+						new EncodeTask(graphs, matrix, mid, to));
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				encoder.encodeGraph(graphs[i], matrix, i * bins);
+			}
+		}
+	}
+
+	/**
+	 * A task that encodes a range of a store's graphs into their rows of
+	 * the matrix, moving a single view from graph to graph.
+	 */
+	private final class StoreEncodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final MappedGraphStore store;
+		private final int[] matrix;
+		private final int from, to;
+
+		StoreEncodeTask(MappedGraphStore store, int[] matrix,
+				int from, int to)
+		{
+			this.store = store;
+			this.matrix = matrix;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > GRAIN) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new StoreEncodeTask(store, matrix, from, mid),
+						new StoreEncodeTask(store, matrix, mid, to));
+				return;
+			}
+			try {
+				MappedGraphStore.GraphView view = store.view(from);
+				for (int i = from; i < to; ++i) {
+					encoder.encodeGraph(store.view(i, view),
+							matrix, i * bins);
+				}
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+	}
+}
@@ -15,12 +15,16 @@
 
 package gr.demokritos.biographs.indexing.preprocessing;
 
+import gr.demokritos.biographs.CompactBioGraph;
 import gr.demokritos.iit.jinsect.structs.*;
 
 /**
  * An interface that must be implemented for classes that encode a vertex
  * from a UniqueVertexGraph or BioGraph in some way. 
- * The resulting code can be of any meaningful type.
+ * The resulting code can be of any meaningful type. Strategies with
+ * <tt>int</tt> or <tt>double</tt> codes should implement
+ * {@link IntEncodingStrategy} or {@link DoubleEncodingStrategy}, whose
+ * codes can be used without boxing.
  *
  * @author VHarisop
  */
@@ -33,4 +37,19 @@ public interface EncodingStrategy<V> {
 	 * @return the vertex's assigned encoding value
 	 */
 	public V encode(JVertex vCurr, UniqueVertexGraph uvg);
+
+	/**
+	 * Encodes a vertex from a given {@link CompactBioGraph}. By default,
+	 * the vertex is encoded in a mutable copy of the graph, which is
+	 * created anew on every call; strategies that read compact graphs
+	 * directly should override this method.
+	 * @see CompactBioGraph#toGraph()
+	 *
+	 * @param v the id of the vertex to encode
+	 * @param cg the graph that the vertex resides in
+	 * @return the vertex's assigned encoding value
+	 */
+	public default V encode(int v, CompactBioGraph cg) {
+		return encode(cg.getVertex(v), cg.toGraph());
+	}
 }
@@ -18,7 +18,10 @@ package gr.demokritos.biographs.indexing.preprocessing;
 import java.util.*;
 
 import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.biographs.MappedGraphStore;
 import gr.demokritos.biographs.indexing.GraphDatabase;
+import gr.demokritos.biographs.structs.KmerDictionary;
 import gr.demokritos.iit.jinsect.structs.*;
 
 /**
@@ -26,15 +29,17 @@ import gr.demokritos.iit.jinsect.structs.*;
  * and creates a vector that maps each hash value to the in-degree of the
  * vertex.
  *
+ * Encoding keeps no state in the object: every vertex code is added
+ * straight into the output vector, which callers encoding many graphs
+ * may supply and reuse, e.g. through {@link #encodeGraph(BioGraph, int[])}.
+ * A configured object can therefore encode graphs from many threads,
+ * while an immutable {@link EncoderSpec} of its configuration, returned
+ * by {@link #getSpec()}, can also be shared safely while the object is
+ * reconfigured.
+ *
  * @author VHarisop
  */
 public class IndexVector {
-	/**
-	 * The underlying {@link java.util.TreeMap}, where the hash - count
-	 * mappings are stored when a new vertex is added.
-	 */
-	protected TreeMap<Integer, Integer> vertexMap;
-
 	/**
 	 * The hashing strategy used when adding a new vertex to the mappings.
 	 */
@@ -51,13 +56,17 @@ public class IndexVector {
 	 */
 	protected int K = 26;
 
+	/**
+	 * The dictionary used to hash vertices by id, if any.
+	 */
+	protected KmerDictionary dictionary = null;
+
 	/**
 	 * Creates an empty IndexVector object using the default method
 	 * for hashing.
 	 */
 	public IndexVector() {
 		hashStrategy = Strategies.alphabetHash();
-		initParameters();
 	}
 
 	/**
@@ -73,24 +82,50 @@ public class IndexVector {
 	public IndexVector(GraphDatabase.GraphType gType) {
 		if (gType == GraphDatabase.GraphType.DNA) {
 			hashStrategy = Strategies.dinucleotideHash();
-			initParameters(10);
+			K = 10;
 		}
 		else {
 			hashStrategy = Strategies.alphabetHash();
-			initParameters(26);
+			K = 26;
 		}
 
 		/* only a certain encoding strategy can be used */
 		encodingStrategy = Strategies.inDegreeEncoding();
 	}
 
-	private void initParameters() {
-		vertexMap = new TreeMap<Integer, Integer>();
+	/**
+	 * Creates an IndexVector object configured by a given spec.
+	 *
+	 * @param spec the configuration to use
+	 */
+	public IndexVector(EncoderSpec spec) {
+		hashStrategy = spec.getHashStrategy();
+		encodingStrategy = spec.getEncodingStrategy();
+		K = spec.getBins();
+		dictionary = spec.getDictionary();
+	}
+
+	/**
+	 * Returns an immutable snapshot of the configuration of this object.
+	 * Later changes to this object do not affect the snapshot.
+	 *
+	 * @return the spec of this object
+	 */
+	public EncoderSpec getSpec() {
+		return new EncoderSpec(hashStrategy, encoding(), K, dictionary);
 	}
 
-	private void initParameters(int bins) {
-		vertexMap = new TreeMap<Integer, Integer>();
-		K = bins;
+	/**
+	 * Encodes an array of graphs in parallel with the current
+	 * configuration of this object.
+	 * @see EncoderSpec#encodeAll(BioGraph[])
+	 *
+	 * @param graphs the graphs to encode
+	 * @return a flat matrix with a row of {@link #getBins()} elements
+	 * per graph
+	 */
+	public int[] encodeAll(BioGraph[] graphs) {
+		return getSpec().encodeAll(graphs);
 	}
 
 	/**
@@ -126,52 +161,78 @@ public class IndexVector {
 	}
 	
 	/**
-	 * Sets the number of bins to be used in hashing.
+	 * Sets a {@link KmerDictionary} through which vertices are hashed.
+	 * Every vertex label is then hashed only once per dictionary, as a
+	 * table lookup by k-mer id. The dictionary is only read: labels that
+	 * are not in it, e.g. those of query graphs, are hashed directly, so
+	 * encoding never grows the dictionary. Compact graphs that carry their
+	 * own dictionary are always hashed through it.
 	 *
-	 * @param newNum the new number of bins
+	 * @param dict the dictionary to use, or null to hash every vertex
 	 */
-	public void setBins(int newNum) {
-		K = newNum;
+	public void setDictionary(KmerDictionary dict) {
+		dictionary = dict;
 	}
 
 	/**
-	 * Adds a new vertex to the hash vector.
+	 * Simple getter for the dictionary used by this object.
 	 *
-	 * @param toAdd the vertex to be added
-	 * @param uvg the graph that the vertex resides in
-	 */
-	protected void addVertex(JVertex toAdd, UniqueVertexGraph uvg) {
-		/* hash value modulo K */
-		int hashVal = (hashStrategy.hash(toAdd) % this.K);
-		Integer previous = vertexMap.get(hashVal);
-		Integer code = encodingStrategy.encode(toAdd, uvg);
-
-		/* if the hash key is new, it only occured once so far */
-		if (previous == null) {
-			vertexMap.put(hashVal, code);
+	 * @return the object's dictionary, or null if there is none
+	 */
+	public KmerDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Hashes a vertex, through the dictionary if one is set.
+	 */
+	private int hashOf(JVertex v) {
+		return hashOf(v, (dictionary == null) ?
+				null : dictionary.hashTable(hashStrategy));
+	}
+
+	/**
+	 * Hashes a vertex through the hash table of the dictionary, if the
+	 * table is not null and the dictionary knows the vertex's label.
+	 */
+	private int hashOf(JVertex v, KmerDictionary.HashTable table) {
+		if (table != null) {
+			int id = dictionary.lookup(v.getLabel());
+			if (id >= 0) {
+				return table.hash(id);
+			}
 		}
-		/* otherwise, add 1 to its previous value */
-		else {
-			vertexMap.put(hashVal, previous.intValue() + code);
+		return hashStrategy.hash(v);
+	}
+
+	/**
+	 * Hashes a vertex of a compact graph, through the graph's dictionary
+	 * if it has one.
+	 */
+	private int hashOf(CompactBioGraph cg, int v) {
+		KmerDictionary dict = cg.getDictionary();
+		if (dict == null) {
+			return hashOf(cg.getVertex(v));
 		}
+		return dict.hashTable(hashStrategy).hash(cg.getGlobalId(v));
 	}
 
 	/**
-	 * Returns a list containing the labels of all vertices incident
-	 * to a specified vertex in a {@link UniqueVertexGraph}.
+	 * Sets the number of bins to be used in hashing.
 	 *
-	 * @param v the vertex being examined
-	 * @param uvg the graph in which the vertex resides
-	 * @return a list of all the labels of "incoming" vertices
+	 * @param newNum the new number of bins
 	 */
-	protected List<String>
-	getIncomingLabels(JVertex v, UniqueVertexGraph uvg)
-	{
-		List<String> inVs = new ArrayList<String>();
-		for (Edge e: uvg.incomingEdgesOf(v)) {
-			inVs.add(uvg.getEdgeSource(e).getLabel());
-		}
-		return inVs;
+	public void setBins(int newNum) {
+		K = newNum;
+	}
+
+	/**
+	 * Simple getter for the number of bins used in hashing.
+	 *
+	 * @return the number of bins
+	 */
+	public int getBins() {
+		return K;
 	}
 
 	/**
@@ -184,47 +245,148 @@ public class IndexVector {
 	 */
 	public byte[] getGraphEncoding(UniqueVertexGraph uvg) {
 		/*
-		 * Create a HashMap to keep bin - indegree correspondence
+		 * Number the vertices locally, so that the union of every bin
+		 * can be kept as a set of bits; their hashes are kept as well,
+		 * to be looked up by id
 		 */
-		List<Set<String>> inDegreeSet =
-			new ArrayList<Set<String>>(this.K);
-		for (int i = 0; i < this.K; ++i) {
-			inDegreeSet.add(new HashSet<String>());
+		Set<JVertex> vertices = uvg.vertexSet();
+		int n = vertices.size();
+		VertexIds ids = new VertexIds(n);
+		int[] hashes = new int[n];
+		KmerDictionary.HashTable table = (dictionary == null) ?
+			null : dictionary.hashTable(hashStrategy);
+		int id = 0;
+		for (JVertex v: vertices) {
+			ids.add(v);
+			hashes[id++] = hashOf(v, table);
 		}
 
-		/*
-		 * Form the union of incoming vertices for every bin
-		 */
-		for (JVertex v: uvg.vertexSet()) {
-			int h = (hashStrategy.hash(v) % this.K);
+		int words = (n + 63) >>> 6;
+		long[] inVertices = new long[this.K * words];
+		id = 0;
+		for (JVertex v: vertices) {
+			int h = (hashes[id++] % this.K);
 
 			/*
 			 * If hash value is not in [0, K - 1] (possibly resulting
-			 * from unknown symbols, such as "N"), skip this iteration
+			 * from unknown symbols, such as "N"), skip this vertex
 			 */
 			if (h < 0)
 				continue;
 
-			Set<String> hSet = inDegreeSet.get(h);
-			hSet.addAll(getIncomingLabels(v, uvg));
-			inDegreeSet.set(h, hSet);
+			for (Edge e: uvg.incomingEdgesOf(v)) {
+				int src = ids.idOf(uvg.getEdgeSource(e));
+				inVertices[h * words + (src >>> 6)] |= 1L << src;
+			}
 		}
+		return cardinalities(inVertices, words);
+	}
 
-		/*
-		 * Encoding number is |D|
-		 */
+	/**
+	 * Counts the bits of every bin, given as consecutive runs of words,
+	 * truncating every count to a byte.
+	 */
+	private byte[] cardinalities(long[] bits, int words) {
 		byte[] encoding = new byte[this.K];
 		for (int i = 0; i < this.K; ++i) {
-			encoding[i] = (new Integer(inDegreeSet.get(i).size())).byteValue();
+			int count = 0;
+			for (int w = i * words; w < (i + 1) * words; ++w) {
+				count += Long.bitCount(bits[w]);
+			}
+			encoding[i] = (byte) count;
 		}
 		return encoding;
 	}
 
 	/**
 	 * @see #getGraphEncoding(UniqueVertexGraph) getGraphEncoding
+	 * The encoding is cached in the graph, so encoding it again with the
+	 * same hashing strategy and bins does not traverse the graph.
 	 */
 	public byte[] getGraphEncoding(BioGraph bG) {
-		return getGraphEncoding(bG.getGraph());
+		ConfigKey key = new ConfigKey(hashStrategy, K, null);
+		byte[] enc = (byte[]) bG.getCachedEncoding(key);
+		if (enc == null) {
+			enc = getGraphEncoding(bG.getGraph());
+			bG.cacheEncoding(key, enc);
+		}
+		return enc.clone();
+	}
+
+	/**
+	 * Encodes a {@link CompactBioGraph} object using label hashing on
+	 * each of its vertices, and assigning to each bin the size of the
+	 * union of all "incoming" vertices.
+	 *
+	 * @see #getGraphEncoding(UniqueVertexGraph) getGraphEncoding
+	 * @param cg the graph to be encoded
+	 * @return a byte vector containing the graph encoding
+	 */
+	public byte[] getGraphEncoding(CompactBioGraph cg) {
+		/* vertex ids are dense, so the union of every bin
+		 * can be kept as a set of bits */
+		int words = (cg.vertexCount() + 63) >>> 6;
+		long[] inVertices = new long[this.K * words];
+
+		for (int v = 0; v < cg.vertexCount(); ++v) {
+			int h = (hashOf(cg, v) % this.K);
+
+			/* skip unknown symbols, as in the uncompressed version */
+			if (h < 0)
+				continue;
+
+			for (int i = cg.inStart(v); i < cg.inStart(v + 1); ++i) {
+				int src = cg.inSource(i);
+				inVertices[h * words + (src >>> 6)] |= 1L << src;
+			}
+		}
+		return cardinalities(inVertices, words);
+	}
+
+	/**
+	 * Returns the encoding strategy in use, without setting the default
+	 * one, so that encoding never writes to the object.
+	 */
+	private EncodingStrategy<Integer> encoding() {
+		return (encodingStrategy != null) ?
+			encodingStrategy : Strategies.inDegreeEncoding();
+	}
+
+	/**
+	 * Returns the encoding strategy in use as an {@link IntEncodingStrategy},
+	 * adapting strategies with boxed codes, so that the codes of primitive
+	 * strategies, such as all strategies of {@link Strategies}, are added
+	 * up without boxing.
+	 */
+	private IntEncodingStrategy intEncoding() {
+		final EncodingStrategy<Integer> sg = encoding();
+		if (sg instanceof IntEncodingStrategy) {
+			return (IntEncodingStrategy) sg;
+		}
+		return new IntEncodingStrategy() {
+			@Override
+			public int encodeInt(JVertex vCurr, UniqueVertexGraph uvg) {
+				return sg.encode(vCurr, uvg);
+			}
+
+			@Override
+			public int encodeInt(int v, CompactBioGraph cg) {
+				return sg.encode(v, cg);
+			}
+		};
+	}
+
+	/**
+	 * Checks that a vector can hold an encoding at some offset and
+	 * zeroes its bins.
+	 */
+	private void resetOutput(int[] out, int offset) {
+		if (offset < 0 || offset > out.length - this.K) {
+			throw new IllegalArgumentException(
+					"output vector of length " + out.length +
+					" can not hold " + this.K + " bins at " + offset);
+		}
+		Arrays.fill(out, offset, offset + this.K, 0);
 	}
 
 	/**
@@ -235,44 +397,313 @@ public class IndexVector {
 	 * @return an int vector that encodes the graph
 	 */
 	public int[] encodeGraph(UniqueVertexGraph uvg) {
-		/* make sure the map is reset before encoding */
-		this.clear();
+		int[] vec = new int[this.K];
+		encodeGraph(uvg, vec);
+		return vec;
+	}
 
-		/* create a new encoding strategy, if one is not present */
-		if (null == encodingStrategy) {
-			encodingStrategy = Strategies.inDegreeEncoding();
-		}
-		
-		/* hash each of the graph's vertices */
+	/**
+	 * Encodes a {@link UniqueVertexGraph} object into a given vector, whose
+	 * first {@link #getBins()} elements are overwritten. Any elements past
+	 * them are left untouched, so a vector can be reused for many graphs.
+	 *
+	 * @param uvg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @throws IllegalArgumentException if the vector is too short
+	 */
+	public void encodeGraph(UniqueVertexGraph uvg, int[] out) {
+		encodeGraph(uvg, out, 0);
+	}
+
+	/**
+	 * Encodes a {@link UniqueVertexGraph} object into the
+	 * {@link #getBins()} elements of a vector that start at a given
+	 * offset, e.g. into a row of a flat matrix of encodings.
+	 *
+	 * @param uvg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 * @throws IllegalArgumentException if the bins do not fit
+	 */
+	public void encodeGraph(UniqueVertexGraph uvg, int[] out, int offset) {
+		resetOutput(out, offset);
+		IntEncodingStrategy sg = intEncoding();
+		KmerDictionary.HashTable table = (dictionary == null) ?
+			null : dictionary.hashTable(hashStrategy);
+
+		/* negative hash values fall outside the vector */
 		for (JVertex v: uvg.vertexSet()) {
-			addVertex(v, uvg);
+			int hashVal = (hashOf(v, table) % this.K);
+			if (hashVal >= 0) {
+				out[offset + hashVal] += sg.encodeInt(v, uvg);
+			}
 		}
+	}
 
-		/* populate the vector according to the values stored in the map */
+	/**
+	 * Encodes a {@link BioGraph} object using label hashing. The encoding
+	 * is cached in the graph, so encoding it again with the same hashing
+	 * strategy, bins and encoding strategy does not traverse the graph.
+	 *
+	 * @param bg the graph to encode
+	 * @return a vector of doubles that encodes the graph
+	 */
+	public int[] encodeGraph(BioGraph bg) {
 		int[] vec = new int[this.K];
-		for (int i = 0; i < this.K; ++i) {
-			Integer val = vertexMap.get(i);
-			vec[i] = (val == null) ? 0 : val;
-		}
-		
+		encodeGraph(bg, vec);
 		return vec;
 	}
 
 	/**
-	 * Encodes a {@link BioGraph} object using label hashing.
+	 * Encodes a {@link BioGraph} object into a given vector, as in
+	 * {@link #encodeGraph(UniqueVertexGraph, int[])}. The encoding is
+	 * cached in the graph as in {@link #encodeGraph(BioGraph)}, and a
+	 * cached encoding is copied into the vector.
 	 *
 	 * @param bg the graph to encode
-	 * @return a vector of doubles that encodes the graph
+	 * @param out the vector to write the encoding to
+	 * @throws IllegalArgumentException if the vector is too short
 	 */
-	public int[] encodeGraph(BioGraph bg) {
-		return encodeGraph(bg.getGraph());
+	public void encodeGraph(BioGraph bg, int[] out) {
+		encodeGraph(bg, out, 0);
 	}
 
 	/**
-	 * Resets the DefaultHashVector object, erasing all entries from the
-	 * map and resetting all other values.
+	 * Encodes a {@link BioGraph} object into a given vector at some offset,
+	 * as in {@link #encodeGraph(UniqueVertexGraph, int[], int)}, using
+	 * the graph's cached encoding if there is one.
+	 *
+	 * @param bg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 * @throws IllegalArgumentException if the bins do not fit
 	 */
-	public void clear() {
-		vertexMap.clear();
+	public void encodeGraph(BioGraph bg, int[] out, int offset) {
+		ConfigKey key = new ConfigKey(hashStrategy, K, encoding());
+		int[] enc = (int[]) bg.getCachedEncoding(key);
+		if (enc == null) {
+			encodeGraph(bg.getGraph(), out, offset);
+			bg.cacheEncoding(key,
+					Arrays.copyOfRange(out, offset, offset + this.K));
+		}
+		else {
+			resetOutput(out, offset);
+			System.arraycopy(enc, 0, out, offset, this.K);
+		}
+	}
+
+	/**
+	 * Encodes a {@link CompactBioGraph} object using label hashing on
+	 * each of its vertices. Strategies with primitive codes, such as all
+	 * strategies created by {@link Strategies}, read the compact graph
+	 * directly, while other strategies encode a mutable copy of it.
+	 *
+	 * @param cg the graph to encode
+	 * @return an int vector that encodes the graph
+	 */
+	public int[] encodeGraph(CompactBioGraph cg) {
+		int[] vec = new int[this.K];
+		encodeGraph(cg, vec);
+		return vec;
+	}
+
+	/**
+	 * Encodes a {@link CompactBioGraph} object into a given vector, as in
+	 * {@link #encodeGraph(UniqueVertexGraph, int[])}.
+	 *
+	 * @param cg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @throws IllegalArgumentException if the vector is too short
+	 */
+	public void encodeGraph(CompactBioGraph cg, int[] out) {
+		encodeGraph(cg, out, 0);
+	}
+
+	/**
+	 * Encodes a {@link CompactBioGraph} object into a given vector at some
+	 * offset, as in {@link #encodeGraph(UniqueVertexGraph, int[], int)}.
+	 *
+	 * @param cg the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 * @throws IllegalArgumentException if the bins do not fit
+	 */
+	public void encodeGraph(CompactBioGraph cg, int[] out, int offset) {
+		if (!(encoding() instanceof IntEncodingStrategy)) {
+			/* strategies with boxed codes may only read mutable graphs,
+			 * so the graph is copied once rather than once per vertex */
+			encodeGraph(cg.toGraph(), out, offset);
+			return;
+		}
+		resetOutput(out, offset);
+		IntEncodingStrategy sg = intEncoding();
+		KmerDictionary dict = cg.getDictionary();
+		if (dict == null) {
+			/* hash the expanded vertices */
+			for (int v = 0; v < cg.vertexCount(); ++v) {
+				int hashVal = (hashOf(cg.getVertex(v)) % this.K);
+				if (hashVal >= 0) {
+					out[offset + hashVal] += sg.encodeInt(v, cg);
+				}
+			}
+			return;
+		}
+
+		/* look the table up once, then hash every vertex by id */
+		KmerDictionary.HashTable table = dict.hashTable(hashStrategy);
+		for (int v = 0; v < cg.vertexCount(); ++v) {
+			int hashVal = (table.hash(cg.getGlobalId(v)) % this.K);
+			if (hashVal >= 0) {
+				out[offset + hashVal] += sg.encodeInt(v, cg);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a graph of a {@link MappedGraphStore} through a view of it,
+	 * so that graphs of stores larger than the heap can be encoded.
+	 * @see #encodeGraph(MappedGraphStore.GraphView, int[], int)
+	 *
+	 * @param view the view of the graph to encode
+	 * @return an int vector that encodes the graph
+	 */
+	public int[] encodeGraph(MappedGraphStore.GraphView view) {
+		int[] vec = new int[this.K];
+		encodeGraph(view, vec, 0);
+		return vec;
+	}
+
+	/**
+	 * Encodes a graph of a {@link MappedGraphStore} into a given vector at
+	 * some offset, as in {@link #encodeGraph(CompactBioGraph, int[], int)}.
+	 * The in-degree and degree encodings are read from the mapped file
+	 * directly; other strategies encode a heap copy of this single graph.
+	 *
+	 * @param view the view of the graph to encode
+	 * @param out the vector to write the encoding to
+	 * @param offset the index of the encoding's first bin in the vector
+	 * @throws IllegalArgumentException if the bins do not fit
+	 */
+	public void encodeGraph(MappedGraphStore.GraphView view,
+			int[] out, int offset)
+	{
+		EncodingStrategy<Integer> sg = encoding();
+		boolean degree = (sg == Strategies.degreeEncoding());
+		if (!degree && sg != Strategies.inDegreeEncoding()) {
+			encodeGraph(view.toCompactGraph(), out, offset);
+			return;
+		}
+		resetOutput(out, offset);
+		KmerDictionary.HashTable table = (dictionary == null) ?
+			null : dictionary.hashTable(hashStrategy);
+		for (int v = 0; v < view.vertexCount(); ++v) {
+			JVertex vertex = new NGramVertex(view.getVertexLabel(v));
+			int hashVal = (hashOf(vertex, table) % this.K);
+			if (hashVal >= 0) {
+				out[offset + hashVal] +=
+					degree ? view.degree(v) : view.inDegree(v);
+			}
+		}
+	}
+
+	/**
+	 * Kept for compatibility; encoding keeps no state, so there is
+	 * nothing to reset.
+	 *
+	 * @deprecated encoding no longer accumulates into the object
+	 */
+	@Deprecated
+	public void clear() {}
+
+	/**
+	 * The local ids of the vertices of a graph, numbered in the order they
+	 * are added, kept in an open addressing table of vertices with linear
+	 * probing. Unlike a map of boxed ids, looking up the source of every
+	 * edge allocates nothing, and finds the very vertex of the graph by
+	 * reference before ever comparing labels.
+	 */
+	private static final class VertexIds {
+		private final JVertex[] vertices;
+		private final int[] ids;
+		private int size = 0;
+
+		/**
+		 * Creates an empty table for a fixed number of vertices.
+		 */
+		VertexIds(int count) {
+			int cap = 16;
+			while (cap < 2 * count) {
+				cap <<= 1;
+			}
+			vertices = new JVertex[cap];
+			ids = new int[cap];
+		}
+
+		/**
+		 * Returns the slot of a vertex, or the empty slot where it
+		 * would be added.
+		 */
+		private int slotOf(JVertex v) {
+			int mask = vertices.length - 1;
+			int h = v.hashCode();
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (vertices[slot] != null && vertices[slot] != v &&
+					!vertices[slot].equals(v))
+			{
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Gives the next id to a vertex that is not in the table.
+		 */
+		void add(JVertex v) {
+			int slot = slotOf(v);
+			vertices[slot] = v;
+			ids[slot] = size++;
+		}
+
+		/**
+		 * Returns the id of a vertex in the table.
+		 */
+		int idOf(JVertex v) {
+			return ids[slotOf(v)];
+		}
+	}
+
+	/**
+	 * The key under which encodings are cached in a {@link BioGraph}.
+	 * Strategies are compared by identity, which is why the ones created
+	 * by {@link Strategies} are shared instances.
+	 */
+	private static final class ConfigKey {
+		private final HashingStrategy<JVertex> hashStrategy;
+		private final int bins;
+		private final EncodingStrategy<Integer> encodingStrategy;
+
+		ConfigKey(HashingStrategy<JVertex> hashStrategy, int bins,
+				EncodingStrategy<Integer> encodingStrategy)
+		{
+			this.hashStrategy = hashStrategy;
+			this.bins = bins;
+			this.encodingStrategy = encodingStrategy;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(hashStrategy, bins, encodingStrategy);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof ConfigKey))
+				return false;
+
+			ConfigKey kOther = (ConfigKey) other;
+			return hashStrategy == kOther.hashStrategy &&
+				bins == kOther.bins &&
+				encodingStrategy == kOther.encodingStrategy;
+		}
 	}
 }
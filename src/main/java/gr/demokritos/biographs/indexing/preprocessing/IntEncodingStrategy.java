@@ -0,0 +1,60 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing.preprocessing;
+
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.iit.jinsect.structs.*;
+
+/**
+ * An {@link EncodingStrategy} whose codes are primitive <tt>int</tt>
+ * values, so that encoders can add them up without boxing. The boxed
+ * methods of {@link EncodingStrategy} are implemented in terms of the
+ * primitive ones, so a strategy of this kind can be used anywhere an
+ * <tt>EncodingStrategy&lt;Integer&gt;</tt> is expected.
+ *
+ * @author VHarisop
+ */
+public interface IntEncodingStrategy extends EncodingStrategy<Integer> {
+	/**
+	 * Encodes a vertex from a given {@link UniqueVertexGraph} or
+	 * a {@link gr.demokritos.biographs.BioGraph} object.
+	 * @param vCurr the vertex to encode
+	 * @param uvg the graph that the vertex resides in
+	 * @return the vertex's assigned encoding value
+	 */
+	public int encodeInt(JVertex vCurr, UniqueVertexGraph uvg);
+
+	/**
+	 * Encodes a vertex from a given {@link CompactBioGraph}. A strategy
+	 * that has no faster way can encode the vertex in
+	 * {@link CompactBioGraph#toGraph()}.
+	 *
+	 * @param v the id of the vertex to encode
+	 * @param cg the graph that the vertex resides in
+	 * @return the vertex's assigned encoding value
+	 */
+	public int encodeInt(int v, CompactBioGraph cg);
+
+	@Override
+	public default Integer encode(JVertex vCurr, UniqueVertexGraph uvg) {
+		return encodeInt(vCurr, uvg);
+	}
+
+	@Override
+	public default Integer encode(int v, CompactBioGraph cg) {
+		return encodeInt(v, cg);
+	}
+}
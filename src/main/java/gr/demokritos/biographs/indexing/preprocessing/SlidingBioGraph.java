@@ -0,0 +1,347 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing.preprocessing;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.indexing.structs.GraphIndexEntry;
+import gr.demokritos.biographs.indexing.structs.TrieEntry;
+import gr.demokritos.biographs.structs.LongIntHashMap;
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Arrays;
+
+/**
+ * An n-gram graph of a fixed length substring of a data string, which can
+ * slide along the string one character at a time. Every slide removes the
+ * n-gram (and its edges) leaving the substring and adds the one entering
+ * it, while the hashed vector encodings of the graph are kept up to date,
+ * so they can be read at every offset without building a new graph.
+ *
+ * The encodings are those that an {@link IndexVector} with the same
+ * hashing strategy and number of bins would produce for a {@link BioGraph}
+ * of the current substring: {@link #getGraphEncoding()} matches
+ * {@link IndexVector#getGraphEncoding(BioGraph)} and {@link #encodeGraph()}
+ * matches {@link IndexVector#encodeGraph(BioGraph)} under the in-degree
+ * encoding strategy.
+ *
+ * N-grams are keyed by their characters packed in a <tt>long</tt>, so the
+ * n-gram order can be at most {@link #MAX_ORDER}. This class is not
+ * thread-safe.
+ *
+ * @author VHarisop
+ */
+public final class SlidingBioGraph {
+	/**
+	 * The maximum n-gram order supported.
+	 */
+	public static final int MAX_ORDER = 4;
+
+	/**
+	 * The length of the substring, the order of the n-grams and
+	 * the correlation window.
+	 */
+	private final int length, order, window;
+
+	/**
+	 * The number of n-grams in every full substring.
+	 */
+	private final int nGrams;
+
+	/**
+	 * The hashing strategy used for the encodings and the number of bins.
+	 */
+	private final HashingStrategy<JVertex> hashStrategy;
+	private final int bins;
+
+	/**
+	 * Maps packed n-grams to dense ids, and holds the bin of every id.
+	 * Ids are never released, so that n-grams reentering the substring
+	 * are not hashed again.
+	 */
+	private final LongIntHashMap ids;
+	private int[] idBins;
+
+	/**
+	 * Maps (source id, target id) pairs to the number of times the
+	 * edge occurs in the current substring.
+	 */
+	private final LongIntHashMap edgeCounts;
+
+	/**
+	 * Maps (bin, source id) pairs to the number of distinct edges from
+	 * the source to n-grams of that bin.
+	 */
+	private final LongIntHashMap binSources;
+
+	/**
+	 * A ring buffer with the ids of the n-grams of the current substring,
+	 * in order of position.
+	 */
+	private final int[] positions;
+	private int head;
+
+	/**
+	 * The union size (per bin) and in-degree sum (per bin) encodings.
+	 */
+	private final int[] unionSizes;
+	private final int[] inDegrees;
+
+	/**
+	 * The data string and the current offset in it.
+	 */
+	private CharSequence data;
+	private int start;
+
+	/**
+	 * Creates a new sliding graph for substrings of a given length, using
+	 * the default n-gram order and correlation window of {@link BioGraph}
+	 * and the hashing strategy and bins of an {@link IndexVector}.
+	 *
+	 * @param length the length of the substrings
+	 * @param indVec the index vector whose hashing parameters to use
+	 */
+	public SlidingBioGraph(int length, IndexVector indVec) {
+		this(length, 3, 3, indVec);
+	}
+
+	/**
+	 * Creates a new sliding graph for substrings of a given length, using
+	 * a given n-gram order and correlation window and the hashing strategy
+	 * and bins of an {@link IndexVector}.
+	 *
+	 * @param length the length of the substrings
+	 * @param order the order of the n-grams
+	 * @param correlationWindow the length of the correlation window
+	 * @param indVec the index vector whose hashing parameters to use
+	 */
+	public SlidingBioGraph
+	(int length, int order, int correlationWindow, IndexVector indVec)
+	{
+		if (order < 1 || order > MAX_ORDER) {
+			throw new IllegalArgumentException(
+					"N-gram order must be in [1, " + MAX_ORDER + "]");
+		}
+		this.length = length;
+		this.order = order;
+		this.window = correlationWindow;
+		this.nGrams = Math.max(length - order + 1, 0);
+		this.hashStrategy = indVec.getHashStrategy();
+		this.bins = indVec.getBins();
+
+		ids = new LongIntHashMap();
+		idBins = new int[16];
+		edgeCounts = new LongIntHashMap();
+		binSources = new LongIntHashMap();
+		positions = new int[Math.max(nGrams, 1)];
+		unionSizes = new int[bins];
+		inDegrees = new int[bins];
+	}
+
+	/**
+	 * Positions the graph at a given offset of a data string, building
+	 * the graph of the substring that starts there.
+	 *
+	 * @param data the data string
+	 * @param offset the offset of the substring
+	 */
+	public void reset(CharSequence data, int offset) {
+		if (offset < 0 || offset + length > data.length()) {
+			throw new IndexOutOfBoundsException(
+					"Substring out of bounds: " + offset);
+		}
+		this.data = data;
+		this.start = offset;
+		edgeCounts.clear();
+		binSources.clear();
+		Arrays.fill(unionSizes, 0);
+		Arrays.fill(inDegrees, 0);
+		head = 0;
+
+		for (int p = 0; p < nGrams; ++p) {
+			int id = idOf(offset + p);
+			positions[p] = id;
+			for (int j = Math.max(p - window, 0); j < p; ++j) {
+				addEdge(id, positions[j]);
+			}
+		}
+	}
+
+	/**
+	 * Slides the graph one character forward in the data string.
+	 *
+	 * @return false if the substring has reached the end of the data
+	 * string, in which case the graph is left unchanged
+	 */
+	public boolean slide() {
+		if (data == null || start + length >= data.length()) {
+			return false;
+		}
+		start++;
+		if (nGrams == 0) {
+			return true;
+		}
+
+		/* the leaving n-gram is the target of the edges of the
+		 * n-grams that follow it in the window */
+		int leaving = positions[head];
+		int ahead = Math.min(window, nGrams - 1);
+		for (int j = 1; j <= ahead; ++j) {
+			removeEdge(positions[(head + j) % nGrams], leaving);
+		}
+		head = (head + 1) % nGrams;
+
+		/* the entering n-gram links to the n-grams preceding it */
+		int entering = idOf(start + nGrams - 1);
+		for (int j = 1; j <= ahead; ++j) {
+			addEdge(entering, positions[(head + nGrams - 1 - j) % nGrams]);
+		}
+		positions[(head + nGrams - 1) % nGrams] = entering;
+		return true;
+	}
+
+	/**
+	 * Returns the id of the n-gram starting at a given position of the
+	 * data string, registering it if it has not been seen before.
+	 */
+	private int idOf(int pos) {
+		long key = 0L;
+		for (int i = 0; i < order; ++i) {
+			key = (key << 16) | data.charAt(pos + i);
+		}
+		int id = ids.get(key, -1);
+		if (id < 0) {
+			id = ids.size();
+			if (id == idBins.length) {
+				idBins = Arrays.copyOf(idBins, id << 1);
+			}
+			String label = data.subSequence(pos, pos + order).toString();
+			idBins[id] = hashStrategy.hash(new NGramVertex(label)) % bins;
+			ids.put(key, id);
+		}
+		return id;
+	}
+
+	private static long pairKey(int first, int second) {
+		return (((long) first) << 32) | (second & 0xffffffffL);
+	}
+
+	private void addEdge(int src, int dst) {
+		if (edgeCounts.addTo(pairKey(src, dst), 1) > 1) {
+			return;
+		}
+		/* a new edge: one more incoming edge for dst's bin */
+		int h = idBins[dst];
+		if (h < 0) {
+			return;
+		}
+		inDegrees[h]++;
+		if (binSources.addTo(pairKey(h, src), 1) == 1) {
+			unionSizes[h]++;
+		}
+	}
+
+	private void removeEdge(int src, int dst) {
+		long key = pairKey(src, dst);
+		if (edgeCounts.addTo(key, -1) > 0) {
+			return;
+		}
+		edgeCounts.remove(key);
+		int h = idBins[dst];
+		if (h < 0) {
+			return;
+		}
+		inDegrees[h]--;
+		long bKey = pairKey(h, src);
+		if (binSources.addTo(bKey, -1) == 0) {
+			binSources.remove(bKey);
+			unionSizes[h]--;
+		}
+	}
+
+	/**
+	 * Returns the offset of the current substring in the data string.
+	 *
+	 * @return the current offset
+	 */
+	public int getOffset() {
+		return start;
+	}
+
+	/**
+	 * Returns the current substring.
+	 *
+	 * @return the substring represented by the graph
+	 */
+	public String getSubstring() {
+		return data.subSequence(start, start + length).toString();
+	}
+
+	/**
+	 * Returns the number of distinct edges in the current graph.
+	 *
+	 * @return the edge count
+	 */
+	public int edgeCount() {
+		return edgeCounts.size();
+	}
+
+	/**
+	 * Returns the encoding that assigns to each bin the number of distinct
+	 * vertices with edges towards the vertices of that bin.
+	 *
+	 * @see IndexVector#getGraphEncoding(UniqueVertexGraph) getGraphEncoding
+	 * @return the union size encoding of the current graph
+	 */
+	public byte[] getGraphEncoding() {
+		byte[] encoding = new byte[bins];
+		for (int i = 0; i < bins; ++i) {
+			encoding[i] = (byte) unionSizes[i];
+		}
+		return encoding;
+	}
+
+	/**
+	 * Returns the encoding that assigns to each bin the sum of the
+	 * in-degrees of the vertices of that bin.
+	 *
+	 * @see IndexVector#encodeGraph(UniqueVertexGraph) encodeGraph
+	 * @return the in-degree encoding of the current graph
+	 */
+	public int[] encodeGraph() {
+		return inDegrees.clone();
+	}
+
+	/**
+	 * Creates a {@link TrieEntry} for the current graph. The graph must
+	 * use the hashing parameters of {@link TrieEntry#newIndexVector()}.
+	 *
+	 * @param label the label of the entry
+	 * @return a new entry with the graph's union size encoding
+	 */
+	public TrieEntry toTrieEntry(String label) {
+		return new TrieEntry(label, getGraphEncoding());
+	}
+
+	/**
+	 * Creates a {@link GraphIndexEntry} for the current graph.
+	 *
+	 * @param label the label of the entry
+	 * @return a new entry with the graph's in-degree encoding
+	 */
+	public GraphIndexEntry toGraphIndexEntry(String label) {
+		return new GraphIndexEntry(label, encodeGraph());
+	}
+}
@@ -15,14 +15,309 @@
 
 package gr.demokritos.biographs.indexing.preprocessing;
 
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.biographs.DnaKmers;
 import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Locale;
+
 /**
  * A class with static methods to create some of the most common encoding
- * and hashing strategies for preprocessing.
+ * and hashing strategies for preprocessing. The strategies are stateless,
+ * so every method returns a shared instance; this allows strategies to be
+ * compared by identity, e.g. when caching encodings.
  *
  * @author VHarisop
  */
 public final class Strategies {
+	/*
+	 * Lookup tables for the hashing strategies, indexed by characters
+	 * below 256. Labels starting with other characters are hashed the
+	 * slow way, so the hash values are exactly those of the string
+	 * operations the strategies are defined by.
+	 */
+
+	/**
+	 * The 2-bit codes of the upper case bases, -1 for all other characters.
+	 */
+	private static final byte[] EXACT_BASE = new byte[256];
+
+	/**
+	 * The upper case form of every character, as a single character.
+	 */
+	private static final char[] UPPER = new char[256];
+
+	/**
+	 * The 2-bit codes of the upper case form of every character, -1 for
+	 * characters whose upper case form is not a base.
+	 */
+	private static final byte[] UPPER_BASE = new byte[256];
+
+	/**
+	 * Whether the upper case form of a character is a single character,
+	 * which is not the case for the German sharp s ("\u00DF" to "SS").
+	 */
+	private static final boolean[] SINGLE_UPPER = new boolean[256];
+
+	/**
+	 * The dinucleotide hash of every pair of base codes.
+	 */
+	private static final int[] DINUCLEOTIDES = {
+		0, 1, 2, 3,
+		1, 4, 5, 6,
+		2, 5, 7, 8,
+		3, 6, 8, 9
+	};
+
+	/**
+	 * The dinucleotide hash of pairs that are not both upper case bases.
+	 */
+	private static final int NO_DINUCLEOTIDE = 10;
+
+	static {
+		java.util.Arrays.fill(EXACT_BASE, (byte) -1);
+		String bases = "ACGT";
+		for (int i = 0; i < bases.length(); ++i) {
+			EXACT_BASE[bases.charAt(i)] = (byte) i;
+		}
+		for (char c = 0; c < 256; ++c) {
+			/* the default locale only matters for 'i', see upperInitial */
+			String upper = String.valueOf(c).toUpperCase(Locale.ROOT);
+			UPPER[c] = upper.charAt(0);
+			UPPER_BASE[c] = (byte) exactBase(UPPER[c]);
+			SINGLE_UPPER[c] = upper.length() == 1;
+		}
+	}
+
+	/**
+	 * Returns the 2-bit code of an upper case base, or -1.
+	 */
+	private static int exactBase(char c) {
+		return (c < 256) ? EXACT_BASE[c] : -1;
+	}
+
+	/**
+	 * Returns the first character of <tt>label.toUpperCase()</tt>.
+	 */
+	private static char upperInitial(String label) {
+		char c = label.charAt(0);
+		if (c < 256 && SINGLE_UPPER[c] && (c != 'i' || !dottedCapitalI())) {
+			return UPPER[c];
+		}
+		return label.toUpperCase().charAt(0);
+	}
+
+	/**
+	 * Checks if the default locale upper cases 'i' to a dotted capital I,
+	 * which is the only difference from the root locale below 256.
+	 */
+	private static boolean dottedCapitalI() {
+		String lang = Locale.getDefault().getLanguage();
+		return lang.equals("tr") || lang.equals("az");
+	}
+
+	/**
+	 * Checks if the two initial characters of a label can be hashed as
+	 * in {@link #dnaHash()} through the lookup tables.
+	 */
+	private static boolean inTables(char cA, char cB) {
+		/* only an expanding first character shifts the second one */
+		return cA < 256 && cB < 256 && SINGLE_UPPER[cA];
+	}
+
+	/**
+	 * Computes {@link #dnaHash()} from the upper case form of a label.
+	 */
+	private static int dnaHashOf(String label) {
+		String upper = label.toUpperCase();
+		return exactBase(upper.charAt(0)) * 4 + exactBase(upper.charAt(1));
+	}
+
+	/**
+	 * Computes {@link #dinucleotideHash()} for the initial characters
+	 * of a label.
+	 */
+	private static int dinucleotideOf(char cA, char cB) {
+		int a = exactBase(cA), b = exactBase(cB);
+		return (a < 0 || b < 0) ? NO_DINUCLEOTIDE : DINUCLEOTIDES[a * 4 + b];
+	}
+
+	/* the shared strategy instances */
+
+	private static final HashingStrategy<JVertex> SIMPLE_DNA_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				int code = exactBase(vCurr.getLabel().charAt(0));
+				return (code < 0) ? 4 : code;
+			}
+		};
+
+	private static final HashingStrategy<JVertex> DINUCLEOTIDE_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				String label = vCurr.getLabel();
+				return dinucleotideOf(label.charAt(0), label.charAt(1));
+			}
+		};
+
+	private static final HashingStrategy<JVertex> ALPHABET_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				return (int) upperInitial(vCurr.getLabel()) - (int) 'A';
+			}
+		};
+
+	private static final HashingStrategy<JVertex> DNA_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				String label = vCurr.getLabel();
+				if (label.length() >= 2) {
+					char cA = label.charAt(0), cB = label.charAt(1);
+					if (inTables(cA, cB)) {
+						return UPPER_BASE[cA] * 4 + UPPER_BASE[cB];
+					}
+				}
+				return dnaHashOf(label);
+			}
+		};
+
+	private static final HashingStrategy<JVertex> CANONICAL_DNA_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				String label = vCurr.getLabel();
+				int n = label.length();
+				if (n >= 2) {
+					/* read the initial characters of the canonical label
+					 * without building it */
+					boolean rev = DnaKmers.isReverseCanonical(label);
+					char cA = rev ?
+						DnaKmers.complement(label.charAt(n - 1)) : label.charAt(0);
+					char cB = rev ?
+						DnaKmers.complement(label.charAt(n - 2)) : label.charAt(1);
+					if (inTables(cA, cB)) {
+						return UPPER_BASE[cA] * 4 + UPPER_BASE[cB];
+					}
+				}
+				return dnaHashOf(DnaKmers.canonicalLabel(label));
+			}
+		};
+
+	private static final HashingStrategy<JVertex> CANONICAL_DINUCLEOTIDE_HASH =
+		new HashingStrategy<JVertex>() {
+			@Override
+			public int hash(JVertex vCurr) {
+				String label = vCurr.getLabel();
+				int n = label.length();
+				if (DnaKmers.isReverseCanonical(label)) {
+					return dinucleotideOf(
+							DnaKmers.complement(label.charAt(n - 1)),
+							DnaKmers.complement(label.charAt(n - 2)));
+				}
+				return dinucleotideOf(label.charAt(0), label.charAt(1));
+			}
+		};
+
+	private static final DoubleEncodingStrategy WEIGHT_ENCODING =
+		new DoubleEncodingStrategy() {
+			@Override
+			public double encodeDouble(JVertex vCurr, UniqueVertexGraph uvG) {
+				return uvG.weightSumOf(vCurr);
+			}
+	
+			@Override
+			public double encodeDouble(int v, CompactBioGraph cg) {
+				return cg.weightSumOf(v);
+			}
+		};
+
+	private static final DoubleEncodingStrategy INCOMING_WEIGHT_ENCODING =
+		new DoubleEncodingStrategy() {
+			@Override
+			public double encodeDouble(JVertex vCurr, UniqueVertexGraph uvG) {
+				return uvG.incomingWeightSumOf(vCurr);
+			}
+	
+			@Override
+			public double encodeDouble(int v, CompactBioGraph cg) {
+				return cg.incomingWeightSumOf(v);
+			}
+		};
+
+	private static final IntEncodingStrategy DEGREE_ENCODING =
+		new IntEncodingStrategy() {
+			@Override
+			public int encodeInt(JVertex vCurr, UniqueVertexGraph uvG) {
+				/* read the edge counts instead of collecting the edges;
+				 * a self loop is counted once, as in edgesOf */
+				int loop = (uvG.getEdge(vCurr, vCurr) == null) ? 0 : 1;
+				return uvG.inDegreeOf(vCurr) + uvG.outDegreeOf(vCurr) - loop;
+			}
+	
+			@Override
+			public int encodeInt(int v, CompactBioGraph cg) {
+				return cg.degree(v);
+			}
+		};
+
+	private static final IntEncodingStrategy IN_DEGREE_ENCODING =
+		new IntEncodingStrategy() {
+			@Override
+			public int encodeInt(JVertex vCurr, UniqueVertexGraph uvG) {
+				return uvG.inDegreeOf(vCurr);
+			}
+	
+			@Override
+			public int encodeInt(int v, CompactBioGraph cg) {
+				return cg.inDegree(v);
+			}
+		};
+
+	private static final IntEncodingStrategy WEIGHT_RATIO_ENCODING =
+		new IntEncodingStrategy() {
+			@Override
+			public int encodeInt(JVertex vCurr, UniqueVertexGraph uvg) {
+				double wMin = Double.MAX_VALUE;
+				double wMax = Double.MIN_VALUE;
+	
+				/* find minimum and maximum incoming weights */
+				for (Edge e: uvg.incomingEdgesOf(vCurr)) {
+					if (e.edgeWeight() < wMin) {
+						wMin = e.edgeWeight();
+					}
+					if (e.edgeWeight() > wMax) {
+						wMax = e.edgeWeight();
+					}
+				}
+	
+				/* map ratio from [eps, 1] to [eps, 100] */
+				double ratio = (wMin / wMax) * 100;
+				return (int) Math.round(ratio);
+			}
+	
+			@Override
+			public int encodeInt(int v, CompactBioGraph cg) {
+				double wMin = Double.MAX_VALUE;
+				double wMax = Double.MIN_VALUE;
+	
+				for (int i = cg.inStart(v); i < cg.inStart(v + 1); ++i) {
+					if (cg.inWeight(i) < wMin) {
+						wMin = cg.inWeight(i);
+					}
+					if (cg.inWeight(i) > wMax) {
+						wMax = cg.inWeight(i);
+					}
+				}
+	
+				double ratio = (wMin / wMax) * 100;
+				return (int) Math.round(ratio);
+			}
+		};
+
 	/**
 	 * Creates a simple {@link HashingStrategy} that encodes vertices
 	 * based on the initial letter of their label, and returning a distinct
@@ -31,24 +326,7 @@ public final class Strategies {
 	 * @return the hashing strategy described above
 	 */
 	public static final HashingStrategy<JVertex> simpleDnaHash() {
-		return new HashingStrategy<JVertex>() {
-			@Override
-			public int hash(JVertex vCurr) {
-				char c = vCurr.getLabel().charAt(0);
-				switch (c) {
-					case 'A':
-						return 0;
-					case 'C':
-						return 1;
-					case 'G':
-						return 2;
-					case 'T':
-						return 3;
-					default:
-						return 4;
-				}
-			}
-		};
+		return SIMPLE_DNA_HASH;
 	}
 
 	/**
@@ -59,42 +337,7 @@ public final class Strategies {
 	 * @return the {@link HashingStrategy<JVertex>} object described above
 	 */
 	public static final HashingStrategy<JVertex> dinucleotideHash() {
-		return new HashingStrategy<JVertex>() {
-			@Override
-			public int hash(JVertex vCurr) {
-				String sInit = vCurr.getLabel().substring(0, 2);
-				switch (sInit) {
-					case "AA":
-						return 0;
-					case "AC":
-					case "CA":
-						return 1;
-					case "AG":
-					case "GA":
-						return 2;
-					case "AT":
-					case "TA":
-						return 3;
-					case "CC":
-						return 4;
-					case "CG":
-					case "GC":
-						return 5;
-					case "CT":
-					case "TC":
-						return 6;
-					case "GG":
-						return 7;
-					case "GT":
-					case "TG":
-						return 8;
-					case "TT":
-						return 9;
-					default:
-						return 10;
-				}
-			}
-		};
+		return DINUCLEOTIDE_HASH;
 	}
 
 	/**
@@ -105,13 +348,7 @@ public final class Strategies {
 	 * @return the {@link HashingStrategy<JVertex>} described above
 	 */
 	public static final HashingStrategy<JVertex> alphabetHash() {
-		return new HashingStrategy<JVertex>() {
-			@Override
-			public int hash(JVertex vCurr) {
-				char c = vCurr.getLabel().toUpperCase().charAt(0);
-				return (int) c - (int) 'A';
-			}
-		};
+		return ALPHABET_HASH;
 	}
 
 	/**
@@ -121,40 +358,115 @@ public final class Strategies {
 	 * @return the {@link HashingStrategy<JVertex>} described above
 	 */
 	public static final HashingStrategy<JVertex> dnaHash() {
-		return new HashingStrategy<JVertex>() {
-			@Override
-			public int hash(JVertex vCurr) {
-				char cA = vCurr.getLabel().toUpperCase().charAt(0);
-				char cB = vCurr.getLabel().toUpperCase().charAt(1);
-
-				int retA, retB;
-				switch (cA) {
-					case 'A':
-						retA = 0; break;
-					case 'C':
-						retA = 1; break;
-					case 'G':
-						retA = 2; break;
-					case 'T':
-						retA = 3; break;
-					default:
-						retA = -1;
-				}
-				switch (cB) {
-					case 'A':
-						retB = 0; break;
-					case 'C':
-						retB = 1; break;
-					case 'G':
-						retB = 2; break;
-					case 'T':
-						retB = 3; break;
-					default:
-						retB = -1;
-				}
-				return retA * 4 + retB;
+		return DNA_HASH;
+	}
+
+	/**
+	 * Creates a new {@link HashingStrategy} that hashes vertices like
+	 * {@link #dnaHash()}, but using the canonical form of their labels
+	 * (the smaller of the label and its reverse complement). A k-mer and
+	 * its reverse complement are therefore hashed to the same bin, which
+	 * makes the strategy suitable for strand-agnostic graphs, such as
+	 * those created by {@link gr.demokritos.biographs.BioGraph#canonicalGraph}.
+	 *
+	 * @return the {@link HashingStrategy<JVertex>} described above
+	 */
+	public static final HashingStrategy<JVertex> canonicalDnaHash() {
+		return CANONICAL_DNA_HASH;
+	}
+
+	/**
+	 * Creates a new {@link HashingStrategy} that hashes vertices like
+	 * {@link #dinucleotideHash()}, but using the canonical form of their
+	 * labels.
+	 * @see #canonicalDnaHash()
+	 *
+	 * @return the {@link HashingStrategy<JVertex>} described above
+	 */
+	public static final HashingStrategy<JVertex> canonicalDinucleotideHash() {
+		return CANONICAL_DINUCLEOTIDE_HASH;
+	}
+
+	/**
+	 * Returns a name for a strategy that is the same in every run, such
+	 * as "dnaHash" for the strategy returned by {@link #dnaHash()}.
+	 * Strategies not created by this class are named by their class.
+	 *
+	 * @param sg the hashing or encoding strategy
+	 * @return the name of the strategy
+	 */
+	public static String nameOf(Object sg) {
+		if (sg == SIMPLE_DNA_HASH) {
+			return "simpleDnaHash";
+		}
+		if (sg == DINUCLEOTIDE_HASH) {
+			return "dinucleotideHash";
+		}
+		if (sg == ALPHABET_HASH) {
+			return "alphabetHash";
+		}
+		if (sg == DNA_HASH) {
+			return "dnaHash";
+		}
+		if (sg == CANONICAL_DNA_HASH) {
+			return "canonicalDnaHash";
+		}
+		if (sg == CANONICAL_DINUCLEOTIDE_HASH) {
+			return "canonicalDinucleotideHash";
+		}
+		if (sg == WEIGHT_ENCODING) {
+			return "weightEncoding";
+		}
+		if (sg == INCOMING_WEIGHT_ENCODING) {
+			return "incomingWeightEncoding";
+		}
+		if (sg == DEGREE_ENCODING) {
+			return "degreeEncoding";
+		}
+		if (sg == IN_DEGREE_ENCODING) {
+			return "inDegreeEncoding";
+		}
+		if (sg == WEIGHT_RATIO_ENCODING) {
+			return "weightRatioEncoding";
+		}
+		return sg.getClass().getName();
+	}
+
+	/**
+	 * Hashes a packed k-mer as a hashing strategy would hash a vertex
+	 * labelled by the k-mer. The strategies created by this class work
+	 * directly on the 2-bit codes of the k-mer, while other strategies
+	 * hash a vertex with the unpacked label.
+	 * @see DnaKmers#pack(CharSequence)
+	 *
+	 * @param sg the hashing strategy
+	 * @param kmer the packed k-mer
+	 * @param order the k-mer order
+	 * @return the hash value of the k-mer
+	 */
+	public static int hashKmer(HashingStrategy<JVertex> sg,
+			long kmer, int order)
+	{
+		if (order >= 2) {
+			if (sg == CANONICAL_DNA_HASH || sg == CANONICAL_DINUCLEOTIDE_HASH) {
+				kmer = DnaKmers.canonical(kmer, order);
 			}
-		};
+			int a = DnaKmers.baseAt(kmer, order, 0);
+			int b = DnaKmers.baseAt(kmer, order, 1);
+			if (sg == DNA_HASH || sg == CANONICAL_DNA_HASH) {
+				return a * 4 + b;
+			}
+			if (sg == DINUCLEOTIDE_HASH || sg == CANONICAL_DINUCLEOTIDE_HASH) {
+				return DINUCLEOTIDES[a * 4 + b];
+			}
+			if (sg == SIMPLE_DNA_HASH) {
+				return a;
+			}
+			if (sg == ALPHABET_HASH) {
+				return (int) DnaKmers.baseChar(a) - (int) 'A';
+			}
+		}
+		return sg.hash(new NGramVertex(DnaKmers.unpack(kmer, order)));
 	}
 
 	/**
@@ -162,89 +474,49 @@ public final class Strategies {
 	 * incident weights (from incoming + outgoing edges) to each
 	 * {@link JVertex}.
 	 *
-	 * @return the {@link EncodingStrategy<Double>} described above
+	 * @return the {@link DoubleEncodingStrategy} described above
 	 */
-	public static final EncodingStrategy<Double> weightEncoding() {
-		return new EncodingStrategy<Double>() {
-			@Override
-			public Double encode(JVertex vCurr, UniqueVertexGraph uvG) {
-				return uvG.weightSumOf(vCurr);
-			}
-		};
+	public static final DoubleEncodingStrategy weightEncoding() {
+		return WEIGHT_ENCODING;
 	}
 
 	/**
 	 * Creates a new {@link EncodingStrategy} that assigns the sum of
 	 * incoming edge weights to each {@link JVertex}.
 	 *
-	 * @return the {@link EncodingStrategy<Double>} described above
+	 * @return the {@link DoubleEncodingStrategy} described above
 	 */
-	public static final EncodingStrategy<Double> incomingWeightEncoding() {
-		return new EncodingStrategy<Double>() {
-			@Override
-			public Double encode(JVertex vCurr, UniqueVertexGraph uvG) {
-				return uvG.incomingWeightSumOf(vCurr);
-			}
-		};
+	public static final DoubleEncodingStrategy incomingWeightEncoding() {
+		return INCOMING_WEIGHT_ENCODING;
 	}
 	
 	/**
 	 * Creates a new {@link EncodingStrategy} that assigns the number
 	 * of incident edges to each {@link JVertex}.
 	 *
-	 * @return the {@link EncodingStrategy<Integer>} described above
+	 * @return the {@link IntEncodingStrategy} described above
 	 */
-	public static final EncodingStrategy<Integer> degreeEncoding() {
-		return new EncodingStrategy<Integer>() {
-			@Override
-			public Integer encode(JVertex vCurr, UniqueVertexGraph uvG) {
-				return uvG.edgesOf(vCurr).size();
-			}
-		};
+	public static final IntEncodingStrategy degreeEncoding() {
+		return DEGREE_ENCODING;
 	}
 	
 	/**
 	 * Creates a new {@link EncodingStrategy} that assigns the number
 	 * of incoming edges to each {@link JVertex}.
 	 *
-	 * @return the {@link EncodingStrategy<Integer>} described above
+	 * @return the {@link IntEncodingStrategy} described above
 	 */
-	public static final EncodingStrategy<Integer> inDegreeEncoding() {
-		return new EncodingStrategy<Integer>() {
-			@Override
-			public Integer encode(JVertex vCurr, UniqueVertexGraph uvG) {
-				return uvG.incomingEdgesOf(vCurr).size();
-			}
-		};
+	public static final IntEncodingStrategy inDegreeEncoding() {
+		return IN_DEGREE_ENCODING;
 	}
 
 	/**
 	 * Creates a new {@link EncodingStrategy} that assigns the ratio of
 	 * minimum over maximum of incident edge weights to each {@link JVertex}.
 	 *
-	 * @return the {@link EncodingStrategy<Integer>} described above
+	 * @return the {@link IntEncodingStrategy} described above
 	 */
-	public static final EncodingStrategy<Integer> weightRatioEncoding() {
-		return new EncodingStrategy<Integer>() {
-			@Override
-			public Integer encode(JVertex vCurr, UniqueVertexGraph uvg) {
-				double wMin = Double.MAX_VALUE;
-				double wMax = Double.MIN_VALUE;
-
-				/* find minimum and maximum incoming weights */
-				for (Edge e: uvg.incomingEdgesOf(vCurr)) {
-					if (e.edgeWeight() < wMin) {
-						wMin = e.edgeWeight();
-					}
-					if (e.edgeWeight() > wMax) {
-						wMax = e.edgeWeight();
-					}
-				}
-
-				/* map ratio from [eps, 1] to [eps, 100] */
-				double ratio = (wMin / wMax) * 100;
-				return (int) Math.round(ratio);
-			}
-		};
+	public static final IntEncodingStrategy weightRatioEncoding() {
+		return WEIGHT_RATIO_ENCODING;
 	}
 }
@@ -50,6 +50,18 @@ public final class GraphIndexEntry {
 		this.indexEncoding = indVec.encodeGraph(bG);
 	}
 
+	/**
+	 * Creates a new GraphIndexEntry object from a label and an already
+	 * computed hashed vector encoding.
+	 *
+	 * @param label the label of the graph that the entry refers to
+	 * @param encoding the hashed vector encoding of the graph
+	 */
+	public GraphIndexEntry(String label, int[] encoding) {
+		this.graphLabel = label;
+		this.indexEncoding = encoding;
+	}
+
 	/**
 	 * Returns the hashed vector encoding of the graph that this
 	 * entry refers to.
@@ -0,0 +1,123 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.indexing.structs;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stage counters of a staged index build. For every stage, the
+ * number of processed items and the total time that the stage's threads
+ * spent working on them are kept. The counters are updated while the
+ * build runs, so they can also be inspected from another thread.
+ *
+ * @author VHarisop
+ */
+public final class PipelineStats {
+	/**
+	 * The stages of a build pipeline.
+	 */
+	public enum Stage {
+		READ, BUILD, ENCODE, WRITE
+	}
+
+	private final AtomicLongArray counts;
+	private final AtomicLongArray busyNanos;
+	private final long startNanos;
+	private volatile long endNanos = -1;
+
+	/**
+	 * Creates a new set of counters, starting the build's clock.
+	 */
+	public PipelineStats() {
+		counts = new AtomicLongArray(Stage.values().length);
+		busyNanos = new AtomicLongArray(Stage.values().length);
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Records that a stage has processed an item.
+	 *
+	 * @param stage the stage
+	 * @param nanos the time spent on the item, in nanoseconds
+	 */
+	public void record(Stage stage, long nanos) {
+		counts.incrementAndGet(stage.ordinal());
+		busyNanos.addAndGet(stage.ordinal(), nanos);
+	}
+
+	/**
+	 * Stops the build's clock.
+	 */
+	public void finish() {
+		endNanos = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of items that a stage has processed.
+	 *
+	 * @param stage the stage
+	 * @return the item count
+	 */
+	public long getCount(Stage stage) {
+		return counts.get(stage.ordinal());
+	}
+
+	/**
+	 * Returns the total time that the threads of a stage have spent
+	 * processing items, which excludes the time spent waiting on the
+	 * stage's queues.
+	 *
+	 * @param stage the stage
+	 * @return the busy time in seconds
+	 */
+	public double getBusySeconds(Stage stage) {
+		return busyNanos.get(stage.ordinal()) / 1e9;
+	}
+
+	/**
+	 * Returns the time elapsed since the build started, or the total
+	 * duration of the build if it has finished.
+	 *
+	 * @return the elapsed time in seconds
+	 */
+	public double getElapsedSeconds() {
+		long end = (endNanos < 0) ? System.nanoTime() : endNanos;
+		return (end - startNanos) / 1e9;
+	}
+
+	/**
+	 * Returns the throughput of a stage over the elapsed time of the build.
+	 *
+	 * @param stage the stage
+	 * @return the processed items per second
+	 */
+	public double getThroughput(Stage stage) {
+		double secs = getElapsedSeconds();
+		return (secs > 0) ? getCount(stage) / secs : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("elapsed %.3fs", getElapsedSeconds()));
+		for (Stage s: Stage.values()) {
+			sb.append(String.format("; %s: %d items, %.1f/s, busy %.3fs",
+						s.name().toLowerCase(), getCount(s),
+						getThroughput(s), getBusySeconds(s)));
+		}
+		return sb.toString();
+	}
+}
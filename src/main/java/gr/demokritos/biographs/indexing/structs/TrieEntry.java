@@ -55,9 +55,7 @@ public final class TrieEntry {
 		/*
 		 * get the standard index encoding
 		 */
-		IndexVector indVec = new IndexVector(GraphType.DNA);
-		indVec.setHashStrategy(Strategies.dnaHash());
-		indVec.setBins(16);
+		IndexVector indVec = newIndexVector();
 
 		/*
 		 * Obtain the hashed vector encoding for the graph and cache it
@@ -65,6 +63,32 @@ public final class TrieEntry {
 		 */
 		indexEncoding = indVec.getGraphEncoding(bG);
 	}
+
+	/**
+	 * Creates a new TrieEntry object from a label and an already
+	 * computed hashed vector encoding, such as the ones produced by
+	 * {@link SlidingBioGraph}.
+	 *
+	 * @param label the label of the graph that the entry refers to
+	 * @param encoding the hashed vector encoding of the graph
+	 */
+	public TrieEntry(String label, byte[] encoding) {
+		this.label = label;
+		this.indexEncoding = encoding;
+	}
+
+	/**
+	 * Creates an {@link IndexVector} with the hashing parameters that
+	 * are used for the encodings of all TrieEntry objects.
+	 *
+	 * @return a new, properly configured IndexVector
+	 */
+	public static IndexVector newIndexVector() {
+		IndexVector indVec = new IndexVector(GraphType.DNA);
+		indVec.setHashStrategy(Strategies.dnaHash());
+		indVec.setBins(16);
+		return indVec;
+	}
 	
 	/**
 	 * Converts an index vector encoding to a bitfield representation,
@@ -76,7 +100,7 @@ public final class TrieEntry {
 	 * @return the vector's bitfield representation
 	 */
 	protected String vectorToBits(byte[] vec, int num_bits) {
-		String repr = "";
+		StringBuilder repr = new StringBuilder(vec.length * num_bits);
 		float fact = (float) num_bits;
 		float num_set;
 		for (int i = 0; i < vec.length; ++i) {
@@ -88,12 +112,12 @@ public final class TrieEntry {
 
 			for (int j = 0; j < num_bits; ++j) {
 				if (j < ones)
-					repr += "1";
+					repr.append('1');
 				else
-					repr += "0";
+					repr.append('0');
 			}
 		}
-		return repr;
+		return repr.toString();
 	}
 
 	/**
@@ -0,0 +1,310 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An input stream that decompresses a BGZF file (a series of independent
+ * gzip members of at most 64KB each, as written by bgzip) in parallel.
+ * Compressed blocks are read sequentially and inflated as tasks of a
+ * {@link ForkJoinPool}, with a bounded number of blocks in flight, and
+ * are returned in file order.
+ *
+ * @author VHarisop
+ */
+public final class BgzfInputStream extends InputStream {
+	/**
+	 * The size of the fixed part of a gzip member's header.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * The size of a gzip member's trailer (CRC32 and ISIZE).
+	 */
+	private static final int TRAILER_SIZE = 8;
+
+	/**
+	 * The maximum uncompressed size of a BGZF block.
+	 */
+	private static final int MAX_BLOCK_DATA = 1 << 16;
+
+	private final InputStream raw;
+	private final ForkJoinPool pool;
+	private final int maxPending;
+
+	/**
+	 * The blocks being inflated, in file order.
+	 */
+	private final ArrayDeque<Future<byte[]>> pending;
+
+	private byte[] current = new byte[0];
+	private int pos = 0;
+	private boolean rawDone = false;
+
+	/**
+	 * Creates a new stream that decompresses BGZF data using the
+	 * common pool.
+	 *
+	 * @param raw the compressed data
+	 */
+	public BgzfInputStream(InputStream raw) {
+		this(raw, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a new stream that decompresses BGZF data in a given pool.
+	 *
+	 * @param raw the compressed data
+	 * @param pool the pool to inflate blocks in
+	 */
+	public BgzfInputStream(InputStream raw, ForkJoinPool pool) {
+		this.raw = raw;
+		this.pool = pool;
+		this.maxPending = 2 * pool.getParallelism() + 2;
+		this.pending = new ArrayDeque<Future<byte[]>>(maxPending);
+	}
+
+	/**
+	 * Checks if a gzip header starts a BGZF block, i.e. if it has an
+	 * extra field containing the "BC" subfield.
+	 *
+	 * @param header the first bytes of a file
+	 * @param len the number of valid bytes in the header
+	 * @return true if the header is the header of a BGZF block
+	 */
+	public static boolean isBgzf(byte[] header, int len) {
+		if (len < HEADER_SIZE || (header[0] & 0xff) != 0x1f ||
+			(header[1] & 0xff) != 0x8b || (header[3] & 4) == 0)
+		{
+			return false;
+		}
+		int xlen = u16(header, 10);
+		return len >= HEADER_SIZE + xlen &&
+			blockSize(header, HEADER_SIZE, xlen) > 0;
+	}
+
+	private static int u16(byte[] b, int off) {
+		return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+	}
+
+	private static int u32(byte[] b, int off) {
+		return u16(b, off) | (u16(b, off + 2) << 16);
+	}
+
+	/**
+	 * Returns the total size of a BGZF block, as given by the BC subfield
+	 * of its extra field, or -1 if the subfield is missing.
+	 */
+	private static int blockSize(byte[] extra, int off, int xlen) {
+		int i = off;
+		while (i + 4 <= off + xlen) {
+			int slen = u16(extra, i + 2);
+			if (extra[i] == 'B' && extra[i + 1] == 'C' && slen == 2) {
+				return u16(extra, i + 4) + 1;
+			}
+			i += 4 + slen;
+		}
+		return -1;
+	}
+
+	private void readFully(byte[] buf, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = raw.read(buf, off, len);
+			if (n < 0) {
+				throw new EOFException("truncated BGZF block");
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Reads the next compressed block, or returns null at the end of
+	 * the raw stream.
+	 */
+	private byte[] readBlock() throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		int first = raw.read();
+		if (first < 0) {
+			return null;
+		}
+		header[0] = (byte) first;
+		readFully(header, 1, HEADER_SIZE - 1);
+		if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b ||
+			(header[3] & 4) == 0)
+		{
+			throw new IOException("not a BGZF block");
+		}
+
+		int xlen = u16(header, 10);
+		byte[] extra = new byte[xlen];
+		readFully(extra, 0, xlen);
+		int bsize = blockSize(extra, 0, xlen);
+		if (bsize < HEADER_SIZE + xlen + TRAILER_SIZE) {
+			throw new IOException("not a BGZF block");
+		}
+
+		byte[] block = new byte[bsize];
+		System.arraycopy(header, 0, block, 0, HEADER_SIZE);
+		System.arraycopy(extra, 0, block, HEADER_SIZE, xlen);
+		readFully(block, HEADER_SIZE + xlen, bsize - HEADER_SIZE - xlen);
+		return block;
+	}
+
+	/**
+	 * Inflates a whole BGZF block, checking its length and CRC.
+	 */
+	private static byte[] inflate(byte[] block) throws IOException {
+		int xlen = u16(block, 10);
+		int dataStart = HEADER_SIZE + xlen;
+		int dataLen = block.length - dataStart - TRAILER_SIZE;
+		int crc = u32(block, block.length - TRAILER_SIZE);
+		int isize = u32(block, block.length - 4);
+		if (isize < 0 || isize > MAX_BLOCK_DATA) {
+			throw new IOException("corrupt BGZF block");
+		}
+
+		byte[] out = new byte[isize];
+		Inflater inf = new Inflater(true);
+		try {
+			inf.setInput(block, dataStart, dataLen);
+			int n = 0;
+			while (n < isize && !inf.finished()) {
+				int k = inf.inflate(out, n, isize - n);
+				if (k == 0 && (inf.needsInput() || inf.needsDictionary())) {
+					break;
+				}
+				n += k;
+			}
+			if (n != isize) {
+				throw new IOException("corrupt BGZF block");
+			}
+		}
+		catch (DataFormatException ex) {
+			throw new IOException("corrupt BGZF block", ex);
+		}
+		finally {
+			inf.end();
+		}
+
+		CRC32 check = new CRC32();
+		check.update(out, 0, isize);
+		if ((int) check.getValue() != crc) {
+			throw new IOException("BGZF block failed CRC check");
+		}
+		return out;
+	}
+
+	/**
+	 * Submits blocks for inflation until enough are in flight.
+	 */
+	private void fill() throws IOException {
+		while (!rawDone && pending.size() < maxPending) {
+			final byte[] block = readBlock();
+			if (block == null) {
+				rawDone = true;
+				break;
+			}
+			pending.add(pool.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws IOException {
+					return inflate(block);
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Makes the next non-empty block current, returning false at the
+	 * end of the stream.
+	 */
+	private boolean advance() throws IOException {
+		while (pos >= current.length) {
+			fill();
+			Future<byte[]> next = pending.poll();
+			if (next == null) {
+				return false;
+			}
+			try {
+				current = next.get();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted", ex);
+			}
+			catch (ExecutionException ex) {
+				/* fork-join pools wrap the checked exceptions of
+				 * callables in runtime exceptions */
+				Throwable cause = ex.getCause();
+				for (Throwable t = cause; t != null; t = t.getCause()) {
+					if (t instanceof IOException) {
+						throw (IOException) t;
+					}
+				}
+				throw new IOException(cause);
+			}
+			pos = 0;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!advance()) {
+			return -1;
+		}
+		return current[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] buf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!advance()) {
+			return -1;
+		}
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current, pos, buf, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return current.length - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> f: pending) {
+			f.cancel(false);
+		}
+		pending.clear();
+		raw.close();
+	}
+}
@@ -16,11 +16,12 @@
 package gr.demokritos.biographs.io;
 
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 import gr.demokritos.biographs.*;
-import gr.demokritos.iit.jinsect.io.LineReader;
 
 import org.biojava.nbio.core.sequence.io.FastaReaderHelper;
 import org.biojava.nbio.core.sequence.DNASequence;
@@ -45,15 +46,10 @@ public class BioInput {
 	public static BioGraph fromFastaFile(File inFile) 
 	throws Exception
 	{
-		BioGraph bGraph = null;
-		LinkedHashMap<String, DNASequence> entries = readFastaFile(inFile);
-		/* try reading the first dna sequence from the file */
-		for (Entry<String, DNASequence> entry: entries.entrySet()) {
-			bGraph = BioGraph.fromSequence(entry.getValue(), entry.getKey());
-			break;
+		/* read only the first dna sequence from the file */
+		try (FastaReader reader = new FastaReader(inFile)) {
+			return reader.hasNext() ? reader.next().toGraph() : null;
 		}
-
-		return bGraph;
 	}
 
 	/**
@@ -67,21 +63,15 @@ public class BioInput {
 	public static BioGraph fromFastaFile(String fName) 
 	throws Exception 
 	{
-		BioGraph bGraph = null;
-		LinkedHashMap<String, DNASequence> entries = readFastaFile(fName);
-		/* try reading the first dna sequence from the file */
-		for (Entry<String, DNASequence> entry : entries.entrySet()) {
-			bGraph = BioGraph.fromSequence(entry.getValue(), entry.getKey());
-			break;
-		}
-
-		return bGraph;
+		return fromFastaFile(new File(fName));
 	}
 
 	/**
 	 * Creates an array of BioGraph objects to represent a series of
 	 * {@link org.biojava.nbio.core.sequence.DNASequence} that are provided
-	 * in a FASTA file at a given path.
+	 * in a FASTA file at a given path. Graphs are labelled and records
+	 * with the same label are collapsed as in
+	 * {@link #fromFastaFileToEntries(File)}.
 	 *
 	 * @param fName the file containing the sequences
 	 * @return an array of BioGraph objects to represent the sequences
@@ -90,19 +80,14 @@ public class BioInput {
 	public static BioGraph[] fastaFileToGraphs(File fName) 
 	throws Exception 
 	{
-		BioGraph[] bGraphs; 
-		LinkedHashMap<String, DNASequence> entries = readFastaFile(fName);
-
-		// allocate space for each entry
-		bGraphs = new BioGraph[entries.size()];
-		int bCnt = 0;
-
-		for (Entry<String, DNASequence> entry: entries.entrySet()) {
-			bGraphs[bCnt++] =
-				BioGraph.fromSequence(entry.getValue(), entry.getKey());
+		List<BioGraph> bGraphs = new ArrayList<BioGraph>();
+		for (Map.Entry<String, String> e:
+				fromFastaFileToEntries(fName).entrySet())
+		{
+			bGraphs.add(new BioGraph(e.getValue(), e.getKey()));
 		}
 
-		return bGraphs;
+		return bGraphs.toArray(new BioGraph[bGraphs.size()]);
 	}
 	
 	/**
@@ -128,16 +113,51 @@ public class BioInput {
 	public static BioGraph[] fromWordFile(File path) 
 	throws Exception 
 	{
-		/* read lines, allocate array */
-		String[] lines = new LineReader().getLines(path);
-		BioGraph[] bGs = new BioGraph[lines.length];
+		List<BioGraph> bGs = new ArrayList<BioGraph>();
+		try (WordReader reader = new WordReader(path)) {
+			for (FastaRecord rec: reader) {
+				// the raw data string becomes the label
+				bGs.add(rec.toGraph());
+			}
+		}
 
-		for (int i = 0; i < lines.length; ++i) {
-			// the raw data string becomes the label
-			bGs[i] = new BioGraph(lines[i], lines[i]);
+		return bGs.toArray(new BioGraph[bGs.size()]);
+	}
+
+	/**
+	 * Reads all non-empty lines of a text file, which may also be gzip or
+	 * BGZF compressed. Empty lines are skipped, as by jinsect's
+	 * <tt>LineReader</tt>.
+	 *
+	 * @param path the file from which to read the lines
+	 * @return an array of the file's non-empty lines
+	 * @throws IOException if the file can not be read
+	 */
+	public static String[] readLines(File path) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try (WordReader in = new WordReader(path)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.length() > 0) {
+					lines.add(line);
+				}
+			}
 		}
+		return lines.toArray(new String[lines.size()]);
+	}
 
-		return bGs;
+	/**
+	 * Opens a word file for streaming, returning a {@link WordReader}
+	 * that iterates over its lines one at a time, as records whose header
+	 * and sequence are the line itself. The file may also be compressed.
+	 * The reader must be closed by the caller.
+	 *
+	 * @param path the file from which to read the words
+	 * @return a reader over the file's words
+	 * @throws IOException if the file can not be opened
+	 */
+	public static WordReader wordRecords(File path) throws IOException {
+		return new WordReader(path);
 	}
 
 	/**
@@ -155,6 +175,7 @@ public class BioInput {
 	/**
 	 * A wrapper method around {@link FastaReaderHelper#readFastaDNASequence}
 	 * in order to facilicate reading DNA sequences from FASTA files. 
+	 * Compressed files are decompressed transparently.
 	 *
 	 * @param inFile the file from which to read the sequences
 	 * @return a hash map of String/Sequence pairs.
@@ -162,12 +183,17 @@ public class BioInput {
 	public static LinkedHashMap<String, DNASequence> readFastaFile(File inFile)
 	throws Exception 
 	{
-		return FastaReaderHelper.readFastaDNASequence(inFile);
+		try (InputStream in = CompressedInput.open(inFile)) {
+			return FastaReaderHelper.readFastaDNASequence(in);
+		}
 	}
 
 	/**
-	 * A wrapper method around {@link FastaReaderHelper#readFastaDNASequence}
-	 * that returns the read DNA sequences as string - string pairs.
+	 * Reads the records of a FASTA file, returning them as accession id -
+	 * sequence string pairs, keyed as by {@link #readFastaFile(File)}.
+	 * A record whose accession id is repeated replaces the sequence of
+	 * the earlier one, keeping its position.
+	 * @see FastaReader#accessionOf(String)
 	 *
 	 * @param inFile the file from which to read the sequences
 	 * @return a {@link LinkedHashMap} of String/String pairs
@@ -179,12 +205,116 @@ public class BioInput {
 	{
 		LinkedHashMap<String, String> res =
 			new LinkedHashMap<String, String>();
-		for (Entry<String, DNASequence> e: readFastaFile(inFile).entrySet()) 
-		{
-			res.put(e.getKey(), e.getValue().getSequenceAsString());
+		try (FastaReader reader = new FastaReader(inFile)) {
+			for (FastaRecord rec: reader) {
+				res.put(rec.getLabel(), rec.getSequence());
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Reads the reads of a FASTQ file, quality trimmed and masked with
+	 * the default settings of {@link FastqReader}, as header - sequence
+	 * string pairs. Reads that are trimmed away entirely are skipped.
+	 *
+	 * @param inFile the file from which to read the reads
+	 * @return a {@link LinkedHashMap} of String/String pairs
+	 * @throws IOException if the file can not be read or is malformed
+	 */
+	public static LinkedHashMap<String, String> readFastqFile(File inFile)
+	throws IOException
+	{
+		LinkedHashMap<String, String> res =
+			new LinkedHashMap<String, String>();
+		try (FastqReader reader = new FastqReader(inFile)) {
+			for (FastaRecord rec: reader) {
+				res.put(rec.getHeader(), rec.getSequence());
+			}
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
 		}
 		return res;
 	}
 
+	/**
+	 * Opens a sequence file for streaming, returning a
+	 * {@link FastqReader} if the file's first record starts with '@' or
+	 * a {@link FastaReader} otherwise. The file may also be compressed.
+	 * The reader must be closed by the caller.
+	 *
+	 * @param inFile the file from which to read the records
+	 * @return a reader over the file's records
+	 * @throws IOException if the file can not be opened
+	 */
+	public static SequenceReader sequenceRecords(File inFile)
+	throws IOException
+	{
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+					CompressedInput.open(inFile), StandardCharsets.UTF_8),
+				1 << 16);
+		try {
+			/* peek at the first non-blank character */
+			in.mark(1 << 16);
+			int c;
+			do {
+				c = in.read();
+			} while (c >= 0 && Character.isWhitespace(c));
+			in.reset();
+
+			if (c == '@') {
+				return new FastqReader(in);
+			}
+			return new FastaReader(in);
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Opens a FASTA file for streaming, returning a {@link FastaReader}
+	 * that iterates over its records one at a time. The reader must be
+	 * closed by the caller.
+	 *
+	 * @param inFile the file from which to read the records
+	 * @return a reader over the file's records
+	 * @throws IOException if the file can not be opened
+	 */
+	public static FastaReader fastaRecords(File inFile) throws IOException {
+		return new FastaReader(inFile);
+	}
+
+	/**
+	 * Opens a FASTA file as a lazily populated {@link Stream} of records.
+	 * The stream must be closed by the caller, e.g. in a
+	 * try-with-resources statement, to release the file.
+	 *
+	 * @param inFile the file from which to read the records
+	 * @return a sequential stream of the file's records
+	 * @throws IOException if the file can not be opened
+	 */
+	public static Stream<FastaRecord> fastaStream(File inFile)
+	throws IOException
+	{
+		final FastaReader reader = new FastaReader(inFile);
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(reader,
+					Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						reader.close();
+					}
+					catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+			});
+	}
+
 
 }
@@ -0,0 +1,121 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utility class for opening input files that may be compressed. The
+ * compression is detected from the first bytes of a file rather than
+ * from its extension: BGZF files are decompressed in parallel by a
+ * {@link BgzfInputStream}, other gzip files by a {@link GZIPInputStream}
+ * and anything else is read as is.
+ *
+ * @author VHarisop
+ */
+public final class CompressedInput {
+	private CompressedInput() {}
+
+	/**
+	 * The size of the buffers used for reading files.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The number of leading bytes inspected to detect the compression.
+	 */
+	private static final int PEEK_SIZE = 64;
+
+	/**
+	 * Opens a possibly compressed file, decompressing BGZF blocks in the
+	 * common pool.
+	 *
+	 * @param inFile the file to open
+	 * @return a stream of the file's uncompressed contents
+	 * @throws IOException if the file can not be opened
+	 */
+	public static InputStream open(File inFile) throws IOException {
+		return open(inFile, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Opens a possibly compressed file, decompressing BGZF blocks in a
+	 * given pool.
+	 *
+	 * @param inFile the file to open
+	 * @param pool the pool to decompress BGZF blocks in
+	 * @return a stream of the file's uncompressed contents
+	 * @throws IOException if the file can not be opened
+	 */
+	public static InputStream open(File inFile, ForkJoinPool pool)
+	throws IOException
+	{
+		InputStream in = new BufferedInputStream(
+				new FileInputStream(inFile), BUFFER_SIZE);
+		try {
+			byte[] header = new byte[PEEK_SIZE];
+			in.mark(PEEK_SIZE);
+			int len = 0, n;
+			while (len < PEEK_SIZE &&
+				  (n = in.read(header, len, PEEK_SIZE - len)) > 0)
+			{
+				len += n;
+			}
+			in.reset();
+
+			if (BgzfInputStream.isBgzf(header, len)) {
+				return new BgzfInputStream(in, pool);
+			}
+			if (isGzip(header, len)) {
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			}
+			return in;
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Checks if a file starts with the gzip magic number.
+	 *
+	 * @param inFile the file to check
+	 * @return true if the file is gzip compressed
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isCompressed(File inFile) throws IOException {
+		try (InputStream in = new FileInputStream(inFile)) {
+			byte[] header = new byte[2];
+			int len = 0, n;
+			while (len < 2 && (n = in.read(header, len, 2 - len)) > 0) {
+				len += n;
+			}
+			return isGzip(header, len);
+		}
+	}
+
+	private static boolean isGzip(byte[] header, int len) {
+		return len >= 2 &&
+			(header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+	}
+}
@@ -0,0 +1,203 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A streaming reader of FASTA files, that iterates over the records of
+ * a file one at a time. Only the record being read is kept in memory,
+ * so arbitrarily large files can be processed as long as every single
+ * record fits in the heap.
+ *
+ * Lines before the first header and comment lines (starting with ';')
+ * are ignored, and whitespace around sequence lines is removed. I/O
+ * errors during iteration are thrown as {@link UncheckedIOException}s.
+ *
+ * Records are labelled by the accession id of their header, as found by
+ * {@link #accessionOf(String)}, so that their graphs are labelled as by
+ * {@link BioInput#readFastaFile(File)}. Records with the same accession
+ * id are all returned.
+ *
+ * @author VHarisop
+ */
+public final class FastaReader implements SequenceReader {
+	private final BufferedReader reader;
+
+	/**
+	 * The header of the next record, or null if the input is exhausted.
+	 */
+	private String nextHeader;
+
+	/**
+	 * The buffer that sequence lines are collected in.
+	 */
+	private final StringBuilder seqBuffer = new StringBuilder();
+
+	/**
+	 * Creates a new reader for a given FASTA file, which may also be
+	 * gzip or BGZF compressed.
+	 * @see CompressedInput#open(File)
+	 *
+	 * @param inFile the file to read
+	 * @throws IOException if the file can not be opened
+	 */
+	public FastaReader(File inFile) throws IOException {
+		this(new InputStreamReader(
+				CompressedInput.open(inFile), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Creates a new reader for FASTA data from a character stream.
+	 *
+	 * @param in the stream to read from
+	 * @throws IOException if reading from the stream fails
+	 */
+	public FastaReader(Reader in) throws IOException {
+		this.reader = (in instanceof BufferedReader) ?
+			(BufferedReader) in : new BufferedReader(in, 1 << 16);
+
+		/* skip anything before the first header */
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.startsWith(">")) {
+				nextHeader = line.substring(1).trim();
+				break;
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextHeader != null;
+	}
+
+	@Override
+	public FastaRecord next() {
+		if (nextHeader == null) {
+			throw new NoSuchElementException();
+		}
+		String header = nextHeader;
+		nextHeader = null;
+		seqBuffer.setLength(0);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(">")) {
+					nextHeader = line.substring(1).trim();
+					break;
+				}
+				if (!line.startsWith(";")) {
+					seqBuffer.append(line.trim());
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return new FastaRecord(
+				header, accessionOf(header), seqBuffer.toString());
+	}
+
+	/**
+	 * Returns the accession id of a FASTA header, as BioJava's generic
+	 * FASTA header parser finds it. The header is split in fields at
+	 * '|', and the field holding the accession id depends on the first
+	 * one, e.g. <tt>P12345</tt> for <tt>sp|P12345|NAME desc</tt> and
+	 * <tt>NM_0001</tt> for <tt>ref|NM_0001|</tt>; headers of unknown
+	 * databases are labelled by their first field. Unlike BioJava, which
+	 * fails on them, headers lacking the expected field are labelled by
+	 * the whole header.
+	 *
+	 * @param header the header, without the leading '&gt;'
+	 * @return the accession id of the header
+	 */
+	public static String accessionOf(String header) {
+		String[] data = header.startsWith("PDB:") ?
+			header.split(" ") : fieldsOf(header);
+		if (data.length == 0) {
+			return header;
+		}
+		if (data.length == 1) {
+			return data[0];
+		}
+
+		String db = data[0];
+		if (db.equalsIgnoreCase("sp") || db.equalsIgnoreCase("tr") ||
+			db.equalsIgnoreCase("bbs") || db.equalsIgnoreCase("ref") ||
+			db.equalsIgnoreCase("lcl"))
+		{
+			return fieldOf(data, 1, header);
+		}
+		if (db.equalsIgnoreCase("gi")) {
+			return (data.length < 3) ? header : fieldOf(data, 3, header);
+		}
+		if (db.equalsIgnoreCase("pir") || db.equalsIgnoreCase("prf") ||
+			db.equalsIgnoreCase("pat") || db.equalsIgnoreCase("gnl"))
+		{
+			return fieldOf(data, 2, header);
+		}
+		if (db.equalsIgnoreCase("pdb")) {
+			return (data.length < 3) ? header : data[1] + ":" + data[2];
+		}
+		if (db.startsWith("PDB")) {
+			String[] ids = db.split(" ")[0].split(":");
+			return fieldOf(ids, 1, header);
+		}
+		/* including PDB's "entry:chain|PDBID|CHAIN|SEQUENCE" */
+		return db;
+	}
+
+	/**
+	 * Splits a header in fields at '|', dropping an empty last field.
+	 */
+	private static String[] fieldsOf(String header) {
+		List<String> fields = new ArrayList<String>();
+		int start = 0;
+		for (int i = 0; i < header.length(); ++i) {
+			if (header.charAt(i) == '|') {
+				fields.add(header.substring(start, i));
+				start = i + 1;
+			}
+		}
+		if (start < header.length()) {
+			fields.add(header.substring(start));
+		}
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * Returns a field of a header, or the whole header if it is missing.
+	 */
+	private static String fieldOf(String[] data, int i, String header) {
+		return (i < data.length) ? data[i] : header;
+	}
+
+	@Override
+	public void close() throws IOException {
+		nextHeader = null;
+		reader.close();
+	}
+}
@@ -0,0 +1,120 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.DnaGraphBuilder;
+
+/**
+ * A single record of a FASTA file, consisting of a header and the
+ * sequence that follows it, along with the label that the record's
+ * graph is given.
+ *
+ * @author VHarisop
+ */
+public final class FastaRecord {
+	private final String header;
+	private final String label;
+	private final String sequence;
+
+	/**
+	 * Indicates if the sequence has masked bases, which no k-mer of the
+	 * record's graph may contain.
+	 */
+	private final boolean masked;
+
+	/**
+	 * Creates a new record with a given header and sequence, which is
+	 * labelled by its whole header.
+	 *
+	 * @param header the record's header, without the leading '&gt;'
+	 * @param sequence the record's sequence
+	 */
+	public FastaRecord(String header, String sequence) {
+		this(header, header, sequence);
+	}
+
+	/**
+	 * Creates a new record with a given header, label and sequence.
+	 *
+	 * @param header the record's header, without the leading '&gt;'
+	 * @param label the label of the record's graph
+	 * @param sequence the record's sequence
+	 */
+	public FastaRecord(String header, String label, String sequence) {
+		this(header, label, sequence, false);
+	}
+
+	/**
+	 * Creates a new record, whose sequence may have bases masked by 'N'.
+	 */
+	FastaRecord(String header, String label, String sequence,
+			boolean masked)
+	{
+		this.header = header;
+		this.label = label;
+		this.sequence = sequence;
+		this.masked = masked;
+	}
+
+	/**
+	 * Simple getter for the record's header.
+	 *
+	 * @return the header of the record
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * Simple getter for the record's label, e.g. the accession id in
+	 * the header of a FASTA record.
+	 *
+	 * @return the label of the record
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * Simple getter for the record's sequence.
+	 *
+	 * @return the sequence of the record
+	 */
+	public String getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Creates a {@link BioGraph} to represent the record's sequence,
+	 * using the record's label. The graphs of masked reads, such as those
+	 * of a {@link FastqReader}, are built by a {@link DnaGraphBuilder},
+	 * which skips every k-mer that spans a masked base.
+	 *
+	 * @return a BioGraph for the record
+	 */
+	public BioGraph toGraph() {
+		if (masked) {
+			return new DnaGraphBuilder().build(sequence, label);
+		}
+		return new BioGraph(sequence, label);
+	}
+
+	@Override
+	public String toString() {
+		return ">" + header;
+	}
+}
@@ -0,0 +1,252 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * A streaming reader of FASTQ files, that quality trims and masks the
+ * reads while reading them. For every read:
+ * <ol>
+ * <li>bases with quality below the trimming threshold are removed from
+ * both of its ends,</li>
+ * <li>any remaining bases with quality below the masking threshold
+ * are replaced by 'N',</li>
+ * <li>the read is dropped if it is shorter than the minimum length.</li>
+ * </ol>
+ * The graph of a read, see {@link FastaRecord#toGraph()}, is built by a
+ * {@link gr.demokritos.biographs.DnaGraphBuilder}, so that no k-mer
+ * contains a masked base. The records' sequences keep the 'N's.
+ * Only the common four line layout of FASTQ records is supported. I/O
+ * errors and malformed records are thrown as
+ * {@link UncheckedIOException}s.
+ *
+ * @author VHarisop
+ */
+public final class FastqReader implements SequenceReader {
+	/**
+	 * The default quality below which bases are trimmed.
+	 */
+	public static final int DEFAULT_TRIM_QUALITY = 20;
+
+	/**
+	 * The default quality below which bases are masked.
+	 */
+	public static final int DEFAULT_MASK_QUALITY = 10;
+
+	/**
+	 * The default minimum length of a trimmed read.
+	 */
+	public static final int DEFAULT_MIN_LENGTH = 1;
+
+	/**
+	 * The default offset of the quality characters (Sanger / Illumina 1.8+).
+	 */
+	public static final int DEFAULT_PHRED_OFFSET = 33;
+
+	private final BufferedReader reader;
+
+	private int trimQuality = DEFAULT_TRIM_QUALITY;
+	private int maskQuality = DEFAULT_MASK_QUALITY;
+	private int minLength = DEFAULT_MIN_LENGTH;
+	private int phredOffset = DEFAULT_PHRED_OFFSET;
+
+	/**
+	 * The next record to return, or null if it has not been read yet.
+	 */
+	private FastaRecord next;
+	private boolean done = false;
+
+	/**
+	 * The number of reads that were dropped for being too short.
+	 */
+	private long dropped = 0;
+
+	/**
+	 * Creates a new reader for a given FASTQ file, which may also be
+	 * gzip or BGZF compressed.
+	 * @see CompressedInput#open(File)
+	 *
+	 * @param inFile the file to read
+	 * @throws IOException if the file can not be opened
+	 */
+	public FastqReader(File inFile) throws IOException {
+		this(new InputStreamReader(
+				CompressedInput.open(inFile), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Creates a new reader for FASTQ data from a character stream.
+	 *
+	 * @param in the stream to read from
+	 */
+	public FastqReader(Reader in) {
+		this.reader = (in instanceof BufferedReader) ?
+			(BufferedReader) in : new BufferedReader(in, 1 << 16);
+	}
+
+	/**
+	 * Sets the quality below which bases are trimmed from the ends
+	 * of the reads.
+	 *
+	 * @param quality the trimming threshold
+	 */
+	public void setTrimQuality(int quality) {
+		this.trimQuality = quality;
+	}
+
+	/**
+	 * Sets the quality below which the bases of the trimmed reads are
+	 * replaced by 'N'.
+	 *
+	 * @param quality the masking threshold
+	 */
+	public void setMaskQuality(int quality) {
+		this.maskQuality = quality;
+	}
+
+	/**
+	 * Sets the minimum length of a trimmed read. Shorter reads are
+	 * skipped.
+	 *
+	 * @param length the minimum read length
+	 */
+	public void setMinLength(int length) {
+		this.minLength = length;
+	}
+
+	/**
+	 * Sets the offset of the quality characters.
+	 *
+	 * @param offset the phred offset, usually 33 or 64
+	 */
+	public void setPhredOffset(int offset) {
+		this.phredOffset = offset;
+	}
+
+	/**
+	 * Returns the number of reads that have been dropped so far for
+	 * being shorter than the minimum length after trimming.
+	 *
+	 * @return the number of dropped reads
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	private static UncheckedIOException malformed(String what) {
+		return new UncheckedIOException(
+				new IOException("malformed FASTQ record: " + what));
+	}
+
+	/**
+	 * Reads records until one survives trimming or the input ends.
+	 */
+	private void advance() throws IOException {
+		String header;
+		while (next == null && (header = reader.readLine()) != null) {
+			if (header.trim().isEmpty()) {
+				continue;
+			}
+			if (!header.startsWith("@")) {
+				throw malformed("expected '@' in " + header);
+			}
+			String seq = reader.readLine();
+			String plus = reader.readLine();
+			String qual = reader.readLine();
+			if (seq == null || plus == null || qual == null) {
+				throw malformed("truncated record " + header);
+			}
+			if (!plus.startsWith("+")) {
+				throw malformed("expected '+' in " + header);
+			}
+			seq = seq.trim();
+			qual = qual.trim();
+			if (seq.length() != qual.length()) {
+				throw malformed("length mismatch in " + header);
+			}
+
+			String trimmed = trimAndMask(seq, qual);
+			if (trimmed.length() < minLength) {
+				dropped++;
+				continue;
+			}
+			String name = header.substring(1).trim();
+			next = new FastaRecord(name, name, trimmed, true);
+		}
+		if (next == null) {
+			done = true;
+		}
+	}
+
+	/**
+	 * Trims the low quality ends of a read and masks the remaining low
+	 * quality bases.
+	 */
+	private String trimAndMask(String seq, String qual) {
+		int from = 0, to = seq.length();
+		while (from < to && qual.charAt(from) - phredOffset < trimQuality) {
+			from++;
+		}
+		while (to > from && qual.charAt(to - 1) - phredOffset < trimQuality) {
+			to--;
+		}
+
+		char[] bases = new char[to - from];
+		for (int i = from; i < to; ++i) {
+			bases[i - from] = (qual.charAt(i) - phredOffset < maskQuality) ?
+				'N' : seq.charAt(i);
+		}
+		return new String(bases);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !done) {
+			try {
+				advance();
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public FastaRecord next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		FastaRecord rec = next;
+		next = null;
+		return rec;
+	}
+
+	@Override
+	public void close() throws IOException {
+		done = true;
+		next = null;
+		reader.close();
+	}
+}
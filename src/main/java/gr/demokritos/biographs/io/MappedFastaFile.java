@@ -0,0 +1,357 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.CompactBioGraph;
+import gr.demokritos.biographs.DnaGraphBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A FASTA file that is memory mapped and indexed by record, so that the
+ * bases of every record can be fed to a {@link DnaGraphBuilder} straight
+ * from the mapped bytes, without creating any intermediate strings or
+ * BioJava sequences. Record boundaries are located by scanning chunks of
+ * the file in parallel, and graphs of different records can also be
+ * built in parallel.
+ *
+ * The file is mapped in segments of {@link #SEGMENT_SIZE} bytes, so files
+ * larger than 2GB are supported. Only single byte encodings of the bases
+ * are understood, and comment lines inside records are not supported.
+ * Compressed files can not be mapped; use a {@link FastaReader} instead.
+ *
+ * @author VHarisop
+ */
+public final class MappedFastaFile implements Closeable {
+	/**
+	 * The size of every mapped segment of the file.
+	 */
+	public static final int SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The size of the chunks that are scanned for record boundaries
+	 * by a single task.
+	 */
+	public static final int SCAN_CHUNK = 1 << 22;
+
+	private final File file;
+	private final long length;
+	private MappedByteBuffer[] segments;
+
+	/**
+	 * The offset of the '&gt;' of every record, followed by the length
+	 * of the file.
+	 */
+	private final long[] starts;
+
+	private MappedFastaFile(File file, ForkJoinPool pool) throws IOException {
+		if (CompressedInput.isCompressed(file)) {
+			throw new IOException(
+					"compressed file " + file + " can not be mapped");
+		}
+		this.file = file;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			this.length = channel.size();
+			int nSegs = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			this.segments = new MappedByteBuffer[nSegs];
+			for (int i = 0; i < nSegs; ++i) {
+				long from = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						from, Math.min(SEGMENT_SIZE, length - from));
+			}
+		}
+
+		long[] found = pool.invoke(new ScanTask(0, length));
+		this.starts = Arrays.copyOf(found, found.length + 1);
+		this.starts[found.length] = length;
+	}
+
+	/**
+	 * Maps and indexes a FASTA file, using the common pool to locate
+	 * its records.
+	 *
+	 * @param file the FASTA file
+	 * @return the mapped file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static MappedFastaFile open(File file) throws IOException {
+		return open(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Maps and indexes a FASTA file, using a given pool to locate
+	 * its records.
+	 *
+	 * @param file the FASTA file
+	 * @param pool the pool to scan the file in
+	 * @return the mapped file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static MappedFastaFile open(File file, ForkJoinPool pool)
+	throws IOException
+	{
+		return new MappedFastaFile(file, pool);
+	}
+
+	private byte byteAt(long pos) {
+		return segments[(int) (pos / SEGMENT_SIZE)].get(
+				(int) (pos % SEGMENT_SIZE));
+	}
+
+	/**
+	 * A task that returns the offsets of all records starting in a
+	 * range of the file, in increasing order.
+	 */
+	private final class ScanTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final long from, to;
+
+		ScanTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from > SCAN_CHUNK) {
+				long mid = from + (to - from) / 2;
+				ScanTask left = new ScanTask(from, mid);
+				left.fork();
+				long[] right = new ScanTask(mid, to).compute();
+				long[] lefts = left.join();
+				long[] all = Arrays.copyOf(lefts, lefts.length + right.length);
+				System.arraycopy(right, 0, all, lefts.length, right.length);
+				return all;
+			}
+
+			long[] found = new long[16];
+			int n = 0;
+			byte prev = (from == 0) ? (byte) '\n' : byteAt(from - 1);
+			for (long pos = from; pos < to; ++pos) {
+				byte b = byteAt(pos);
+				if (b == '>' && prev == '\n') {
+					if (n == found.length) {
+						found = Arrays.copyOf(found, 2 * n);
+					}
+					found[n++] = pos;
+				}
+				prev = b;
+			}
+			return Arrays.copyOf(found, n);
+		}
+	}
+
+	/**
+	 * Returns the mapped file.
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of records in the file.
+	 *
+	 * @return the record count
+	 */
+	public int recordCount() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * Returns the offset of the first byte after the header line of
+	 * a record.
+	 */
+	private long sequenceStart(int r) {
+		long pos = starts[r];
+		long end = starts[r + 1];
+		while (pos < end && byteAt(pos) != '\n') {
+			pos++;
+		}
+		return Math.min(pos + 1, end);
+	}
+
+	/**
+	 * Returns the header of a record, without the leading '&gt;'.
+	 *
+	 * @param r the record index
+	 * @return the record's header
+	 */
+	public String getHeader(int r) {
+		long from = starts[r] + 1;
+		long to = sequenceStart(r);
+		byte[] bytes = new byte[(int) (to - from)];
+		for (int i = 0; i < bytes.length; ++i) {
+			bytes[i] = byteAt(from + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8).trim();
+	}
+
+	/**
+	 * Feeds the bases of a record to a graph builder, skipping line
+	 * breaks and other whitespace.
+	 *
+	 * @param r the record index
+	 * @param builder the builder to feed
+	 */
+	public void feed(int r, DnaGraphBuilder builder) {
+		long pos = sequenceStart(r);
+		long end = starts[r + 1];
+		while (pos < end) {
+			/* walk one segment at a time */
+			MappedByteBuffer seg = segments[(int) (pos / SEGMENT_SIZE)];
+			int local = (int) (pos % SEGMENT_SIZE);
+			int stop = (int) Math.min(seg.limit(), local + (end - pos));
+			for (int i = local; i < stop; ++i) {
+				byte b = seg.get(i);
+				if (b > ' ') {
+					builder.addBase((char) (b & 0xff));
+				}
+			}
+			pos += stop - local;
+		}
+	}
+
+	/**
+	 * Returns the sequence of a record as a string, for callers that
+	 * need the actual bases.
+	 *
+	 * @param r the record index
+	 * @return the record's sequence
+	 */
+	public String getSequence(int r) {
+		long pos = sequenceStart(r);
+		long end = starts[r + 1];
+		StringBuilder sb = new StringBuilder((int) Math.min(
+					end - pos, Integer.MAX_VALUE - 8));
+		for (; pos < end; ++pos) {
+			byte b = byteAt(pos);
+			if (b > ' ') {
+				sb.append((char) (b & 0xff));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Builds the compact graph of a record, using its header as label.
+	 *
+	 * @param r the record index
+	 * @param builder the builder to use, which is reset first
+	 * @return the compact graph of the record
+	 */
+	public CompactBioGraph freeze(int r, DnaGraphBuilder builder) {
+		builder.reset();
+		feed(r, builder);
+		return builder.freeze(getHeader(r));
+	}
+
+	/**
+	 * Builds the {@link BioGraph} of a record, using its header as label.
+	 * The graph's data string is left empty.
+	 *
+	 * @param r the record index
+	 * @param builder the builder to use, which is reset first
+	 * @return the graph of the record
+	 */
+	public BioGraph toGraph(int r, DnaGraphBuilder builder) {
+		builder.reset();
+		feed(r, builder);
+		return builder.toBioGraph(getHeader(r));
+	}
+
+	/**
+	 * Builds the graphs of all records in parallel, using builders with
+	 * the default order and window.
+	 * @see #toGraph(int, DnaGraphBuilder)
+	 *
+	 * @param pool the pool to build the graphs in
+	 * @return the graphs of all records, in file order
+	 */
+	public BioGraph[] toGraphs(ForkJoinPool pool) {
+		BioGraph[] graphs = new BioGraph[recordCount()];
+		pool.invoke(new BuildTask(graphs, 0, graphs.length));
+		return graphs;
+	}
+
+	/**
+	 * A task that builds the graphs of a range of records, splitting
+	 * the range until every task has a single record.
+	 */
+	private final class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BioGraph[] graphs;
+		private final int from, to;
+
+		BuildTask(BioGraph[] graphs, int from, int to) {
+			this.graphs = graphs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BuildTask(graphs, from, mid),
+						new BuildTask(graphs, mid, to));
+				return;
+			}
+			for (int r = from; r < to; ++r) {
+				graphs[r] = toGraph(r, new DnaGraphBuilder());
+			}
+		}
+	}
+
+	/**
+	 * Returns the headers of all records, in file order.
+	 *
+	 * @return a list of headers
+	 */
+	public List<String> getHeaders() {
+		List<String> headers = new ArrayList<String>(recordCount());
+		for (int r = 0; r < recordCount(); ++r) {
+			headers.add(getHeader(r));
+		}
+		return headers;
+	}
+
+	/**
+	 * Releases the mapped segments. The mapping itself is removed once
+	 * the segments are garbage collected.
+	 */
+	@Override
+	public void close() {
+		segments = new MappedByteBuffer[0];
+	}
+}
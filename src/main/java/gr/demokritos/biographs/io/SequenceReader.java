@@ -0,0 +1,40 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * A streaming reader of sequence records, such as the records of a FASTA
+ * or a FASTQ file. Readers return themselves as their iterator, so they
+ * can be used in for-each loops, but can only be iterated over once.
+ *
+ * @author VHarisop
+ */
+public interface SequenceReader
+extends Iterator<FastaRecord>, Iterable<FastaRecord>, Closeable
+{
+	/**
+	 * Returns this reader, so that it can be used in for-each loops.
+	 *
+	 * @return this reader
+	 */
+	@Override
+	default Iterator<FastaRecord> iterator() {
+		return this;
+	}
+}
@@ -0,0 +1,208 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * A streaming reader of word files, that is, files with one word per
+ * line. Every non-empty line becomes a record whose header and sequence
+ * are the line itself, so the graph of a record is labelled by its word,
+ * as in {@link BioInput#fromWordFile(File)}. Empty lines are skipped, as
+ * by jinsect's <tt>LineReader</tt>.
+ *
+ * The file is read through a channel into a fixed direct buffer and
+ * decoded as UTF-8, so memory use does not depend on the size of the
+ * file. Lines are split as in {@link java.io.BufferedReader#readLine()}.
+ * I/O errors during iteration are thrown as
+ * {@link UncheckedIOException}s.
+ *
+ * @author VHarisop
+ */
+public final class WordReader implements SequenceReader {
+	/**
+	 * The size of the byte and character buffers.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder decoder;
+	private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	/**
+	 * The buffer that the current line is collected in.
+	 */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * The next line to return, or null if it has not been read yet.
+	 */
+	private String next;
+
+	private boolean eof = false, flushed = false;
+
+	/**
+	 * Whether the last line ended in '\r', in which case a following
+	 * '\n' is part of the same line break.
+	 */
+	private boolean skipLf = false;
+
+	/**
+	 * Creates a new reader for a given word file. Uncompressed files are
+	 * read straight from a {@link FileChannel}, while gzip or BGZF
+	 * compressed files are decompressed transparently.
+	 * @see CompressedInput#open(File)
+	 *
+	 * @param inFile the file to read
+	 * @throws IOException if the file can not be opened
+	 */
+	public WordReader(File inFile) throws IOException {
+		this(CompressedInput.isCompressed(inFile) ?
+				Channels.newChannel(CompressedInput.open(inFile)) :
+				FileChannel.open(inFile.toPath(), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Creates a new reader for words from a byte channel.
+	 *
+	 * @param channel the channel to read from
+	 */
+	public WordReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars.flip();
+	}
+
+	/**
+	 * Decodes more characters from the channel.
+	 *
+	 * @return false if the input is exhausted
+	 */
+	private boolean fill() throws IOException {
+		if (flushed) {
+			return false;
+		}
+		chars.clear();
+		while (chars.position() == 0 && !flushed) {
+			if (!eof && channel.read(bytes) < 0) {
+				eof = true;
+			}
+			bytes.flip();
+			CoderResult res = decoder.decode(bytes, chars, eof);
+			if (eof && res.isUnderflow()) {
+				decoder.flush(chars);
+				flushed = true;
+			}
+			bytes.compact();
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	/**
+	 * Reads the next line of the file, which may be empty.
+	 *
+	 * @return the line without its line break, or null if the input
+	 * is exhausted
+	 * @throws IOException if reading from the channel fails
+	 */
+	public String readLine() throws IOException {
+		if (next != null) {
+			String word = next;
+			next = null;
+			return word;
+		}
+		while (true) {
+			while (chars.hasRemaining()) {
+				char c = chars.get();
+				if (skipLf) {
+					skipLf = false;
+					if (c == '\n') {
+						continue;
+					}
+				}
+				if (c == '\n' || c == '\r') {
+					skipLf = (c == '\r');
+					String word = line.toString();
+					line.setLength(0);
+					return word;
+				}
+				line.append(c);
+			}
+			if (!fill()) {
+				if (line.length() == 0) {
+					return null;
+				}
+				String word = line.toString();
+				line.setLength(0);
+				return word;
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			/* skip empty lines, which are not words */
+			while (next == null) {
+				String word = readLine();
+				if (word == null) {
+					return false;
+				}
+				if (word.length() > 0) {
+					next = word;
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return true;
+	}
+
+	@Override
+	public FastaRecord next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String word = next;
+		next = null;
+		return new FastaRecord(word, word);
+	}
+
+	@Override
+	public void close() throws IOException {
+		next = null;
+		flushed = true;
+		channel.close();
+	}
+}
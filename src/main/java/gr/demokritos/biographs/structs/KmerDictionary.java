@@ -0,0 +1,247 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.structs;
+
+import gr.demokritos.biographs.indexing.preprocessing.HashingStrategy;
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe dictionary that maps n-gram labels to dense int ids,
+ * starting from 0, and holds a single shared {@link JVertex} for every
+ * label. Graphs that take their vertices from the same dictionary share
+ * the vertex objects (and labels), and can be processed using the ids.
+ *
+ * The dictionary also memoizes the values of hashing strategies for every
+ * id, see {@link #hashTable(HashingStrategy)}, so hashing a vertex by id
+ * becomes a table lookup.
+ *
+ * Ids are never removed. A process-wide instance is available via
+ * {@link #global()}.
+ *
+ * @author VHarisop
+ */
+public final class KmerDictionary {
+	/**
+	 * The process-wide dictionary.
+	 */
+	private static final KmerDictionary GLOBAL = new KmerDictionary();
+
+	/**
+	 * Maps labels to ids. Lookups of existing labels do not lock.
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/**
+	 * The shared vertices, indexed by id. The array is replaced when it
+	 * grows, and always published before the ids it contains.
+	 */
+	private volatile JVertex[] vertices;
+
+	/**
+	 * The number of ids assigned so far.
+	 */
+	private volatile int size;
+
+	/**
+	 * The hash tables created so far, one per hashing strategy.
+	 */
+	private final ConcurrentHashMap<HashingStrategy<JVertex>, HashTable> tables;
+
+	/**
+	 * Creates a new, empty dictionary.
+	 */
+	public KmerDictionary() {
+		ids = new ConcurrentHashMap<String, Integer>();
+		vertices = new JVertex[64];
+		tables = new ConcurrentHashMap<HashingStrategy<JVertex>, HashTable>();
+	}
+
+	/**
+	 * Returns the process-wide dictionary.
+	 *
+	 * @return the global dictionary instance
+	 */
+	public static KmerDictionary global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * Returns the id of a label, assigning a new one if the label has not
+	 * been seen before.
+	 *
+	 * @param label the label to look up
+	 * @return the id of the label
+	 */
+	public int idOf(String label) {
+		Integer id = ids.get(label);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(label);
+			if (id != null) {
+				return id;
+			}
+			int newId = size;
+			JVertex[] vs = vertices;
+			if (newId == vs.length) {
+				vs = Arrays.copyOf(vs, newId << 1);
+			}
+			vs[newId] = new NGramVertex(label);
+			vertices = vs;
+			size = newId + 1;
+			ids.put(label, newId);
+			return newId;
+		}
+	}
+
+	/**
+	 * Returns the id of a label, without assigning a new one.
+	 *
+	 * @param label the label to look up
+	 * @return the id of the label, or -1 if it has not been seen
+	 */
+	public int lookup(String label) {
+		Integer id = ids.get(label);
+		return (id == null) ? -1 : id;
+	}
+
+	/**
+	 * Returns the shared vertex of a label, adding the label to the
+	 * dictionary if needed.
+	 *
+	 * @param label the label of the vertex
+	 * @return the shared vertex with that label
+	 */
+	public JVertex vertexOf(String label) {
+		return getVertex(idOf(label));
+	}
+
+	/**
+	 * Returns the shared vertex with a given id.
+	 *
+	 * @param id a previously assigned id
+	 * @return the vertex with that id
+	 */
+	public JVertex getVertex(int id) {
+		return vertices[id];
+	}
+
+	/**
+	 * Returns the label with a given id.
+	 *
+	 * @param id a previously assigned id
+	 * @return the label with that id
+	 */
+	public String getLabel(int id) {
+		return vertices[id].getLabel();
+	}
+
+	/**
+	 * Returns the number of ids assigned so far.
+	 *
+	 * @return the size of the dictionary
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the table that memoizes the values of a hashing strategy
+	 * for the ids of this dictionary. Strategies are compared by identity.
+	 *
+	 * @param hashStrategy the strategy to memoize
+	 * @return the strategy's hash table
+	 */
+	public HashTable hashTable(HashingStrategy<JVertex> hashStrategy) {
+		HashTable table = tables.get(hashStrategy);
+		if (table == null) {
+			table = new HashTable(hashStrategy);
+			HashTable prev = tables.putIfAbsent(hashStrategy, table);
+			if (prev != null) {
+				table = prev;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * A table holding the hash value of a strategy for every id of the
+	 * dictionary, computed on first use. Lookups are thread-safe.
+	 */
+	public final class HashTable {
+		/**
+		 * Marks ids whose hash has not been computed yet.
+		 */
+		private static final int UNSET = Integer.MIN_VALUE;
+
+		private final HashingStrategy<JVertex> hashStrategy;
+		private volatile int[] values;
+
+		private HashTable(HashingStrategy<JVertex> hashStrategy) {
+			this.hashStrategy = hashStrategy;
+			this.values = newValues(64);
+		}
+
+		private int[] newValues(int length) {
+			int[] vals = new int[length];
+			Arrays.fill(vals, UNSET);
+			return vals;
+		}
+
+		/**
+		 * Returns the hash value of the vertex with a given id.
+		 *
+		 * @param id a previously assigned id
+		 * @return the strategy's hash value for that vertex
+		 */
+		public int hash(int id) {
+			int[] vals = values;
+			if (id < vals.length) {
+				int h = vals[id];
+				if (h != UNSET) {
+					return h;
+				}
+			}
+			/* hashing is a pure function of the label, so racing
+			 * threads store the same value */
+			int h = hashStrategy.hash(getVertex(id));
+			synchronized (this) {
+				vals = values;
+				if (id >= vals.length) {
+					int[] grown = newValues(Math.max(id + 1, vals.length << 1));
+					System.arraycopy(vals, 0, grown, 0, vals.length);
+					vals = grown;
+				}
+				vals[id] = h;
+				values = vals;
+			}
+			return h;
+		}
+
+		/**
+		 * Simple getter for the strategy memoized in this table.
+		 *
+		 * @return the hashing strategy of the table
+		 */
+		public HashingStrategy<JVertex> getHashStrategy() {
+			return hashStrategy;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/* This file is part of BioGraphs.
+ *
+ * BioGraphs is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * BioGraphs is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with BioGraphs.  If not, see <http://www.gnu.org/licenses/>. */
+
+package gr.demokritos.biographs.structs;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive <tt>long</tt> keys to
+ * primitive <tt>int</tt> values, using linear probing. No objects are
+ * allocated per entry, which makes it suitable for accumulating packed
+ * k-mers and edge counts while building graphs.
+ *
+ * Entries are visited by slot: iterate over [0, {@link #capacity()}) and
+ * use {@link #isUsed(int)}, {@link #keyAt(int)} and {@link #valueAt(int)}.
+ * This class is not thread-safe.
+ *
+ * @author VHarisop
+ */
+public final class LongIntHashMap {
+	/**
+	 * The maximum fraction of occupied slots before the table grows.
+	 */
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+
+	/**
+	 * The number of entries currently in the map.
+	 */
+	private int size;
+
+	/**
+	 * The number of entries that triggers the next resize.
+	 */
+	private int threshold;
+
+	/**
+	 * Creates an empty map with a small default capacity.
+	 */
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty map that can hold a given number of entries
+	 * without resizing.
+	 *
+	 * @param expected the expected number of entries
+	 */
+	public LongIntHashMap(int expected) {
+		int cap = 16;
+		while (cap * LOAD_FACTOR < expected) {
+			cap <<= 1;
+		}
+		allocate(cap);
+	}
+
+	private void allocate(int cap) {
+		keys = new long[cap];
+		values = new int[cap];
+		used = new boolean[cap];
+		threshold = (int) (cap * LOAD_FACTOR);
+	}
+
+	/**
+	 * Mixes the bits of a key (the finalizer of MurmurHash3), so that
+	 * packed k-mers sharing their low bits do not cluster.
+	 */
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * Returns the slot holding a key, or the empty slot where it
+	 * would be inserted.
+	 */
+	private int slotOf(long key) {
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the value associated with a key, or a default value if
+	 * the key is not present.
+	 *
+	 * @param key the key to look up
+	 * @param defValue the value to return for missing keys
+	 * @return the associated value or <tt>defValue</tt>
+	 */
+	public int get(long key, int defValue) {
+		int slot = slotOf(key);
+		return used[slot] ? values[slot] : defValue;
+	}
+
+	/**
+	 * Checks if a key is present in the map.
+	 *
+	 * @param key the key to look up
+	 * @return true if the key is present, else false
+	 */
+	public boolean containsKey(long key) {
+		return used[slotOf(key)];
+	}
+
+	/**
+	 * Associates a key with a value, replacing any previous value.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 */
+	public void put(long key, int value) {
+		int slot = slotOf(key);
+		if (!used[slot]) {
+			used[slot] = true;
+			keys[slot] = key;
+			if (++size > threshold) {
+				values[slot] = value;
+				rehash(keys.length << 1);
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Adds a delta to the value of a key, inserting the key with
+	 * value <tt>delta</tt> if it was not present.
+	 *
+	 * @param key the key
+	 * @param delta the amount to add
+	 * @return the new value of the key
+	 */
+	public int addTo(long key, int delta) {
+		int slot = slotOf(key);
+		if (used[slot]) {
+			values[slot] += delta;
+			return values[slot];
+		}
+		put(key, delta);
+		return delta;
+	}
+
+	/**
+	 * Removes a key from the map, if present.
+	 *
+	 * @param key the key to remove
+	 * @return true if the key was present, else false
+	 */
+	public boolean remove(long key) {
+		int slot = slotOf(key);
+		if (!used[slot]) {
+			return false;
+		}
+		/* backward shift deletion keeps probe sequences intact
+		 * without tombstones */
+		int mask = keys.length - 1;
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (used[next]) {
+			int home = mix(keys[next]) & mask;
+			/* move the entry into the gap if its home slot does not
+			 * lie cyclically in (gap, next] */
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[gap] = false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes all entries from the map, keeping its capacity.
+	 */
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	private void rehash(int newCap) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(newCap);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldUsed[i]) {
+				int slot = slotOf(oldKeys[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries in the map.
+	 *
+	 * @return the map's size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of slots in the underlying table.
+	 *
+	 * @return the table's capacity
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Checks if a slot holds an entry.
+	 *
+	 * @param slot the slot index
+	 * @return true if the slot is occupied
+	 */
+	public boolean isUsed(int slot) {
+		return used[slot];
+	}
+
+	/**
+	 * Returns the key stored at an occupied slot.
+	 *
+	 * @param slot the slot index
+	 * @return the slot's key
+	 */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Returns the value stored at an occupied slot.
+	 *
+	 * @param slot the slot index
+	 * @return the slot's value
+	 */
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+}
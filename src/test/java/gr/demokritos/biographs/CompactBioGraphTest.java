@@ -0,0 +1,335 @@
+package gr.demokritos.biographs;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.indexing.comparators.OrdWeightComparator;
+import gr.demokritos.biographs.indexing.preprocessing.*;
+import gr.demokritos.biographs.structs.KmerDictionary;
+import gr.demokritos.iit.jinsect.structs.Edge;
+import gr.demokritos.iit.jinsect.structs.JVertex;
+import gr.demokritos.iit.jinsect.structs.UniqueVertexGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Unit tests for the compact form of BioGraphs.
+ */
+public class CompactBioGraphTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CompactBioGraphTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( CompactBioGraphTest.class );
+    }
+
+	private static final String data = "ACGTTGCAACGGTACCATGAAAACGT";
+
+	/**
+	 * Verify that compact graphs are encoded exactly like
+	 * the graphs they were created from.
+	 */
+	public void testEncodings() {
+		BioGraph bg = new BioGraph(data, "l");
+		CompactBioGraph cg = bg.freeze();
+		assertEquals(bg.getGraph().edgeSet().size(), cg.edgeCount());
+
+		IndexVector indVec = new IndexVector(GraphType.DNA);
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(bg), indVec.encodeGraph(cg)));
+
+		indVec.setHashStrategy(Strategies.dnaHash());
+		indVec.setBins(16);
+		assertTrue(Arrays.equals(
+					indVec.getGraphEncoding(bg), indVec.getGraphEncoding(cg)));
+
+		/* the builder's snapshot is the same graph */
+		DnaGraphBuilder builder = new DnaGraphBuilder();
+		builder.addSequence(data);
+		CompactBioGraph other = builder.freeze("l");
+		assertTrue(IsomorphismTester.graphIsomorphic(cg, other));
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(cg), indVec.encodeGraph(other)));
+	}
+
+	/**
+	 * Verify that the primitive encoding strategies read the same
+	 * degrees as the edge sets, including vertices with self loops,
+	 * and that boxed strategies still encode graphs alike.
+	 */
+	public void testPrimitiveEncodings() {
+		BioGraph bg = new BioGraph("AAAAAACGTTTTTTACGAAAA", "l");
+		UniqueVertexGraph uvg = bg.getGraph();
+		CompactBioGraph cg = bg.freeze();
+		IntEncodingStrategy degree = Strategies.degreeEncoding();
+		IntEncodingStrategy inDegree = Strategies.inDegreeEncoding();
+
+		boolean loops = false;
+		for (JVertex v: uvg.vertexSet()) {
+			loops |= uvg.containsEdge(v, v);
+			int id = cg.indexOf(v.getLabel());
+			assertEquals(uvg.edgesOf(v).size(), degree.encodeInt(v, uvg));
+			assertEquals(cg.degree(id), degree.encodeInt(id, cg));
+			assertEquals(uvg.incomingEdgesOf(v).size(),
+					inDegree.encodeInt(v, uvg));
+			assertEquals(Integer.valueOf(cg.inDegree(id)),
+					inDegree.encode(id, cg));
+			assertEquals(cg.incomingWeightSumOf(id),
+					Strategies.incomingWeightEncoding().encodeDouble(id, cg));
+		}
+		assertTrue(loops);
+
+		IndexVector indVec = new IndexVector(GraphType.DNA);
+		IndexVector boxedVec = new IndexVector(GraphType.DNA);
+
+		/* a strategy that only reads mutable graphs */
+		EncodingStrategy<Integer> boxed = new EncodingStrategy<Integer>() {
+			@Override
+			public Integer encode(JVertex vCurr, UniqueVertexGraph g) {
+				return g.incomingEdgesOf(vCurr).size();
+			}
+		};
+		assertEquals(Integer.valueOf(cg.inDegree(0)), boxed.encode(0, cg));
+		boxedVec.setEncodingStrategy(boxed);
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(uvg), boxedVec.encodeGraph(uvg)));
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(cg), boxedVec.encodeGraph(cg)));
+	}
+
+	/**
+	 * Verify that isomorphism testing and distances agree with
+	 * the uncompressed graphs.
+	 */
+	public void testComparisons() {
+		BioGraph bgx = new BioGraph("ACTA");
+		BioGraph bgy = new BioGraph("ACTAG");
+
+		assertTrue(IsomorphismTester.subgraphIsomorphic(
+					bgx.freeze(), bgy.freeze()));
+		assertFalse(IsomorphismTester.graphIsomorphic(
+					bgx.freeze(), bgy.freeze()));
+
+		bgx.setDataString("AGTA");
+		assertFalse(IsomorphismTester.subgraphIsomorphic(
+					bgx.freeze(), bgy.freeze()));
+
+		OrdWeightComparator owc = new OrdWeightComparator();
+		BioGraph bgA = new BioGraph(data);
+		BioGraph bgB = new BioGraph(data.substring(5) + "GATTACA");
+		assertEquals(owc.getDistance(bgA, bgB),
+				owc.getDistance(bgA.freeze(), bgB.freeze()), 1e-6);
+	}
+
+	/**
+	 * Verify that graphs frozen with a dictionary share their vertices
+	 * and are encoded like the original graphs.
+	 */
+	public void testDictionary() {
+		KmerDictionary dict = new KmerDictionary();
+		BioGraph bgA = new BioGraph(data);
+		BioGraph bgB = new BioGraph(data.substring(3));
+		CompactBioGraph cgA = bgA.freeze(dict), cgB = bgB.freeze(dict);
+
+		int v = cgB.indexOf("ACG");
+		assertSame(cgA.getVertex(cgA.indexOf("ACG")), cgB.getVertex(v));
+		assertEquals("ACG", dict.getLabel(cgB.getGlobalId(v)));
+		assertEquals(dict.lookup("ACG"), cgB.getGlobalId(v));
+		assertEquals(-1, dict.lookup("NNN"));
+
+		IndexVector indVec = new IndexVector(GraphType.DNA);
+		IndexVector dictVec = new IndexVector(GraphType.DNA);
+		dictVec.setDictionary(dict);
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(bgA.getGraph()),
+					indVec.encodeGraph(cgA)));
+		assertTrue(Arrays.equals(
+					indVec.getGraphEncoding(bgA.getGraph()),
+					dictVec.getGraphEncoding(bgA.getGraph())));
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(bgB.getGraph()),
+					dictVec.encodeGraph(bgB.getGraph())));
+
+		/* unknown labels are hashed directly, without adding them */
+		int size = dict.size();
+		BioGraph query = new BioGraph("TTTTTTGGGGGGNNN");
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(query.getGraph()),
+					dictVec.encodeGraph(query.getGraph())));
+		assertTrue(Arrays.equals(
+					indVec.getGraphEncoding(query.getGraph()),
+					dictVec.getGraphEncoding(query.getGraph())));
+		assertEquals(size, dict.size());
+	}
+
+	/**
+	 * Verify that graphs survive a round trip through a mapped
+	 * graph store, including reopening the store.
+	 */
+	public void testMappedStore() throws Exception {
+		File f = File.createTempFile("biographs", ".bgs");
+		f.delete();
+		f.deleteOnExit();
+
+		CompactBioGraph[] graphs = new CompactBioGraph[] {
+			new BioGraph(data, "first").freeze(),
+			new BioGraph("AAAAAAAA", "second").freeze(),
+			new BioGraph("TGCA", "third").freeze()
+		};
+		MappedGraphStore store = MappedGraphStore.open(f);
+		for (int i = 0; i < graphs.length; ++i) {
+			assertEquals(i, store.add(graphs[i]));
+		}
+		store.close();
+
+		store = MappedGraphStore.open(f);
+		assertEquals(graphs.length, store.size());
+		MappedGraphStore.GraphView view = store.view(0);
+		for (int i = 0; i < graphs.length; ++i) {
+			CompactBioGraph cg = graphs[i];
+			store.view(i, view);
+			assertEquals(cg.getLabel(), view.getLabel());
+			assertEquals(cg.getDataString(), view.getDataString());
+			assertEquals(cg.vertexCount(), view.vertexCount());
+			assertEquals(cg.edgeCount(), view.edgeCount());
+			for (int v = 0; v < cg.vertexCount(); ++v) {
+				assertEquals(cg.getVertexLabel(v), view.getVertexLabel(v));
+				assertEquals(v, view.indexOf(cg.getVertexLabel(v)));
+				assertEquals(cg.inDegree(v), view.inDegree(v));
+				for (int u = 0; u < cg.vertexCount(); ++u) {
+					assertEquals(cg.edgeIndex(v, u), view.edgeIndex(v, u));
+				}
+			}
+			assertTrue(IsomorphismTester.graphIsomorphic(cg, store.get(i)));
+		}
+
+		/* appending after reopening keeps the earlier graphs */
+		assertEquals(graphs.length, store.add(graphs[0]));
+		assertEquals("first", store.view(graphs.length).getLabel());
+		assertEquals("third", store.view(2).getLabel());
+		store.close();
+	}
+
+	/**
+	 * Verify that the graphs of a mapped store are encoded through their
+	 * views as their heap copies are, one at a time and all together.
+	 */
+	public void testStoreEncoding() throws Exception {
+		File f = File.createTempFile("biographs", ".bgs");
+		f.delete();
+		f.deleteOnExit();
+
+		String[] seqs = new String[] { data, "AAAAAAAA", "TGCAATGCA" };
+		MappedGraphStore store = MappedGraphStore.open(f);
+		for (String seq: seqs) {
+			store.add(new BioGraph(seq, seq));
+		}
+
+		EncoderSpec spec = EncoderSpec.forType(GraphType.DNA);
+		EncoderSpec ratio =
+			spec.withEncodingStrategy(Strategies.weightRatioEncoding());
+		int[] matrix = spec.encodeAll(store);
+		for (int i = 0; i < seqs.length; ++i) {
+			CompactBioGraph cg = store.get(i);
+			int[] row = Arrays.copyOfRange(matrix,
+					i * spec.getBins(), (i + 1) * spec.getBins());
+			assertTrue(Arrays.equals(spec.encode(cg), row));
+
+			int[] enc = new int[ratio.getBins()];
+			ratio.encode(store.view(i), enc, 0);
+			assertTrue(Arrays.equals(ratio.encode(cg), enc));
+		}
+		store.close();
+	}
+
+	/**
+	 * Verify that a store whose last record was torn by a crash is
+	 * reopened without it, and can still be appended to.
+	 */
+	public void testStoreRecovery() throws Exception {
+		File f = File.createTempFile("biographs", ".bgs");
+		f.delete();
+		f.deleteOnExit();
+
+		MappedGraphStore store = MappedGraphStore.open(f);
+		store.add(new BioGraph(data, "first"));
+		store.add(new BioGraph("TGCA", "second"));
+		store.close();
+
+		/* reopening cuts the file right after the last record */
+		MappedGraphStore.open(f).close();
+
+		/* half of a record whose length runs past the file */
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			long end = raf.length();
+			raf.seek(end);
+			raf.writeInt(1000);
+			raf.writeInt(4);
+			raf.writeInt(4);
+		}
+
+		store = MappedGraphStore.open(f);
+		assertEquals(2, store.size());
+		assertEquals(2, store.add(new BioGraph("ACGT", "third")));
+		store.close();
+
+		store = MappedGraphStore.open(f);
+		assertEquals(3, store.size());
+		assertEquals("second", store.view(1).getLabel());
+		assertEquals("third", store.view(2).getLabel());
+		store.close();
+	}
+
+	/**
+	 * Verify that graphs survive a round trip through the binary
+	 * codec, for both DNA and plain text graphs.
+	 */
+	public void testCodec() throws Exception {
+		String[] inputs = new String[] { data, "acgtnnACGT", "barbarian", "" };
+		for (String in: inputs) {
+			BioGraph bg = new BioGraph(in, "g-" + in);
+			BioGraph read = BioGraphCodec.fromBytes(BioGraphCodec.toBytes(bg));
+			assertEquals(bg.getLabel(), read.getLabel());
+			assertEquals(bg.getDataString(), read.getDataString());
+			assertTrue(IsomorphismTester.graphIsomorphic(
+						bg.freeze(), read.freeze()));
+		}
+
+		/* non integral weights are kept exactly */
+		BioGraph bg = new BioGraph(data, "w");
+		for (Edge e: bg.getGraph().edgeSet()) {
+			bg.getGraph().setEdgeWeight(e, 0.25);
+		}
+		CompactBioGraph cg = BioGraphCodec.fromBytes(
+				BioGraphCodec.toBytes(bg)).freeze();
+		for (int i = 0; i < cg.edgeCount(); ++i) {
+			assertEquals(0.25f, cg.outWeight(i));
+		}
+
+		try {
+			BioGraphCodec.fromBytes(new byte[] { 1, 2, 3 });
+			fail("expected an IOException");
+		}
+		catch (IOException ex) {
+			/* expected */
+		}
+	}
+}
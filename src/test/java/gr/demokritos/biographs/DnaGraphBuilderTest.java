@@ -0,0 +1,143 @@
+package gr.demokritos.biographs;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import gr.demokritos.iit.jinsect.structs.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for the packed DNA graph builder.
+ */
+public class DnaGraphBuilderTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DnaGraphBuilderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DnaGraphBuilderTest.class );
+    }
+
+	/**
+	 * Asserts that two n-gram graphs have the same vertices and
+	 * the same weighted edges.
+	 */
+	private void assertSameGraph(UniqueVertexGraph exp, UniqueVertexGraph act) {
+		assertEquals(exp.UniqueVertices.keySet(), act.UniqueVertices.keySet());
+		assertEquals(exp.edgeSet().size(), act.edgeSet().size());
+		for (Edge e: exp.edgeSet()) {
+			Edge other = act.getEdge(
+					act.UniqueVertices.get(exp.getEdgeSource(e).getLabel()),
+					act.UniqueVertices.get(exp.getEdgeTarget(e).getLabel()));
+			assertNotNull(other);
+			assertEquals(exp.getEdgeWeight(e), act.getEdgeWeight(other));
+		}
+	}
+
+	/**
+	 * Verify that the builder creates the same graphs as BioGraph
+	 * for sequences of DNA bases.
+	 */
+	public void testSameAsBioGraph() {
+		String[] data = {"ACTAG", "AAAAAAAA", "ACGTTGCAACGGTACCATGA", "AC"};
+		DnaGraphBuilder builder = new DnaGraphBuilder();
+		for (String s: data) {
+			BioGraph exp = new BioGraph(s, "l");
+			BioGraph act = builder.build(s, "l");
+			assertSameGraph(exp.getGraph(), act.getGraph());
+			assertEquals("l", act.getLabel());
+		}
+
+		builder = new DnaGraphBuilder(4, 2);
+		assertSameGraph(
+				new BioGraph(data[2], "l", 4, 2).getGraph(),
+				builder.build(data[2], "l").getGraph());
+	}
+
+	/**
+	 * Verify that unknown bases are skipped and that the input
+	 * can be pushed in chunks.
+	 */
+	public void testChunksAndUnknownBases() {
+		DnaGraphBuilder builder = new DnaGraphBuilder();
+		builder.addSequence("acgN");
+		builder.addSequence("TTG");
+		UniqueVertexGraph uvg = builder.toGraph();
+
+		assertEquals(2, uvg.vertexSet().size());
+		assertTrue(uvg.UniqueVertices.containsKey("ACG"));
+		assertTrue(uvg.UniqueVertices.containsKey("TTG"));
+		assertEquals(0, uvg.edgeSet().size());
+	}
+
+	/**
+	 * Verify that building a graph from parallel segments gives
+	 * the same graph as scanning the whole sequence.
+	 */
+	public void testParallelBuild() {
+		Random rng = new Random(42);
+		char[] bases = new char[20000];
+		for (int i = 0; i < bases.length; ++i) {
+			bases[i] = "ACGTN".charAt(rng.nextInt(i % 1000 < 990 ? 4 : 5));
+		}
+		String data = new String(bases);
+
+		DnaGraphBuilder builder = new DnaGraphBuilder(5, 4);
+		UniqueVertexGraph exp = builder.build(data, "l").getGraph();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		BioGraph bg = builder.buildParallel(data, "l", pool, 1000);
+		assertSameGraph(exp, bg.getGraph());
+
+		/* the builder can keep going after a parallel build */
+		builder.addSequence("ACGTA");
+		assertSameGraph(
+				new DnaGraphBuilder(5, 4).build(data + "ACGTA", "l").getGraph(),
+				builder.toGraph());
+		pool.shutdown();
+	}
+
+	/**
+	 * Verify that a sequence and its reverse complement produce the
+	 * same canonical graph, both sequentially and in parallel.
+	 */
+	public void testCanonical() {
+		String data = "ACGGTACCATTGACNGTTACGATCCAGT";
+		StringBuilder rc = new StringBuilder(data.length());
+		for (int i = data.length() - 1; i >= 0; --i) {
+			rc.append(DnaKmers.complement(data.charAt(i)));
+		}
+
+		UniqueVertexGraph fwd =
+			BioGraph.canonicalGraph(data, "f").getGraph();
+		UniqueVertexGraph rev =
+			BioGraph.canonicalGraph(rc.toString(), "r").getGraph();
+		assertSameGraph(fwd, rev);
+
+		/* every vertex label must be in canonical form */
+		for (JVertex v: fwd.vertexSet()) {
+			assertEquals(DnaKmers.canonicalLabel(v.getLabel()), v.getLabel());
+		}
+
+		DnaGraphBuilder builder = new DnaGraphBuilder(3, 3, true);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		assertSameGraph(fwd,
+				builder.buildParallel(data, "f", pool, 8).getGraph());
+		pool.shutdown();
+	}
+}
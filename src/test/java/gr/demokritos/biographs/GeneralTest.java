@@ -6,10 +6,12 @@ import junit.framework.TestSuite;
 
 import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
 import gr.demokritos.biographs.io.BioInput;
+import gr.demokritos.biographs.indexing.preprocessing.IndexVector;
 import gr.demokritos.biographs.indexing.databases.TrieDatabase;
 import gr.demokritos.iit.jinsect.structs.NGramVertex;
 
 import java.io.File;
+import java.util.Arrays;
 
 /**
  * Unit test for simple App.
@@ -170,4 +172,26 @@ public class GeneralTest
 		assertTrue(bgx.getDfsCode(new NGramVertex("TAC")).equals(code));
 
 	}
+
+	/**
+	 * Verify that cached encodings are reused and discarded
+	 * when the graph changes.
+	 */
+	public void testEncodingCache() {
+		BioGraph bgx = new BioGraph("ACTAGGATTACA");
+		IndexVector indVec = new IndexVector(GraphType.DNA);
+
+		int[] enc = indVec.encodeGraph(bgx);
+		enc[0] = -1;
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(bgx.getGraph()),
+					indVec.encodeGraph(bgx)));
+
+		String code = bgx.getCanonicalCode();
+		bgx.setDataString("GGGTTTAAAC");
+		assertTrue(Arrays.equals(
+					indVec.encodeGraph(bgx.getGraph()),
+					indVec.encodeGraph(bgx)));
+		assertFalse(code.equals(bgx.getCanonicalCode()));
+	}
 }
@@ -0,0 +1,80 @@
+package gr.demokritos.biographs;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import gr.demokritos.biographs.io.BioInput;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for packed sequences and the sequence store.
+ */
+public class PackedSequenceTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public PackedSequenceTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( PackedSequenceTest.class );
+    }
+
+	/**
+	 * Verify that packed sequences, including their N runs and soft
+	 * masked regions, read back exactly, and that their packed k-mers
+	 * match the ones of the unpacked sequence.
+	 */
+	public void testPackedSequence() {
+		Random rng = new Random(7);
+		char[] chars = new char[5000];
+		for (int i = 0; i < chars.length; ++i) {
+			chars[i] = (i % 400 < 390) ?
+				"ACGT".charAt(rng.nextInt(4)) : 'N';
+			if (i % 1000 > 900) {
+				chars[i] = Character.toLowerCase(chars[i]);
+			}
+		}
+		String data = new String(chars);
+		PackedSequence packed = new PackedSequence(data);
+
+		assertEquals(data, packed.toString());
+		for (int i = 0; i < data.length(); i += 13) {
+			assertEquals(data.charAt(i), packed.charAt(i));
+			int end = Math.min(data.length(), i + 1 + rng.nextInt(100));
+			assertEquals(data.substring(i, end), packed.subSequence(i, end));
+			if (i + 21 <= data.length()) {
+				assertEquals(DnaKmers.pack(data, i, 21), packed.kmerAt(i, 21));
+			}
+		}
+		assertTrue(packed.sizeInBytes() * 3 < data.length());
+	}
+
+	/**
+	 * Verify that a sequence store holds the same sequences as
+	 * the FASTA file it was read from.
+	 */
+	public void testSequenceStore() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		SequenceStore store = SequenceStore.fromFile(res);
+		Map<String, String> exp = BioInput.fromFastaFileToEntries(res);
+		assertEquals(exp.size(), store.size());
+		for (Map.Entry<String, String> e: exp.entrySet()) {
+			assertEquals(e.getValue(), store.get(e.getKey()).toString());
+		}
+	}
+}
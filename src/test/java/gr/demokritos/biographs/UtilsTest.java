@@ -4,6 +4,10 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import gr.demokritos.biographs.algorithms.GraphSimilarities;
+import gr.demokritos.iit.jinsect.comparators.NGramGraphComparator;
+import gr.demokritos.iit.jinsect.structs.GraphSimilarity;
+
 import java.util.*;
 /**
  * Unit test for the nested loops of {@link Utils}.
@@ -69,4 +73,23 @@ public class UtilsTest
 			}
 		}
 	}
+
+	/**
+	 * Verify that value similarity computed on the graphs agrees with
+	 * the comparator of the rebuilt n-gram graphs.
+	 */
+	public void testValueSimilarity() {
+		BioGraph bgA = new BioGraph("ACGTTGCAACGGTACCATGAAAACGT");
+		BioGraph bgB = new BioGraph("GCAACGGTACCATGAGATTACAACGTT");
+
+		GraphSimilarity exp = new NGramGraphComparator()
+			.getSimilarityBetween(bgA.getSuper(), bgB.getSuper());
+		assertEquals(exp.ValueSimilarity,
+				Utils.getValueSimilarityBetween(bgA, bgB), 1e-9);
+		assertEquals(exp.asDistance(),
+				GraphSimilarities.getSimilarity(bgB, bgA).asDistance(), 1e-9);
+		assertEquals(exp.asDistance(),
+				GraphSimilarities.getSimilarity(
+					bgA.freeze(), bgB.freeze()).asDistance(), 1e-6);
+	}
 }
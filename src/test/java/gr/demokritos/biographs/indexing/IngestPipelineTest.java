@@ -0,0 +1,66 @@
+package gr.demokritos.biographs.indexing;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.indexing.structs.PipelineStats;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Unit test for the ingestion pipeline.
+ */
+public class IngestPipelineTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public IngestPipelineTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( IngestPipelineTest.class );
+    }
+
+	/**
+	 * Verify that an error thrown by a stage fails the build instead of
+	 * leaving the writer waiting for entries that never come.
+	 */
+	public void testStageError() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		final AssertionError death = new AssertionError("encoder died");
+
+		IngestPipeline pipeline = new IngestPipeline(2, 2, 4);
+		try {
+			pipeline.run(new File[] { res }, 0, 0, GraphType.DNA,
+					new GraphDatabase.EntryLoader<Object>() {
+						@Override
+						public Object encode(BioGraph bg) {
+							throw death;
+						}
+
+						@Override
+						public void merge(Object entry) {
+							fail("no entry should be merged");
+						}
+					}, new PipelineStats(), null);
+			fail("the build should fail");
+		}
+		catch (ExecutionException ex) {
+			assertSame(death, ex.getCause());
+		}
+	}
+}
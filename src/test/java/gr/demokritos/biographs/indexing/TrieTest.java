@@ -7,8 +7,12 @@ import junit.framework.TestSuite;
 import gr.demokritos.biographs.*;
 import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.databases.TrieDatabase;
+import gr.demokritos.biographs.indexing.databases.TrieIndex;
+import gr.demokritos.biographs.indexing.structs.TrieEntry;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Unit test for simple App.
@@ -71,4 +75,34 @@ public class TrieTest
 			assertTrue(nclData.getNodes(b).size() > 0);
 		}
 	}
+
+	/**
+	 * Test that a {@link TrieIndex} restored from an encoded corpus
+	 * returns the same entries as the original index.
+	 */
+	public void testCorpus() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		TrieIndex built = new TrieIndex();
+		built.build(res, GraphDatabase.GraphType.DNA);
+
+		File corpus = File.createTempFile("synth", ".bgec");
+		corpus.deleteOnExit();
+		built.saveCorpus(corpus);
+		TrieIndex loaded = new TrieIndex();
+		loaded.loadCorpus(corpus);
+
+		assertEquals(built.getSize(), loaded.getSize());
+		for (BioGraph b: BioInput.fastaFileToGraphs(res)) {
+			assertEquals(labels(built.getNodes(b)), labels(loaded.getNodes(b)));
+		}
+	}
+
+	private static List<String> labels(List<TrieEntry> entries)
+	{
+		List<String> labels = new ArrayList<String>();
+		for (TrieEntry e: entries) {
+			labels.add(e.getLabel());
+		}
+		return labels;
+	}
 }
@@ -7,9 +7,17 @@ import junit.framework.TestSuite;
 import gr.demokritos.biographs.*;
 import gr.demokritos.biographs.io.BioInput;
 import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.indexing.databases.TrieIndex;
+import gr.demokritos.biographs.indexing.preprocessing.Strategies;
 import gr.demokritos.biographs.indexing.structs.GraphIndexEntry;
+import gr.demokritos.biographs.indexing.structs.PipelineStats;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -63,4 +71,189 @@ public class EntryInvertedTest
 			assertTrue(matches.size() > 0);
 		}
 	}
+
+	/**
+	 * Verify that building an index from a directory with several
+	 * workers gives the same index as building it sequentially.
+	 */
+	public void testParallelBuild() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		File dir = writeShards(res);
+
+		EntryInvertedIndex seq = new EntryInvertedIndex();
+		seq.build(dir, GraphType.DNA);
+		EntryInvertedIndex par = new EntryInvertedIndex();
+		par.setWorkers(4);
+		par.build(dir, GraphType.DNA);
+
+		assertEquals(500, seq.getSize());
+		assertEquals(seq.getSize(), par.getSize());
+		assertTrue(Arrays.equals(seq.binSizes(), par.binSizes()));
+		for (BioGraph b: BioInput.fastaFileToGraphs(res)) {
+			assertEquals(seq.getMatches(b), par.getMatches(b));
+		}
+
+		/* fewer workers than files, so files are loaded as others
+		 * are merged */
+		assertTrue(dir.listFiles().length > 2);
+		EntryInvertedIndex few = new EntryInvertedIndex();
+		few.setWorkers(2);
+		few.build(dir, GraphType.DNA);
+		assertTrue(Arrays.equals(seq.binSizes(), few.binSizes()));
+	}
+
+	/**
+	 * Verify that a pipelined build, whose small queues force the stages
+	 * to block on each other, produces the same index as a sequential one.
+	 */
+	public void testPipelineBuild() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+
+		EntryInvertedIndex seq = new EntryInvertedIndex();
+		seq.build(res, GraphType.DNA);
+		EntryInvertedIndex pip = new EntryInvertedIndex();
+		pip.setPipeline(2, 3, 4);
+		pip.build(res, GraphType.DNA);
+
+		assertEquals(seq.getSize(), pip.getSize());
+		assertTrue(Arrays.equals(seq.binSizes(), pip.binSizes()));
+		for (BioGraph b: BioInput.fastaFileToGraphs(res)) {
+			assertEquals(seq.getMatches(b), pip.getMatches(b));
+		}
+
+		PipelineStats stats = pip.getPipelineStats();
+		for (PipelineStats.Stage s: PipelineStats.Stage.values()) {
+			assertEquals(500, stats.getCount(s));
+		}
+		assertNull(seq.getPipelineStats());
+	}
+
+	/**
+	 * Verify that an index restored from an encoded corpus is the same
+	 * as the index that wrote it.
+	 */
+	public void testCorpus() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		EntryInvertedIndex built = new EntryInvertedIndex();
+		built.build(res, GraphType.DNA);
+
+		File corpus = File.createTempFile("synth", ".bgec");
+		corpus.deleteOnExit();
+		built.saveCorpus(corpus);
+		EntryInvertedIndex loaded = new EntryInvertedIndex();
+		loaded.loadCorpus(corpus);
+
+		assertEquals(built.getSize(), loaded.getSize());
+		assertTrue(Arrays.equals(built.binSizes(), loaded.binSizes()));
+		for (BioGraph b: BioInput.fastaFileToGraphs(res)) {
+			assertEquals(built.getMatches(b), loaded.getMatches(b));
+		}
+
+		/* corpora of trie entries are rejected */
+		try {
+			new TrieIndex().loadCorpus(corpus);
+			fail("loaded a corpus of another kind");
+		}
+		catch (IOException ex) {
+			/* expected */
+		}
+
+		/* and so are corpora encoded with other strategies, even if the
+		 * number of bins is the same */
+		EntryInvertedIndex otherHash = new EntryInvertedIndex();
+		otherHash.getIndexVector().setHashStrategy(
+				Strategies.canonicalDnaHash());
+		try {
+			otherHash.loadCorpus(corpus);
+			fail("loaded a corpus of another hashing strategy");
+		}
+		catch (IOException ex) {
+			/* expected */
+		}
+		EntryInvertedIndex otherEncoding = new EntryInvertedIndex();
+		otherEncoding.setEncodingStrategy(Strategies.degreeEncoding());
+		try {
+			otherEncoding.loadCorpus(corpus);
+			fail("loaded a corpus of another encoding strategy");
+		}
+		catch (IOException ex) {
+			/* expected */
+		}
+		assertEquals(0, otherHash.getSize());
+		assertEquals(0, otherEncoding.getSize());
+	}
+
+	/**
+	 * Splits the records of a FASTA file into a few shards in a
+	 * temporary directory.
+	 */
+	private static File writeShards(File res) throws Exception {
+		File dir = Files.createTempDirectory("shards").toFile();
+		dir.deleteOnExit();
+
+		/* split the records into a few shards */
+		List<String> lines = Files.readAllLines(res.toPath());
+		int shard = -1;
+		List<List<String>> shards = new ArrayList<List<String>>();
+		for (int i = 0; i < lines.size(); ++i) {
+			if (lines.get(i).startsWith(">") && i % 200 == 0) {
+				shards.add(new ArrayList<String>());
+				shard++;
+			}
+			shards.get(shard).add(lines.get(i));
+		}
+		for (int i = 0; i < shards.size(); ++i) {
+			File f = new File(dir, "shard" + i + ".fa");
+			f.deleteOnExit();
+			Files.write(f.toPath(), shards.get(i));
+		}
+		return dir;
+	}
+
+	/**
+	 * Verify that a checkpointed build that is killed midway resumes
+	 * from its last checkpoint and produces the same index as a build
+	 * that was never interrupted.
+	 */
+	public void testCheckpointedBuild() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		File dir = writeShards(res);
+		File cpDir = Files.createTempDirectory("checkpoints").toFile();
+		cpDir.deleteOnExit();
+
+		EntryInvertedIndex crashing = new EntryInvertedIndex() {
+			@Override
+			protected void addEntry(GraphIndexEntry entry) {
+				if (getSize() == 330) {
+					throw new IllegalStateException("killed");
+				}
+				super.addEntry(entry);
+			}
+		};
+		crashing.setCheckpoint(cpDir, 50);
+		try {
+			crashing.build(dir, GraphType.DNA);
+			fail("the build was not interrupted");
+		}
+		catch (IllegalStateException ex) {
+			/* expected */
+		}
+		assertTrue(new File(cpDir, "checkpoint.properties").isFile());
+
+		EntryInvertedIndex resumed = new EntryInvertedIndex();
+		resumed.setCheckpoint(cpDir, 50);
+		resumed.setPipeline(2, 2, 8);
+		resumed.build(dir, GraphType.DNA);
+		assertEquals(200, resumed.getPipelineStats().getCount(
+					PipelineStats.Stage.WRITE));
+		assertFalse(new File(cpDir, "checkpoint.properties").exists());
+
+		EntryInvertedIndex full = new EntryInvertedIndex();
+		full.build(dir, GraphType.DNA);
+		assertEquals(full.getSize(), resumed.getSize());
+		assertTrue(Arrays.equals(full.binSizes(), resumed.binSizes()));
+		for (BioGraph b: BioInput.fastaFileToGraphs(res)) {
+			assertEquals(full.getMatches(b), resumed.getMatches(b));
+		}
+	}
 }
@@ -4,6 +4,12 @@ import gr.demokritos.biographs.*;
 import gr.demokritos.biographs.indexing.GraphDatabase;
 import gr.demokritos.iit.jinsect.structs.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -74,4 +80,198 @@ public class HashingTest
 		graphEnc = hVec.encodeGraph(bgB.getGraph());
 		assertNotNull(graphEnc);
 	}
+
+	/**
+	 * Verify that a sliding graph produces the same encodings as
+	 * the graphs built from scratch at every offset.
+	 */
+	public void testSlidingEncodings() {
+		String data = "ACGTTGCAACNGTACCATGAAAACGTGATTACAACA";
+		int len = 12;
+
+		IndexVector trieVec = new IndexVector(GraphDatabase.GraphType.DNA);
+		trieVec.setHashStrategy(Strategies.dnaHash());
+		trieVec.setBins(16);
+		IndexVector dnaVec = new IndexVector(GraphDatabase.GraphType.DNA);
+
+		SlidingBioGraph sgTrie = new SlidingBioGraph(len, trieVec);
+		SlidingBioGraph sgDna = new SlidingBioGraph(len, dnaVec);
+		sgTrie.reset(data, 0);
+		sgDna.reset(data, 0);
+		do {
+			sgDna.slide();
+			BioGraph bg = new BioGraph(sgTrie.getSubstring());
+			assertTrue(Arrays.equals(
+					trieVec.getGraphEncoding(bg),
+					sgTrie.getGraphEncoding()));
+			assertTrue(Arrays.equals(
+					trieVec.encodeGraph(bg), sgTrie.encodeGraph()));
+
+			bg = new BioGraph(sgDna.getSubstring());
+			assertTrue(Arrays.equals(
+					dnaVec.encodeGraph(bg), sgDna.encodeGraph()));
+		} while (sgTrie.slide());
+	}
+
+	/**
+	 * Verify that encoding into a reused vector gives the same
+	 * encodings as allocating a new vector for every graph.
+	 */
+	public void testReusedVector() {
+		String[] data = {"ACGTTGCAACGGTACC", "ATGAAAACGTGATTAC", "GGGG"};
+		IndexVector indVec = new IndexVector(GraphDatabase.GraphType.DNA);
+
+		/* longer than needed, the tail must be left untouched */
+		int[] out = new int[indVec.getBins() + 1];
+		out[indVec.getBins()] = -1;
+		for (String seq: data) {
+			BioGraph bg = new BioGraph(seq);
+			int[] expected = indVec.encodeGraph(bg.getGraph());
+
+			indVec.encodeGraph(bg.getGraph(), out);
+			assertTrue(Arrays.equals(expected,
+					Arrays.copyOf(out, indVec.getBins())));
+
+			indVec.encodeGraph(bg.freeze(), out);
+			assertTrue(Arrays.equals(expected,
+					Arrays.copyOf(out, indVec.getBins())));
+
+			/* the second time, the cached encoding is copied */
+			indVec.encodeGraph(bg, out);
+			indVec.encodeGraph(bg, out);
+			assertTrue(Arrays.equals(expected,
+					Arrays.copyOf(out, indVec.getBins())));
+		}
+		assertEquals(-1, out[indVec.getBins()]);
+
+		try {
+			indVec.encodeGraph(new BioGraph("ACGT"), new int[1]);
+			fail("short vector accepted");
+		}
+		catch (IllegalArgumentException ex) {}
+	}
+
+	/**
+	 * Verify that batch encoding fills the rows of the matrix with
+	 * the encodings of every graph, and that specs are snapshots.
+	 */
+	public void testEncodeAll() {
+		String data = "ACGTTGCAACGGTACCATGAAAACGTGATTACAACA";
+		BioGraph[] graphs = new BioGraph[50];
+		for (int i = 0; i < graphs.length; ++i) {
+			int from = i % (data.length() - 12);
+			graphs[i] = new BioGraph(data.substring(from, from + 8 + i % 5));
+		}
+
+		IndexVector indVec = new IndexVector(GraphDatabase.GraphType.DNA);
+		EncoderSpec spec = indVec.getSpec().withBins(12);
+		indVec.setBins(7);
+		assertEquals(12, spec.getBins());
+
+		int[] matrix = spec.encodeAll(graphs,
+				new java.util.concurrent.ForkJoinPool(3));
+		assertEquals(graphs.length * 12, matrix.length);
+
+		IndexVector check = spec.newIndexVector();
+		for (int i = 0; i < graphs.length; ++i) {
+			assertTrue(Arrays.equals(
+						check.encodeGraph(graphs[i].getGraph()),
+						Arrays.copyOfRange(
+							matrix, i * 12, (i + 1) * 12)));
+		}
+		assertEquals(0, spec.encodeAll(new BioGraph[0]).length);
+	}
+
+	/**
+	 * Verify that the union sizes of {@link IndexVector#getGraphEncoding}
+	 * match the sets of incoming labels of every bin, on a graph with
+	 * more than 64 vertices.
+	 */
+	public void testUnionSizes() {
+		BioGraph bg = new BioGraph(
+				"thequickbrownfoxjumpsoverthelazydogwhilefivebigquacking" +
+				"zephyrsjoltmywaxbedandsphinxofblackquartzjudgemyvow");
+		UniqueVertexGraph uvg = bg.getGraph();
+		assertTrue(uvg.vertexSet().size() > 64);
+
+		IndexVector indVec = new IndexVector(GraphDatabase.GraphType.WORD);
+		HashingStrategy<JVertex> hash = indVec.getHashStrategy();
+		List<Set<String>> expected = new ArrayList<Set<String>>();
+		for (int i = 0; i < indVec.getBins(); ++i) {
+			expected.add(new HashSet<String>());
+		}
+		for (JVertex v: uvg.vertexSet()) {
+			int h = hash.hash(v) % indVec.getBins();
+			if (h < 0)
+				continue;
+			for (Edge e: uvg.incomingEdgesOf(v)) {
+				expected.get(h).add(uvg.getEdgeSource(e).getLabel());
+			}
+		}
+
+		byte[] enc = indVec.getGraphEncoding(uvg);
+		for (int i = 0; i < indVec.getBins(); ++i) {
+			assertEquals(expected.get(i).size(), enc[i]);
+		}
+		assertTrue(Arrays.equals(enc,
+					indVec.getGraphEncoding(bg.freeze())));
+	}
+
+	/**
+	 * The {@link Strategies#dnaHash()} of a label, computed with string
+	 * operations.
+	 */
+	private static int referenceDnaHash(String label) {
+		String upper = label.toUpperCase();
+		return "ACGT".indexOf(upper.charAt(0)) * 4 +
+			"ACGT".indexOf(upper.charAt(1));
+	}
+
+	/**
+	 * Verify that the table-driven strategies hash labels exactly like
+	 * the string operations they are defined by, including characters
+	 * outside the tables and upper case forms longer than a character.
+	 */
+	public void testTableHashes() {
+		String[] labels = {
+			"ACG", "acg", "TTA", "GaT", "NNA", "ANC", "CN", "ta", "xyz",
+			"Zeta", "ice", "\u00DFAC", "A\u00DFC", "\u00FFA", "\u00E9cole",
+			"\u0131A", "\u03C3\u03C3", "\uD801\uDC28A", "GT\u00DF"
+		};
+		int[] dinucleotides = {0, 1, 2, 3, 1, 4, 5, 6, 2, 5, 7, 8, 3, 6, 8, 9};
+		for (String label: labels) {
+			JVertex v = new NGramVertex(label);
+			assertEquals(label, referenceDnaHash(label),
+					Strategies.dnaHash().hash(v));
+			assertEquals(label,
+					(int) label.toUpperCase().charAt(0) - (int) 'A',
+					Strategies.alphabetHash().hash(v));
+
+			int a = "ACGT".indexOf(label.charAt(0));
+			int b = "ACGT".indexOf(label.charAt(1));
+			assertEquals(label, (a < 0) ? 4 : a,
+					Strategies.simpleDnaHash().hash(v));
+			assertEquals(label, (a < 0 || b < 0) ? 10 : dinucleotides[a * 4 + b],
+					Strategies.dinucleotideHash().hash(v));
+
+			String canon = DnaKmers.canonicalLabel(label);
+			assertEquals(label, referenceDnaHash(canon),
+					Strategies.canonicalDnaHash().hash(v));
+		}
+
+		/* packed k-mers hash like their labels */
+		List<HashingStrategy<JVertex>> strategies =
+			Arrays.asList(
+					Strategies.dnaHash(), Strategies.dinucleotideHash(),
+					Strategies.simpleDnaHash(), Strategies.alphabetHash(),
+					Strategies.canonicalDnaHash(),
+					Strategies.canonicalDinucleotideHash());
+		for (long kmer = 0; kmer < 64; ++kmer) {
+			String label = DnaKmers.unpack(kmer, 3);
+			for (HashingStrategy<JVertex> sg: strategies) {
+				assertEquals(label, sg.hash(new NGramVertex(label)),
+						Strategies.hashKmer(sg, kmer, 3));
+			}
+		}
+	}
 }
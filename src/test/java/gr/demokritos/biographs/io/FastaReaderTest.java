@@ -0,0 +1,375 @@
+package gr.demokritos.biographs.io;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import gr.demokritos.biographs.BioGraph;
+import gr.demokritos.biographs.IsomorphismTester;
+import gr.demokritos.biographs.indexing.GraphDatabase.GraphType;
+import gr.demokritos.biographs.indexing.inverted.EntryInvertedIndex;
+import gr.demokritos.iit.jinsect.structs.JVertex;
+
+import org.biojava.nbio.core.sequence.DNASequence;
+
+/**
+ * Unit tests for the streaming FASTA reader.
+ */
+public class FastaReaderTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FastaReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FastaReaderTest.class );
+    }
+
+	/**
+	 * Verify that the streaming reader reads the same records
+	 * as the BioJava reader.
+	 */
+	public void testSameAsBioJava() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		LinkedHashMap<String, DNASequence> exp = BioInput.readFastaFile(res);
+
+		Iterator<Map.Entry<String, DNASequence>> it =
+			exp.entrySet().iterator();
+		try (FastaReader reader = BioInput.fastaRecords(res)) {
+			for (FastaRecord rec: reader) {
+				Map.Entry<String, DNASequence> e = it.next();
+				assertEquals(e.getKey(), rec.getLabel());
+				assertEquals(
+						e.getValue().getSequenceAsString(), rec.getSequence());
+			}
+		}
+		assertFalse(it.hasNext());
+
+		try (Stream<FastaRecord> recs = BioInput.fastaStream(res)) {
+			assertEquals(exp.size(), recs.count());
+		}
+	}
+
+	/**
+	 * Verify that records are labelled by the accession ids of their
+	 * headers, and collapsed by them, as by the BioJava reader.
+	 */
+	public void testAccessionLabels() throws Exception {
+		String[] headers = new String[] {
+			"sp|P1|X desc here", "tr|Q2|Y", "gi|123|gb|AB1.1|desc",
+			"gi|5", "pir||N1", "prf||P2", "pdb|1ABC|A", "PDB:1XYZ:A mol",
+			"1abc:A|PDBID|CHAIN|SEQUENCE", "pat|US|123", "bbs|77",
+			"gnl|db|ID9 x", "ref|NM_1|", "lcl|loc1 x", "gb|AC1|",
+			"plain name here", "a|b", "sp|P1|X again"
+		};
+		File f = File.createTempFile("accessions", ".fa");
+		f.deleteOnExit();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < headers.length; ++i) {
+			sb.append('>').append(headers[i]).append('\n')
+			  .append("ACGT".substring(0, 1 + i % 4)).append("GG\n");
+		}
+		Files.write(f.toPath(), sb.toString().getBytes("UTF-8"));
+
+		LinkedHashMap<String, DNASequence> exp = BioInput.readFastaFile(f);
+		LinkedHashMap<String, String> entries =
+			BioInput.fromFastaFileToEntries(f);
+		assertEquals(new ArrayList<String>(exp.keySet()),
+				new ArrayList<String>(entries.keySet()));
+		for (Map.Entry<String, DNASequence> e: exp.entrySet()) {
+			assertEquals(e.getValue().getSequenceAsString(),
+					entries.get(e.getKey()));
+		}
+
+		/* the last of the repeated records wins */
+		assertEquals("ACGG", entries.get("P1"));
+
+		BioGraph[] graphs = BioInput.fastaFileToGraphs(f);
+		assertEquals(exp.size(), graphs.length);
+		assertEquals("P1", graphs[0].getLabel());
+
+		for (String h: headers) {
+			assertTrue(exp.containsKey(FastaReader.accessionOf(h)));
+		}
+		try (FastaReader reader = BioInput.fastaRecords(f)) {
+			FastaRecord rec = reader.next();
+			assertEquals("sp|P1|X desc here", rec.getHeader());
+			assertEquals("P1", rec.getLabel());
+		}
+	}
+
+	/**
+	 * Verify that comments, blank lines and empty records are
+	 * handled properly.
+	 */
+	public void testFormatting() throws Exception {
+		String input =
+			"junk before the first header\n" +
+			">first record \n" +
+			"ACGT\n" +
+			"; a comment\n" +
+			"\n" +
+			"  TTGA  \r\n" +
+			">empty\n" +
+			">last\n" +
+			"CC";
+		FastaReader reader = new FastaReader(new StringReader(input));
+
+		FastaRecord rec = reader.next();
+		assertEquals("first record", rec.getHeader());
+		assertEquals("ACGTTTGA", rec.getSequence());
+		rec = reader.next();
+		assertEquals("empty", rec.getHeader());
+		assertEquals("", rec.getSequence());
+		rec = reader.next();
+		assertEquals("last", rec.getHeader());
+		assertEquals("CC", rec.getSequence());
+		assertFalse(reader.hasNext());
+		reader.close();
+	}
+
+	/**
+	 * Verify that the memory mapped reader finds the same records
+	 * and builds the same graphs as the streaming reader.
+	 */
+	public void testMapped() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		MappedFastaFile mapped = MappedFastaFile.open(res);
+		BioGraph[] graphs = mapped.toGraphs(new ForkJoinPool(2));
+
+		int r = 0;
+		try (FastaReader reader = new FastaReader(res)) {
+			for (FastaRecord rec: reader) {
+				assertEquals(rec.getHeader(), mapped.getHeader(r));
+				assertEquals(rec.getSequence(), mapped.getSequence(r));
+				assertEquals(rec.getHeader(), graphs[r].getLabel());
+				assertTrue(IsomorphismTester.graphIsomorphic(
+							rec.toGraph().freeze(), graphs[r].freeze()));
+				r++;
+			}
+		}
+		assertEquals(r, mapped.recordCount());
+		mapped.close();
+	}
+
+	/**
+	 * Writes data as a BGZF file, with blocks of at most a given
+	 * uncompressed size, followed by the empty end-of-file block.
+	 */
+	private static void writeBgzf(byte[] data, int blockLen, File out)
+	throws Exception
+	{
+		try (FileOutputStream fos = new FileOutputStream(out)) {
+			for (int off = 0; off <= data.length; off += blockLen) {
+				int len = Math.min(blockLen, data.length - off);
+				Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+				def.setInput(data, off, len);
+				def.finish();
+				byte[] comp = new byte[len + 1024];
+				int clen = 0;
+				while (!def.finished()) {
+					clen += def.deflate(comp, clen, comp.length - clen);
+				}
+				def.end();
+				CRC32 crc = new CRC32();
+				crc.update(data, off, len);
+
+				ByteBuffer block = ByteBuffer.allocate(26 + clen)
+					.order(ByteOrder.LITTLE_ENDIAN);
+				block.put(new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0,
+					(byte) 0xff, 6, 0, 'B', 'C', 2, 0 });
+				block.putShort((short) (25 + clen));
+				block.put(comp, 0, clen);
+				block.putInt((int) crc.getValue());
+				block.putInt(len);
+				fos.write(block.array());
+			}
+		}
+	}
+
+	private static List<String> readAll(File f) throws Exception {
+		List<String> recs = new ArrayList<String>();
+		try (FastaReader reader = new FastaReader(f)) {
+			for (FastaRecord rec: reader) {
+				recs.add(rec.getHeader() + " " + rec.getSequence());
+			}
+		}
+		return recs;
+	}
+
+	/**
+	 * Verify that gzip and BGZF compressed files are read exactly
+	 * like the uncompressed file.
+	 */
+	public void testCompressed() throws Exception {
+		File res = new File(getClass().getResource("/synth.fa").toURI());
+		byte[] data = Files.readAllBytes(res.toPath());
+		List<String> exp = readAll(res);
+
+		File gz = File.createTempFile("synth", ".fa.gz");
+		gz.deleteOnExit();
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+			out.write(data);
+		}
+		assertTrue(CompressedInput.isCompressed(gz));
+		assertEquals(exp, readAll(gz));
+
+		File bgzf = File.createTempFile("synth", ".fa.bgz");
+		bgzf.deleteOnExit();
+		writeBgzf(data, 1000, bgzf);
+		assertTrue(CompressedInput.open(bgzf) instanceof BgzfInputStream);
+		assertEquals(exp, readAll(bgzf));
+		assertEquals(exp.size(), BioInput.readFastaFile(bgzf).size());
+
+		/* a block claiming more than 64 KiB of data is rejected */
+		byte[] blocks = Files.readAllBytes(bgzf.toPath());
+		int bsize = ((blocks[16] & 0xff) | (blocks[17] & 0xff) << 8) + 1;
+		for (int i = bsize - 4; i < bsize; ++i) {
+			blocks[i] = (byte) 0xff;
+		}
+		Files.write(bgzf.toPath(), blocks);
+		try (InputStream in = CompressedInput.open(bgzf)) {
+			in.read();
+			fail("corrupt block accepted");
+		}
+		catch (IOException ex) {
+			assertEquals("corrupt BGZF block", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Verify that FASTQ reads are trimmed and masked while being read,
+	 * and that DNA databases can be built from FASTQ files.
+	 */
+	public void testFastq() throws Exception {
+		String input =
+			"@read1 first\n" +
+			"TTACGTACGTAA\n" +
+			"+\n" +
+			"##IIII*IIII#\n" +
+			"@read2\n" +
+			"ACGT\n" +
+			"+read2\n" +
+			"####\n" +
+			"@read3\n" +
+			"GATTACA\n" +
+			"+\n" +
+			"IIIIIII\n";
+		FastqReader reader = new FastqReader(new StringReader(input));
+		FastaRecord rec = reader.next();
+		assertEquals("read1 first", rec.getHeader());
+		assertEquals("ACGTNCGTA", rec.getSequence());
+
+		/* no k-mer spans the masked base */
+		BioGraph bg = rec.toGraph();
+		assertEquals(3, bg.getGraph().vertexSet().size());
+		for (JVertex v: bg.getGraph().vertexSet()) {
+			assertEquals(-1, v.getLabel().indexOf('N'));
+		}
+		rec = reader.next();
+		assertEquals("read3", rec.getHeader());
+		assertEquals("GATTACA", rec.getSequence());
+		assertFalse(reader.hasNext());
+		assertEquals(1, reader.getDroppedCount());
+		reader.close();
+
+		File fq = File.createTempFile("reads", ".fq");
+		fq.deleteOnExit();
+		Files.write(fq.toPath(), input.getBytes("UTF-8"));
+		try (SequenceReader recs = BioInput.sequenceRecords(fq)) {
+			assertTrue(recs instanceof FastqReader);
+		}
+
+		EntryInvertedIndex index = new EntryInvertedIndex();
+		index.build(fq, GraphType.DNA);
+		assertEquals(2, index.getSize());
+	}
+
+	/**
+	 * Verify that words are split into lines like a {@link BufferedReader}
+	 * does, across buffer boundaries, and that empty lines are skipped as
+	 * by jinsect's <tt>LineReader</tt>.
+	 */
+	public void testWords() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		String[] breaks = { "\n", "\r\n", "\r" };
+		for (int i = 0; i < 30000; ++i) {
+			sb.append((i % 7 == 0) ? "\u03bb\u03ad\u03be\u03b7" : "word" + i);
+			sb.append(breaks[i % breaks.length]);
+			if (i % 11 == 0) {
+				sb.append(breaks[(i + 1) % breaks.length]);
+			}
+		}
+		sb.append("last");
+
+		File words = File.createTempFile("words", ".txt");
+		words.deleteOnExit();
+		Files.write(words.toPath(), sb.toString().getBytes("UTF-8"));
+
+		List<String> exp = new ArrayList<String>();
+		try (BufferedReader in =
+				new BufferedReader(new StringReader(sb.toString())))
+		{
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.length() > 0) {
+					exp.add(line);
+				}
+			}
+		}
+
+		List<String> got = new ArrayList<String>();
+		try (SequenceReader reader = BioInput.wordRecords(words)) {
+			for (FastaRecord rec: reader) {
+				assertEquals(rec.getHeader(), rec.getSequence());
+				got.add(rec.getHeader());
+			}
+		}
+		assertEquals(exp, got);
+		assertEquals(exp.size(), BioInput.fromWordFile(words).length);
+		assertEquals(exp, Arrays.asList(BioInput.readLines(words)));
+
+		/* blank and trailing lines do not become records */
+		Files.write(words.toPath(), "alpha\n\nbeta\n\n".getBytes("UTF-8"));
+		BioGraph[] graphs = BioInput.fromWordFile(words);
+		assertEquals(2, graphs.length);
+		assertEquals("alpha", graphs[0].getLabel());
+		assertEquals("beta", graphs[1].getLabel());
+		assertEquals(Arrays.asList("alpha", "beta"),
+				Arrays.asList(BioInput.readLines(words)));
+	}
+}